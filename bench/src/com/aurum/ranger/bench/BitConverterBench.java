@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.bench;
+
+import com.aurum.ranger.BitConverter;
+import com.aurum.ranger.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decodes and encodes a 4 KiB block of values with {@link BitConverter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitConverterBench {
+    private static final int SIZE = 4096;
+    
+    @Param({ "LITTLE_ENDIAN", "BIG_ENDIAN" })
+    public ByteOrder endian;
+    
+    private byte[] data;
+    private byte[] out;
+    
+    @Setup
+    public void setup() {
+        data = new byte[SIZE];
+        out = new byte[SIZE];
+        new Random(SIZE).nextBytes(data);
+    }
+    
+    @Benchmark
+    public int toShort() {
+        int sum = 0;
+        for (int i = 0 ; i < SIZE ; i += Short.BYTES)
+            sum += BitConverter.toShort(data, endian, i);
+        return sum;
+    }
+    
+    @Benchmark
+    public int toInt() {
+        int sum = 0;
+        for (int i = 0 ; i < SIZE ; i += Integer.BYTES)
+            sum += BitConverter.toInt(data, endian, i);
+        return sum;
+    }
+    
+    @Benchmark
+    public long toLong() {
+        long sum = 0;
+        for (int i = 0 ; i < SIZE ; i += Long.BYTES)
+            sum += BitConverter.toLong(data, endian, i);
+        return sum;
+    }
+    
+    @Benchmark
+    public byte[] putInt() {
+        for (int i = 0 ; i < SIZE ; i += Integer.BYTES)
+            BitConverter.putInt(out, endian, i, i);
+        return out;
+    }
+    
+    @Benchmark
+    public byte[] putLong() {
+        for (int i = 0 ; i < SIZE ; i += Long.BYTES)
+            BitConverter.putLong(out, endian, i, i);
+        return out;
+    }
+    
+    @Benchmark
+    public int getBytesInt() {
+        int sum = 0;
+        for (int i = 0 ; i < SIZE ; i += Integer.BYTES)
+            sum += BitConverter.getBytes(i, endian)[0];
+        return sum;
+    }
+}
\ No newline at end of file
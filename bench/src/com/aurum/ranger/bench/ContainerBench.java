@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.bench;
+
+import com.aurum.ranger.io.BinaryInputStream;
+import com.aurum.ranger.io.BinaryOutputStream;
+import com.aurum.ranger.io.Container;
+import com.aurum.ranger.io.ContainerInputStream;
+import com.aurum.ranger.io.ContainerOutputStream;
+import com.aurum.ranger.io.DataSheet;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Binary decode and encode of whole containers through
+ * {@link ContainerInputStream#read} and {@link ContainerOutputStream#write}.
+ * The default run uses columnar storage, since list storage needs several
+ * gigabytes of heap at 10M entries; add {@code -p storage=list} or
+ * {@code -p storage=records} to compare. Columnar storage uses the generated
+ * {@code ColumnCodec} of the sheet; add {@code -p codegen=false} to measure
+ * the switch-based code instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ContainerBench {
+    @Param({ "ZKND", "NPCD" })
+    public String shape;
+    
+    @Param({ "1000", "100000", "10000000" })
+    public int entries;
+    
+    @Param({ "columns" })
+    public String storage;
+    
+    @Param({ "true" })
+    public String codegen;
+    
+    private DataSheet sheet;
+    private byte[] data;
+    private Container decoded;
+    
+    @Setup
+    public void setup() throws IOException {
+        System.setProperty("pokesheet.codegen", codegen);
+        sheet = Fixtures.sheet(shape);
+        data = Fixtures.container(sheet, entries);
+        decoded = read();
+    }
+    
+    @Benchmark
+    public Container read() throws IOException {
+        Container c = new Container(sheet, Container.Storage.valueOf(storage.toUpperCase(Locale.ROOT)));
+        try (ContainerInputStream in = new ContainerInputStream(new BinaryInputStream(new ByteArrayInputStream(data)))) {
+            in.read(c);
+        }
+        return c;
+    }
+    
+    @Benchmark
+    public Container readParallel() throws IOException {
+        Container c = new Container(sheet, Container.Storage.valueOf(storage.toUpperCase(Locale.ROOT)));
+        try (ContainerInputStream in = new ContainerInputStream(new BinaryInputStream(new ByteArrayInputStream(data)))) {
+            in.readParallel(c);
+        }
+        return c;
+    }
+    
+    @Benchmark
+    public long write() throws IOException {
+        Fixtures.NullOutputStream sink = new Fixtures.NullOutputStream();
+        try (ContainerOutputStream out = new ContainerOutputStream(new BinaryOutputStream(sink))) {
+            out.write(decoded);
+        }
+        return sink.count;
+    }
+}
\ No newline at end of file
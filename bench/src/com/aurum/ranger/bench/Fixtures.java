@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.bench;
+
+import com.aurum.ranger.io.DataSheet;
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Synthetic sheets and containers shaped like the shipped ZKND and NPCD
+ * sheets, so the benchmarks do not depend on game data.
+ */
+final class Fixtures {
+    private Fixtures() {
+    }
+    
+    /**
+     * Builds a sheet with the same layout as {@code sheets/zknd.xml} or
+     * {@code sheets/npcd.xml}.
+     * @param shape {@code ZKND} or {@code NPCD}
+     * @return the sheet.
+     */
+    static DataSheet sheet(String shape) {
+        DataSheet s = new DataSheet(shape);
+        
+        switch(shape) {
+            case "ZKND":
+                s.add("index", FieldType.INT16);
+                s.add("fpkd_index", FieldType.INT16);
+                s.add("unk4", FieldType.INT16);
+                s.add("unk6", FieldType.INT16);
+                for (String f : new String[] { "unk8", "unk9", "unkA", "unkB", "unkC", "unkD", "unkE", "unkF" })
+                    s.add(f, FieldType.INT8);
+                break;
+            case "NPCD":
+                s.add("value", FieldType.INT32);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+        
+        return s;
+    }
+    
+    /**
+     * Builds a complete container file image with random entries.
+     * @param s the sheet
+     * @param count the number of entries
+     * @return the container bytes.
+     */
+    static byte[] container(DataSheet s, int count) {
+        int size = s.byteSum();
+        byte[] data = new byte[16 + size * count];
+        new Random(count).nextBytes(data);
+        
+        byte[] magic = s.getName().getBytes(Charset.forName("UTF-8"));
+        System.arraycopy(magic, 0, data, 0, 4);
+        putInt(data, 0x4, size);
+        putInt(data, 0x8, count);
+        putInt(data, 0xC, 0);
+        
+        return data;
+    }
+    
+    private static void putInt(byte[] data, int offset, int val) {
+        for (int i = 0 ; i < 4 ; i++)
+            data[offset + i] = (byte) (val >> (i * 8));
+    }
+    
+    static File tempFile(String suffix, byte[] data) throws IOException {
+        File f = File.createTempFile("pokesheet-bench", suffix);
+        f.deleteOnExit();
+        
+        if (data != null) {
+            try (FileOutputStream out = new FileOutputStream(f)) {
+                out.write(data);
+            }
+        }
+        
+        return f;
+    }
+    
+    /**
+     * An output stream that discards everything, so encode benchmarks do not
+     * measure buffer growth.
+     */
+    static final class NullOutputStream extends OutputStream {
+        long count;
+        
+        @Override
+        public void write(int b) {
+            count++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
\ No newline at end of file
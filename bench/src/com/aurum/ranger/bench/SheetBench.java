@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.bench;
+
+import com.aurum.ranger.io.DataSheet;
+import com.aurum.ranger.io.SheetCache;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.jdom2.JDOMException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Opening a sheet file with {@link DataSheet#open}, from its
+ * {@link SheetCache} sidecar and from the XML. The uncached case also
+ * includes writing the sidecar again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SheetBench {
+    @Param({ "ZKND", "NPCD" })
+    public String shape;
+    
+    private File file;
+    
+    @Setup
+    public void setup() throws IOException {
+        file = Fixtures.tempFile(".xml", null);
+        DataSheet.save(file, Fixtures.sheet(shape));
+        SheetCache.sidecar(file).deleteOnExit();
+    }
+    
+    @Benchmark
+    public DataSheet open() throws IOException, JDOMException {
+        return DataSheet.open(file);
+    }
+    
+    @Benchmark
+    public DataSheet openUncached() throws IOException, JDOMException {
+        SheetCache.sidecar(file).delete();
+        return DataSheet.open(file);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.bench;
+
+import com.aurum.ranger.io.ContainerFormat;
+import com.aurum.ranger.io.DataSheet;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Streaming export and import through {@link ContainerFormat} in each text
+ * format, so the CSV and JSON Lines paths can be compared against XML on the
+ * same containers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TextBench {
+    @Param({ "ZKND", "NPCD" })
+    public String shape;
+    
+    @Param({ "1000", "100000", "1000000" })
+    public int entries;
+    
+    @Param({ "xml", "csv", "jsonl" })
+    public String format;
+    
+    private DataSheet sheet;
+    private File binary, text, out;
+    
+    @Setup
+    public void setup() throws IOException {
+        sheet = Fixtures.sheet(shape);
+        
+        binary = Fixtures.tempFile(".bin", Fixtures.container(sheet, entries));
+        text = Fixtures.tempFile("." + format, null);
+        out = Fixtures.tempFile(".out", null);
+        ContainerFormat.export(binary, sheet, text);
+    }
+    
+    @Benchmark
+    public File export() throws IOException {
+        ContainerFormat.export(binary, sheet, text);
+        return text;
+    }
+    
+    @Benchmark
+    public File compile() throws IOException {
+        ContainerFormat.compile(text, sheet, out);
+        return out;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.bench;
+
+import com.aurum.ranger.io.BinaryInputStream;
+import com.aurum.ranger.io.Container;
+import com.aurum.ranger.io.ContainerInputStream;
+import com.aurum.ranger.io.ContainerXmlReader;
+import com.aurum.ranger.io.ContainerXmlWriter;
+import com.aurum.ranger.io.DataSheet;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.jdom2.JDOMException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * XML export and import through temporary files. The XML form is about
+ * twenty times the binary size, so the largest default is 1M entries;
+ * {@code -p entries=10000000} works with enough disk space.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class XmlBench {
+    @Param({ "ZKND", "NPCD" })
+    public String shape;
+    
+    @Param({ "1000", "100000", "1000000" })
+    public int entries;
+    
+    private DataSheet sheet;
+    private Container container;
+    private File binary, xml, out;
+    
+    @Setup
+    public void setup() throws IOException {
+        sheet = Fixtures.sheet(shape);
+        byte[] data = Fixtures.container(sheet, entries);
+        
+        container = new Container(sheet, true);
+        try (ContainerInputStream in = new ContainerInputStream(new BinaryInputStream(new ByteArrayInputStream(data)))) {
+            in.read(container);
+        }
+        
+        binary = Fixtures.tempFile(".bin", data);
+        xml = Fixtures.tempFile(".xml", null);
+        out = Fixtures.tempFile(".out", null);
+        Container.writeXml(xml, container);
+    }
+    
+    @Benchmark
+    public File writeXml() throws IOException {
+        Container.writeXml(out, container);
+        return out;
+    }
+    
+    @Benchmark
+    public File exportXml() throws IOException {
+        ContainerXmlWriter.export(binary, sheet, out);
+        return out;
+    }
+    
+    @Benchmark
+    public Container readXml() throws IOException, JDOMException {
+        return Container.readXml(xml, sheet);
+    }
+    
+    @Benchmark
+    public File compileXml() throws IOException {
+        ContainerXmlReader.compile(xml, sheet, out);
+        return out;
+    }
+}
\ No newline at end of file
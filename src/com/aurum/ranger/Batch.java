@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger;
+
+import com.aurum.ranger.io.ContainerFormat;
+import com.aurum.ranger.io.SheetRegistry;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Converts many containers in one process. Jobs come either from a manifest
+ * file or from a directory of container files, and run on a pool of worker
+ * threads. Sheets come from a shared {@link SheetRegistry}, so each one is
+ * parsed and compiled only once. A failing job is reported and does not stop
+ * the others.
+ */
+public class Batch {
+    /**
+     * A single conversion, the same as one {@code -d} or {@code -c} command.
+     * Without a sheet file, the sheet is picked by magic or root element name.
+     */
+    public static class Job {
+        public final boolean decode;
+        public final File sheet, input, output;
+        
+        public Job(boolean decode, File sheet, File input, File output) {
+            this.decode = decode;
+            this.sheet = sheet;
+            this.input = input;
+            this.output = output;
+        }
+        
+        @Override
+        public String toString() {
+            return (decode ? "-d " : "-c ") + (sheet != null ? sheet + " " : "") + input + " " + output;
+        }
+    }
+    
+    private final List<Job> jobs = new ArrayList();
+    private final SheetRegistry sheets;
+    private final List<String> failures = new ArrayList();
+    private int converted;
+    
+    public Batch(SheetRegistry sheets) {
+        this.sheets = sheets;
+    }
+    
+    public List<Job> jobs() {
+        return jobs;
+    }
+    
+    /**
+     * Returns the failure messages of the last run, one per failed job.
+     * @return the failure messages.
+     */
+    public List<String> failures() {
+        return failures;
+    }
+    
+    /**
+     * Returns the number of jobs that succeeded in the last run.
+     * @return the number of converted files.
+     */
+    public int converted() {
+        return converted;
+    }
+    
+    private static File resolve(File dir, String path) {
+        File f = new File(path);
+        return f.isAbsolute() ? f : new File(dir, path);
+    }
+    
+    /**
+     * Parses a single {@code -d [sheet] container text} or {@code -c [sheet]
+     * text container} command.
+     * @param args the command and its arguments
+     * @param sheetDir the directory relative sheet paths are resolved against
+     * @param dir the directory other relative paths are resolved against
+     * @return the job, or {@code null} if the command is invalid.
+     */
+    static Job parseJob(String[] args, File sheetDir, File dir) {
+        if (args.length < 3 || args.length > 4 || !(args[0].equals("-d") || args[0].equals("-c")))
+            return null;
+        
+        int i = args.length - 2;
+        File sheet = args.length == 4 ? resolve(sheetDir, args[1]) : null;
+        return new Job(args[0].equals("-d"), sheet, resolve(dir, args[i]), resolve(dir, args[i + 1]));
+    }
+    
+    /**
+     * Reads jobs from a manifest. Every line holds one command in the same
+     * form as the command line, {@code -d [sheet] container xml} or
+     * {@code -c [sheet] xml container}. Sheets are looked up in the sheets
+     * directory, other relative paths are relative to the manifest. Empty
+     * lines and lines starting with {@code #} are skipped.
+     * @param manifest the manifest file
+     * @param sheetDir the sheets directory
+     * @param sheets the sheet registry
+     * @return the batch.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public static Batch fromManifest(File manifest, File sheetDir, SheetRegistry sheets) throws IOException {
+        Batch b = new Batch(sheets);
+        File dir = manifest.getAbsoluteFile().getParentFile();
+        
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), Charset.forName("UTF-8")))) {
+            String line;
+            int num = 0;
+            
+            while ((line = in.readLine()) != null) {
+                num++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                
+                Job job = parseJob(line.split("\\s+"), sheetDir, dir);
+                if (job == null)
+                    throw new IllegalArgumentException("Invalid manifest line " + num + ": " + line);
+                b.jobs.add(job);
+            }
+        }
+        
+        return b;
+    }
+    
+    /**
+     * Creates a job for every container file in a directory, which is decoded
+     * to {@code <name>.xml} in the output directory. The sheet for each file
+     * is picked by the magic in its header.
+     * @param dir the directory of container files
+     * @param outDir the output directory
+     * @param sheets the sheet registry
+     * @return the batch.
+     */
+    public static Batch fromDirectory(File dir, File outDir, SheetRegistry sheets) {
+        Batch b = new Batch(sheets);
+        
+        File[] files = dir.listFiles();
+        if (files == null)
+            throw new IllegalArgumentException(dir + " is not a directory");
+        Arrays.sort(files);
+        
+        for (File f : files) {
+            if (f.isFile() && !f.isHidden())
+                b.jobs.add(new Job(true, null, f, new File(outDir, f.getName() + ".xml")));
+        }
+        
+        return b;
+    }
+    
+    /**
+     * Runs a single job. The output file is only replaced once the conversion
+     * is complete, so a failed job leaves it as it was.
+     * @param job the job
+     * @param sheets the sheet registry
+     * @throws Exception if the conversion fails.
+     */
+    static void convert(Job job, SheetRegistry sheets) throws Exception {
+        if (job.sheet == null) {
+            if (job.decode)
+                ContainerFormat.export(job.input, sheets, job.output);
+            else
+                ContainerFormat.compile(job.input, sheets, job.output);
+        }
+        else {
+            if (job.decode)
+                ContainerFormat.export(job.input, sheets.open(job.sheet), job.output);
+            else
+                ContainerFormat.compile(job.input, sheets.open(job.sheet), job.output);
+        }
+    }
+    
+    /**
+     * Runs all jobs on a fixed pool of worker threads.
+     * @param threads the number of worker threads
+     * @return {@code true} if every job succeeded.
+     * @throws InterruptedException if the current thread is interrupted.
+     */
+    public boolean run(int threads) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        List<Future<?>> results = new ArrayList();
+        
+        failures.clear();
+        converted = 0;
+        
+        try {
+            for (final Job job : jobs) {
+                results.add(pool.submit(() -> {
+                    convert(job, sheets);
+                    return null;
+                }));
+            }
+            
+            for (int i = 0 ; i < jobs.size() ; i++) {
+                try {
+                    results.get(i).get();
+                    converted++;
+                }
+                catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    failures.add(jobs.get(i).input + ": " + (cause.getMessage() != null ? cause.getMessage() : cause.toString()));
+                }
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        
+        return failures.isEmpty();
+    }
+}
\ No newline at end of file
@@ -41,30 +41,34 @@ public class BitConverter {
     }
     
     public static short toShort(byte[] data, ByteOrder endian, int offset) {
-        byte[] bytes = new byte[Short.BYTES];
-        for (int i = 0 ; i < Short.BYTES ; i++)
-            bytes[i] = data[i+offset];
-        bytes = endian == ByteOrder.LITTLE_ENDIAN ? reverse(bytes) : bytes;
+        if (endian == ByteOrder.LITTLE_ENDIAN)
+            return (short) (
+                    ((data[offset + 1] & 0xFF) << 8)
+                    | (data[offset] & 0xFF)
+                    );
         return (short) (
-                ((bytes[0] & 0xFF) << 8)
-                | (bytes[1] & 0xFF)
+                ((data[offset] & 0xFF) << 8)
+                | (data[offset + 1] & 0xFF)
                 );
     }
     
     public static int toUShort(byte[] data, ByteOrder endian, int offset) {
-        return (int) (toShort(data, endian, offset) & 0xFFFF);
+        return toShort(data, endian, offset) & 0xFFFF;
     }
     
     public static int toInt(byte[] data, ByteOrder endian, int offset) {
-        byte[] bytes = new byte[Integer.BYTES];
-        for (int i = 0 ; i < Integer.BYTES ; i++)
-            bytes[i] = data[i+offset];
-        bytes = endian == ByteOrder.LITTLE_ENDIAN ? reverse(bytes) : bytes;
-        return (int) (
-                ((bytes[0] & 0xFF) << 24)
-                | ((bytes[1] & 0xFF) << 16)
-                | ((bytes[2] & 0xFF) << 8)
-                | (bytes[3] & 0xFF)
+        if (endian == ByteOrder.LITTLE_ENDIAN)
+            return (
+                    ((data[offset + 3] & 0xFF) << 24)
+                    | ((data[offset + 2] & 0xFF) << 16)
+                    | ((data[offset + 1] & 0xFF) << 8)
+                    | (data[offset] & 0xFF)
+                    );
+        return (
+                ((data[offset] & 0xFF) << 24)
+                | ((data[offset + 1] & 0xFF) << 16)
+                | ((data[offset + 2] & 0xFF) << 8)
+                | (data[offset + 3] & 0xFF)
                 );
     }
     
@@ -73,20 +77,11 @@ public class BitConverter {
     }
     
     public static long toLong(byte[] data, ByteOrder endian, int offset) {
-        byte[] bytes = new byte[Long.BYTES];
-        for (int i = 0 ; i < Long.BYTES ; i++)
-            bytes[i] = data[i+offset];
-        bytes = endian == ByteOrder.LITTLE_ENDIAN ? reverse(bytes) : bytes;
-        return (long) (
-                ((long) (bytes[0] & 0xFF) << 56)
-                | ((long) (bytes[1] & 0xFF) << 48)
-                | ((long) (bytes[2] & 0xFF) << 40)
-                | ((long) (bytes[3] & 0xFF) << 32)
-                | ((long) (bytes[4] & 0xFF) << 24)
-                | ((long) (bytes[5] & 0xFF) << 16)
-                | ((long) (bytes[6] & 0xFF) << 8)
-                | (long) (bytes[7] & 0xFF)
-                );
+        if (endian == ByteOrder.LITTLE_ENDIAN)
+            return (toInt(data, endian, offset) & 0xFFFFFFFFL)
+                    | ((long) toInt(data, endian, offset + 4) << 32);
+        return ((long) toInt(data, endian, offset) << 32)
+                | (toInt(data, endian, offset + 4) & 0xFFFFFFFFL);
     }
     
     public static float toFloat(byte[] data, ByteOrder endian, int offset) {
@@ -105,33 +100,75 @@ public class BitConverter {
         return data[offset] != 0;
     }
     
+    public static void putShort(byte[] data, ByteOrder endian, int offset, short val) {
+        if (endian == ByteOrder.LITTLE_ENDIAN) {
+            data[offset] = (byte) (val & 0xFF);
+            data[offset + 1] = (byte) ((val >> 8) & 0xFF);
+        }
+        else {
+            data[offset] = (byte) ((val >> 8) & 0xFF);
+            data[offset + 1] = (byte) (val & 0xFF);
+        }
+    }
+    
+    public static void putInt(byte[] data, ByteOrder endian, int offset, int val) {
+        if (endian == ByteOrder.LITTLE_ENDIAN) {
+            data[offset] = (byte) (val & 0xFF);
+            data[offset + 1] = (byte) ((val >> 8) & 0xFF);
+            data[offset + 2] = (byte) ((val >> 16) & 0xFF);
+            data[offset + 3] = (byte) ((val >> 24) & 0xFF);
+        }
+        else {
+            data[offset] = (byte) ((val >> 24) & 0xFF);
+            data[offset + 1] = (byte) ((val >> 16) & 0xFF);
+            data[offset + 2] = (byte) ((val >> 8) & 0xFF);
+            data[offset + 3] = (byte) (val & 0xFF);
+        }
+    }
+    
+    public static void putLong(byte[] data, ByteOrder endian, int offset, long val) {
+        if (endian == ByteOrder.LITTLE_ENDIAN) {
+            putInt(data, endian, offset, (int) val);
+            putInt(data, endian, offset + 4, (int) (val >> 32));
+        }
+        else {
+            putInt(data, endian, offset, (int) (val >> 32));
+            putInt(data, endian, offset + 4, (int) val);
+        }
+    }
+    
+    public static void putFloat(byte[] data, ByteOrder endian, int offset, float val) {
+        putInt(data, endian, offset, Float.floatToIntBits(val));
+    }
+    
+    public static void putDouble(byte[] data, ByteOrder endian, int offset, double val) {
+        putLong(data, endian, offset, Double.doubleToLongBits(val));
+    }
+    
+    public static void putCharacter(byte[] data, ByteOrder endian, int offset, char val) {
+        putShort(data, endian, offset, (short) val);
+    }
+    
+    public static void putBoolean(byte[] data, int offset, boolean val) {
+        data[offset] = (byte) (val ? 1 : 0);
+    }
+    
     public static byte[] getBytes(short val, ByteOrder endian) {
         byte[] bytes = new byte[Short.BYTES];
-        bytes[0] = (byte) ((val >> 8) & 0xFF);
-        bytes[1] = (byte) (val & 0xFF);
-        return endian == ByteOrder.LITTLE_ENDIAN ? reverse(bytes) : bytes;
+        putShort(bytes, endian, 0, val);
+        return bytes;
     }
     
     public static byte[] getBytes(int val, ByteOrder endian) {
         byte[] bytes = new byte[Integer.BYTES];
-        bytes[0] = (byte) ((val >> 24) & 0xFF);
-        bytes[1] = (byte) ((val >> 16) & 0xFF);
-        bytes[2] = (byte) ((val >> 8) & 0xFF);
-        bytes[3] = (byte) (val & 0xFF);
-        return endian == ByteOrder.LITTLE_ENDIAN ? reverse(bytes) : bytes;
+        putInt(bytes, endian, 0, val);
+        return bytes;
     }
     
     public static byte[] getBytes(long val, ByteOrder endian) {
         byte[] bytes = new byte[Long.BYTES];
-        bytes[0] = (byte) ((val >> 56) & 0xFF);
-        bytes[1] = (byte) ((val >> 48) & 0xFF);
-        bytes[2] = (byte) ((val >> 40) & 0xFF);
-        bytes[3] = (byte) ((val >> 32) & 0xFF);
-        bytes[4] = (byte) ((val >> 24) & 0xFF);
-        bytes[5] = (byte) ((val >> 16) & 0xFF);
-        bytes[6] = (byte) ((val >> 8) & 0xFF);
-        bytes[7] = (byte) (val & 0xFF);
-        return endian == ByteOrder.LITTLE_ENDIAN ? reverse(bytes) : bytes;
+        putLong(bytes, endian, 0, val);
+        return bytes;
     }
     
     public static byte[] getBytes(float val, ByteOrder endian) {
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger;
+
+import com.aurum.ranger.io.SheetRegistry;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves conversions to other processes over a local socket, so that sheets
+ * stay parsed and compiled and the codecs stay JIT-compiled between files.
+ * <p>
+ * The daemon only listens on the loopback interface. A request is one line of
+ * UTF-8 text holding the token of the daemon and a {@code -d} or {@code -c}
+ * command with its arguments, separated by tabs, exactly as they would be
+ * given on the command line but with absolute paths. A relative sheet path is
+ * looked up in the sheets directory; relative container and text paths would
+ * depend on the working directory of the daemon and are refused. Each request
+ * is answered with a line {@code OK} or {@code ERR} followed by a tab and the
+ * error message. A connection may send any number of requests, and every
+ * connection is served on its own thread.
+ * <p>
+ * The token is a random string that the daemon writes to its token file in
+ * the home directory when it starts, readable only by the user running it.
+ * Requests without the right token are refused, so other users of the same
+ * machine cannot make the daemon read or write files on their behalf.
+ */
+public class Daemon implements Closeable {
+    public static final int DEFAULT_PORT = 47470;
+    
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    private final SheetRegistry sheets;
+    private final File sheetDir;
+    private final ServerSocket server;
+    private final ExecutorService pool;
+    private final byte[] token;
+    private final File tokenFile;
+    
+    /**
+     * Creates a daemon listening on a loopback port and writes a new token to
+     * the token file of the port.
+     * @param sheetDir the sheets directory
+     * @param sheets the sheet registry
+     * @param port the port, or 0 to pick a free one
+     * @throws IOException if the port cannot be bound or the token file
+     *         cannot be written.
+     */
+    public Daemon(File sheetDir, SheetRegistry sheets, int port) throws IOException {
+        this.sheetDir = sheetDir;
+        this.sheets = sheets;
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.tokenFile = tokenFile(server.getLocalPort());
+        
+        byte[] rnd = new byte[32];
+        new SecureRandom().nextBytes(rnd);
+        char[] hex = new char[rnd.length * 2];
+        for (int i = 0 ; i < rnd.length ; i++) {
+            hex[i * 2] = HEX[(rnd[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[rnd[i] & 0xF];
+        }
+        this.token = new String(hex).getBytes(UTF8);
+        
+        try {
+            // temporary files are created readable by the owner only
+            Path tmp = Files.createTempFile(tokenFile.getAbsoluteFile().getParentFile().toPath(), tokenFile.getName(), ".tmp");
+            try {
+                Files.write(tmp, token);
+                Files.move(tmp, tokenFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+        catch (IOException ex) {
+            server.close();
+            throw ex;
+        }
+        
+        this.pool = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "pokesheet-daemon");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+    
+    /**
+     * Returns the file holding the token of the daemon on a port, which is
+     * {@code .pokesheet-daemon-<port>} in the home directory.
+     * @param port the port of the daemon
+     * @return the token file.
+     */
+    public static File tokenFile(int port) {
+        return new File(System.getProperty("user.home"), ".pokesheet-daemon-" + port);
+    }
+    
+    /**
+     * Returns the port the daemon listens on.
+     * @return the port.
+     */
+    public int port() {
+        return server.getLocalPort();
+    }
+    
+    /**
+     * Accepts connections until the daemon is closed.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void serve() throws IOException {
+        while (!server.isClosed()) {
+            Socket s;
+            try {
+                s = server.accept();
+            }
+            catch (SocketException ex) {
+                if (server.isClosed())
+                    return;
+                throw ex;
+            }
+            pool.execute(() -> handle(s));
+        }
+    }
+    
+    private void handle(Socket s) {
+        try (Socket socket = s;
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF8));
+                Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), UTF8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty())
+                    continue;
+                
+                String[] args = line.split("\t");
+                if (!MessageDigest.isEqual(token, args[0].getBytes(UTF8)))
+                    out.write("ERR\tInvalid token");
+                else
+                    out.write(execute(Arrays.copyOfRange(args, 1, args.length)));
+                out.write('\n');
+                out.flush();
+            }
+        }
+        catch (IOException ex) {
+            // the client went away
+        }
+    }
+    
+    /**
+     * Runs a single request.
+     * @param args the command and its arguments
+     * @return the response line.
+     */
+    String execute(String[] args) {
+        Batch.Job job = Batch.parseJob(args, sheetDir, null);
+        if (job == null)
+            return "ERR\tInvalid request: " + String.join(" ", args);
+        if (!job.input.isAbsolute() || !job.output.isAbsolute())
+            return "ERR\tPaths must be absolute: " + String.join(" ", args);
+        
+        try {
+            Batch.convert(job, sheets);
+            return "OK";
+        }
+        catch (Exception ex) {
+            String msg = ex.getMessage() != null ? ex.getMessage() : ex.toString();
+            return "ERR\t" + msg.replace('\n', ' ');
+        }
+    }
+    
+    /**
+     * Stops accepting connections and deletes the token file. Requests that
+     * are running are finished.
+     * @throws IOException if an I/O exception occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            server.close();
+        }
+        finally {
+            pool.shutdown();
+            tokenFile.delete();
+        }
+    }
+    
+    /**
+     * Sends a {@code -d} or {@code -c} command to a daemon and waits for it
+     * to finish. Relative paths are resolved against the working directory
+     * of the calling process first, and the token is read from the token
+     * file of the port.
+     * @param port the port of the daemon
+     * @param args the command and its arguments
+     * @return {@code null} if the command succeeded, otherwise the error
+     *         message.
+     * @throws IOException if the daemon cannot be reached or its token file
+     *         cannot be read.
+     */
+    public static String send(int port, String... args) throws IOException {
+        String token = new String(Files.readAllBytes(tokenFile(port).toPath()), UTF8).trim();
+        StringBuilder req = new StringBuilder(token);
+        req.append('\t').append(args[0]);
+        for (int i = 1 ; i < args.length ; i++)
+            req.append('\t').append(new File(args[i]).getAbsolutePath());
+        req.append('\n');
+        
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF8));
+                Writer out = new OutputStreamWriter(socket.getOutputStream(), UTF8)) {
+            out.write(req.toString());
+            out.flush();
+            
+            String resp = in.readLine();
+            if (resp == null)
+                throw new IOException("The daemon closed the connection");
+            if (resp.equals("OK"))
+                return null;
+            return resp.startsWith("ERR\t") ? resp.substring(4) : resp;
+        }
+    }
+}
\ No newline at end of file
@@ -17,39 +17,256 @@
 
 package com.aurum.ranger;
 
-import com.aurum.ranger.io.Container;
-import com.aurum.ranger.io.BinaryInputStream;
-import com.aurum.ranger.io.BinaryOutputStream;
-import com.aurum.ranger.io.ContainerInputStream;
-import com.aurum.ranger.io.ContainerOutputStream;
+import com.aurum.ranger.io.ContainerDiff;
+import com.aurum.ranger.io.ContainerFormat;
+import com.aurum.ranger.io.ContainerIndex;
+import com.aurum.ranger.io.ContainerPatcher;
+import com.aurum.ranger.io.ConversionCache;
 import com.aurum.ranger.io.DataSheet;
+import com.aurum.ranger.io.FieldIndex;
+import com.aurum.ranger.io.MappedContainer;
+import com.aurum.ranger.io.Metrics;
+import com.aurum.ranger.io.Query;
+import com.aurum.ranger.io.SheetRegistry;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.jdom2.JDOMException;
 
 public class Main {
-    public static void main(String[] args) throws IOException, JDOMException {
-        if (args.length != 4)
+    public static void main(String[] args) throws IOException, JDOMException, InterruptedException {
+        args = stats(args);
+        if (args.length < 1)
             return;
         
+        String cache = System.getProperty("pokesheet.cache");
+        if (cache != null)
+            ConversionCache.setShared(new ConversionCache(new File(cache), Long.getLong("pokesheet.cache.size", 512) << 20));
+        
         switch(args[0]) {
             case "-d": {
-                DataSheet s = DataSheet.open(args[1]);
-                Container c = new Container(s);
-                ContainerInputStream in = new ContainerInputStream(new BinaryInputStream(new FileInputStream(new File(args[2]))));
-                in.read(c);
-                Container.writeXml(args[3], c);
+                if (args.length == 3) {
+                    SheetRegistry reg = SheetRegistry.load(sheetDir());
+                    ContainerFormat.export(new File(args[1]), reg, new File(args[2]));
+                }
+                else if (args.length == 4) {
+                    DataSheet s = DataSheet.open(args[1]);
+                    ContainerFormat.export(new File(args[2]), s, new File(args[3]));
+                }
                 break;
             }
             case "-c": {
+                if (args.length == 3) {
+                    SheetRegistry reg = SheetRegistry.load(sheetDir());
+                    ContainerFormat.compile(new File(args[1]), reg, new File(args[2]));
+                }
+                else if (args.length == 4) {
+                    DataSheet s = DataSheet.open(args[1]);
+                    ContainerFormat.compile(new File(args[2]), s, new File(args[3]));
+                }
+                break;
+            }
+            case "-b": {
+                batch(args);
+                break;
+            }
+            case "-s": {
+                if (args.length > 2)
+                    return;
+                
+                File dir = args.length == 2 ? new File(args[1]) : sheetDir();
+                try (Daemon d = new Daemon(dir, SheetRegistry.load(dir), port())) {
+                    System.out.println("Listening on port " + d.port());
+                    d.serve();
+                }
+                break;
+            }
+            case "-w": {
+                if (args.length != 4)
+                    return;
+                
+                File out = new File(args[3]);
+                out.mkdirs();
+                try (Watcher w = new Watcher(new File(args[2]), out, SheetRegistry.load(new File(args[1])))) {
+                    w.run();
+                }
+                break;
+            }
+            case "-r": {
+                if (args.length < 4 || args.length > 5)
+                    return;
+                
+                String[] cmd = new String[args.length - 1];
+                System.arraycopy(args, 1, cmd, 0, cmd.length);
+                String err = Daemon.send(port(), cmd);
+                if (err != null) {
+                    System.err.println(err);
+                    System.exit(1);
+                }
+                break;
+            }
+            case "-p": {
+                if (args.length < 6 || (args.length - 3) % 3 != 0)
+                    return;
+                
+                int n = (args.length - 3) / 3;
+                int[] entries = new int[n];
+                String[] fields = new String[n], values = new String[n];
+                for (int i = 0 ; i < n ; i++) {
+                    entries[i] = Integer.parseInt(args[3 + i * 3]);
+                    fields[i] = args[4 + i * 3];
+                    values[i] = args[5 + i * 3];
+                }
+                
+                DataSheet s = DataSheet.open(args[1]);
+                try (ContainerPatcher p = ContainerPatcher.open(args[2], s)) {
+                    p.parse(entries, fields, values);
+                }
+                break;
+            }
+            case "-q": {
+                if (args.length != 5)
+                    return;
+                
+                Query q = Query.compile(args[3], DataSheet.open(args[1]));
+                int matches = q.export(new File(args[2]), new File(args[4]));
+                System.out.println(matches + " entries match");
+                break;
+            }
+            case "-l": {
+                if (args.length != 5)
+                    return;
+                
+                DataSheet s = DataSheet.open(args[1]);
+                File f = new File(args[2]);
+                FieldIndex fi = ContainerIndex.open(f, s).get(args[3]);
+                int[] found = fi.lookup(FieldIndex.parseKey(fi.type(), args[4]));
+                
+                try (MappedContainer c = MappedContainer.open(f, s)) {
+                    for (int e : found)
+                        System.out.println(e + ":\n" + c.getEntry(e));
+                }
+                System.out.println(found.length + " entries found");
+                break;
+            }
+            case "-x": {
+                if (args.length != 4 && args.length != 5)
+                    return;
+                
                 DataSheet s = DataSheet.open(args[1]);
-                Container c = Container.readXml(args[2], s);
-                ContainerOutputStream out = new ContainerOutputStream(new BinaryOutputStream(new FileOutputStream(new File(args[3]))));
-                out.write(c);
+                File a = new File(args[2]), b = new File(args[3]);
+                int changed;
+                
+                if (args.length == 5) {
+                    try (PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[4]), StandardCharsets.UTF_8)))) {
+                        out.print("entry\tfield\told\tnew\n");
+                        changed = ContainerDiff.compare(a, b, s, c -> out.print(c.entry + "\t" + c.field + "\t"
+                                + (c.oldValue != null ? c.oldValue : "") + "\t" + (c.newValue != null ? c.newValue : "") + "\n"));
+                    }
+                }
+                else
+                    changed = ContainerDiff.compare(a, b, s, System.out::println);
+                
+                System.out.println(changed + " entries differ");
+                if (changed > 0)
+                    System.exit(1);
                 break;
             }
         }
     }
+    
+    /**
+     * Returns the directory to load sheets from when none is given. This is
+     * the {@code pokesheet.sheets} system property if set, otherwise the
+     * {@code sheets} directory next to the jar, otherwise {@code ./sheets}.
+     * @return the sheets directory.
+     */
+    public static File sheetDir() {
+        String prop = System.getProperty("pokesheet.sheets");
+        if (prop != null)
+            return new File(prop);
+        
+        try {
+            File jar = new File(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            File dir = new File(jar.getParentFile(), "sheets");
+            if (jar.isFile() && dir.isDirectory())
+                return dir;
+        }
+        catch (Exception ex) {
+            // not loaded from a jar file
+        }
+        
+        return new File("sheets");
+    }
+    
+    /**
+     * Removes the {@code --stats} flag from the arguments. If it is given, the
+     * phase timings collected by {@link Metrics} are printed to standard error
+     * as JSON when the program exits, including through {@code System.exit}.
+     * @param args the arguments
+     * @return the arguments without the flag.
+     */
+    private static String[] stats(String[] args) {
+        List<String> ret = new ArrayList(Arrays.asList(args));
+        if (!ret.remove("--stats"))
+            return args;
+        
+        while (ret.remove("--stats"));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.println(Metrics.toJson())));
+        return ret.toArray(new String[ret.size()]);
+    }
+    
+    /**
+     * Returns the port of the conversion daemon, which is the
+     * {@code pokesheet.port} system property if set.
+     * @return the port.
+     */
+    public static int port() {
+        return Integer.getInteger("pokesheet.port", Daemon.DEFAULT_PORT);
+    }
+    
+    private static void batch(String[] args) throws IOException, JDOMException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int argc = args.length;
+        
+        if (argc >= 2 && args[argc - 2].equals("-j")) {
+            threads = Integer.parseInt(args[argc - 1]);
+            argc -= 2;
+        }
+        if (argc != 3 && argc != 4)
+            return;
+        
+        File sheetDir = new File(args[1]);
+        SheetRegistry sheets = SheetRegistry.load(sheetDir);
+        File input = new File(args[2]);
+        Batch b;
+        
+        if (input.isDirectory()) {
+            if (argc != 4)
+                return;
+            File output = new File(args[3]);
+            output.mkdirs();
+            b = Batch.fromDirectory(input, output, sheets);
+        }
+        else
+            b = Batch.fromManifest(input, sheetDir, sheets);
+        
+        long start = System.nanoTime();
+        boolean ok = b.run(threads);
+        long ms = (System.nanoTime() - start) / 1000000;
+        
+        for (String f : b.failures())
+            System.err.println("FAILED " + f);
+        System.out.println(b.converted() + " converted, " + b.failures().size() + " failed in " + ms + " ms (" + threads + " threads)");
+        
+        if (!ok)
+            System.exit(1);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger;
+
+import com.aurum.ranger.io.SheetRegistry;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a directory of XML files and compiles every file that changes into
+ * a container, keeping the sheets loaded between files. A file named
+ * {@code <name>.xml} is compiled to {@code <name>} in the output directory,
+ * which is the reverse of decoding a directory with {@link Batch}. The sheet
+ * is picked by the root element name.
+ * <p>
+ * Editors often save a file in several steps, so a file is only compiled once
+ * no event has arrived for it for {@code DEBOUNCE_MS}. Files are compiled
+ * through {@link Batch#convert}, and {@link com.aurum.ranger.io.ContainerFormat}
+ * writes the container under a temporary name and then moves it into place,
+ * so programs that read it never see it half-written, and a failed compile
+ * leaves the previous container untouched.
+ */
+public class Watcher implements Closeable {
+    public static final long DEBOUNCE_MS = 100;
+    
+    private final File dir, outDir;
+    private final SheetRegistry sheets;
+    private final WatchService watch;
+    private final Map<File, Long> pending = new LinkedHashMap();
+    
+    /**
+     * Creates a watcher. Nothing is compiled before {@code run} is called.
+     * @param dir the directory of XML files
+     * @param outDir the directory to write containers to
+     * @param sheets the sheet registry
+     * @throws IOException if the directory cannot be watched.
+     */
+    public Watcher(File dir, File outDir, SheetRegistry sheets) throws IOException {
+        this.dir = dir;
+        this.outDir = outDir;
+        this.sheets = sheets;
+        this.watch = dir.toPath().getFileSystem().newWatchService();
+        dir.toPath().register(watch, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+    
+    private static boolean accept(File f) {
+        return f.getName().endsWith(".xml") && !f.isHidden();
+    }
+    
+    private File output(File xml) {
+        String name = xml.getName();
+        return new File(outDir, name.substring(0, name.length() - 4));
+    }
+    
+    /**
+     * Compiles every XML file whose container is missing or older than the
+     * XML file, for example after edits made while the watcher was stopped.
+     * @return the number of files that failed.
+     */
+    public int sync() {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return 0;
+        Arrays.sort(files);
+        
+        int failed = 0;
+        for (File f : files) {
+            if (f.isFile() && accept(f) && output(f).lastModified() < f.lastModified()) {
+                if (!compile(f))
+                    failed++;
+            }
+        }
+        return failed;
+    }
+    
+    /**
+     * Compiles a single XML file and reports the result.
+     * @param xml the XML file
+     * @return {@code true} if the file was compiled.
+     */
+    boolean compile(File xml) {
+        File out = output(xml);
+        long start = System.nanoTime();
+        
+        try {
+            Batch.convert(new Batch.Job(false, null, xml, out), sheets);
+        }
+        catch (Exception ex) {
+            System.err.println("FAILED " + xml + ": " + (ex.getMessage() != null ? ex.getMessage() : ex.toString()));
+            return false;
+        }
+        
+        long ms = (System.nanoTime() - start) / 1000000;
+        System.out.println("Compiled " + xml.getName() + " to " + out + " in " + ms + " ms");
+        return true;
+    }
+    
+    /**
+     * Waits for changes and compiles the changed files until the watcher is
+     * closed or the thread is interrupted. Files that changed before are
+     * compiled first.
+     * @throws InterruptedException if the current thread is interrupted.
+     */
+    public void run() throws InterruptedException {
+        sync();
+        
+        try {
+            while (true) {
+                WatchKey key;
+                if (pending.isEmpty())
+                    key = watch.take();
+                else {
+                    long wait = pending.values().iterator().next() - System.nanoTime();
+                    key = watch.poll(Math.max(0, wait), TimeUnit.NANOSECONDS);
+                }
+                
+                if (key != null) {
+                    for (WatchEvent<?> ev : key.pollEvents()) {
+                        if (ev.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            // events were lost, fall back to the timestamps
+                            pending.clear();
+                            sync();
+                            continue;
+                        }
+                        
+                        File f = new File(dir, ((Path) ev.context()).toString());
+                        if (accept(f)) {
+                            // move the file to the back, its deadline is now the latest
+                            pending.remove(f);
+                            pending.put(f, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DEBOUNCE_MS));
+                        }
+                    }
+                    if (!key.reset())
+                        throw new IllegalStateException(dir + " can no longer be watched");
+                }
+                
+                long now = System.nanoTime();
+                for (Map.Entry<File, Long> e : pending.entrySet().toArray(new Map.Entry[0])) {
+                    if (e.getValue() - now > 0)
+                        break;
+                    
+                    pending.remove(e.getKey());
+                    if (e.getKey().isFile())
+                        compile(e.getKey());
+                }
+            }
+        }
+        catch (ClosedWatchServiceException ex) {
+            // closed from another thread
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        watch.close();
+    }
+}
\ No newline at end of file
@@ -20,24 +20,70 @@ package com.aurum.ranger.io;
 import static com.aurum.ranger.ByteOrder.*;
 import com.aurum.ranger.BitConverter;
 import com.aurum.ranger.ByteOrder;
+import java.io.EOFException;
 import java.io.InputStream;
 import java.io.IOException;
 
 public class BinaryInputStream extends InputStream {
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    
     protected volatile InputStream in;
     protected ByteOrder endian;
     
-    private final byte[] buff2 = new byte[2];
-    private final byte[] buff4 = new byte[4];
-    private final byte[] buff8 = new byte[8];
+    private final byte[] buf;
+    private int pos, limit;
     
     public BinaryInputStream(InputStream in) {
         this(in, LITTLE_ENDIAN);
     }
     
     public BinaryInputStream(InputStream in, ByteOrder endian) {
+        this(in, endian, DEFAULT_BUFFER_SIZE);
+    }
+    
+    /**
+     * Creates a binary input stream with a read buffer of the given size.
+     * The buffer is refilled from the underlying stream in as few reads as
+     * possible, and values are decoded straight from it.
+     * @param in the underlying input stream
+     * @param endian the byte order of multi-byte values
+     * @param size the buffer size, at least 8 bytes
+     */
+    public BinaryInputStream(InputStream in, ByteOrder endian, int size) {
+        if (size < Long.BYTES)
+            throw new IllegalArgumentException("Buffer size must be at least " + Long.BYTES + " bytes");
+        
         this.in = in;
         this.endian = endian;
+        this.buf = new byte[size];
+    }
+    
+    /**
+     * Makes sure that at least {@code n} bytes are buffered, reading from the
+     * underlying stream as often as needed.
+     * @param n the number of bytes, at most the buffer size
+     * @throws EOFException if the stream ends before {@code n} bytes are available.
+     * @throws IOException if an I/O exception occurs.
+     */
+    private void require(int n) throws IOException {
+        if (limit - pos >= n)
+            return;
+        
+        System.arraycopy(buf, pos, buf, 0, limit - pos);
+        limit -= pos;
+        pos = 0;
+        
+        while (limit < n) {
+            int r = in.read(buf, limit, buf.length - limit);
+            if (r < 0)
+                throw new EOFException("Unexpected end of stream (" + (n - limit) + " more bytes needed)");
+            limit += r;
+        }
+    }
+    
+    private static void checkBounds(int arrlen, int off, int len) {
+        if (off < 0 || len < 0 || len > arrlen - off)
+            throw new IndexOutOfBoundsException();
     }
     
     /**
@@ -47,29 +93,38 @@ public class BinaryInputStream extends InputStream {
      */
     @Override
     public void close() throws IOException {
+        pos = limit = 0;
         in.close();
     }
     
     /**
      * Reads the next byte of data from the input stream.
-     * @return the next byte.
+     * @return the next byte, or -1 if the end of the stream is reached.
      * @throws IOException if an I/O exception occurs.
      */
     @Override
     public int read() throws IOException {
-        return in.read();
+        if (pos == limit) {
+            int r = in.read(buf, 0, buf.length);
+            if (r <= 0)
+                return r < 0 ? -1 : in.read();
+            pos = 0;
+            limit = r;
+        }
+        return buf[pos++] & 0xFF;
     }
     
     /**
-     * Reads {@code b.length} bytes from the input stream and stores them into
-     * the buffer array {@code b}.
+     * Reads up to {@code b.length} bytes from the input stream and stores them
+     * into the buffer array {@code b}.
      * @param b the buffer into which the data is read
-     * @return the total number of bytes read into the buffer.
+     * @return the total number of bytes read into the buffer, or -1 if the end
+     *         of the stream is reached.
      * @throws IOException if an I/O exception occurs.
      */
     @Override
     public int read(byte[] b) throws IOException {
-        return in.read(b);
+        return read(b, 0, b.length);
     }
     
     /**
@@ -77,56 +132,118 @@ public class BinaryInputStream extends InputStream {
      * @param b the buffer into which the data is read
      * @param off the start offset in the array
      * @param len the number of bytes to be read
-     * @return the total number of bytes read into the buffer.
+     * @return the total number of bytes read into the buffer, or -1 if the end
+     *         of the stream is reached.
      * @throws IOException if an I/O exception occurs.
      */
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
-        return in.read(b, off, len);
+        checkBounds(b.length, off, len);
+        if (len == 0)
+            return 0;
+        
+        int n = limit - pos;
+        if (n == 0) {
+            if (len >= buf.length)
+                return in.read(b, off, len);
+            
+            int r = in.read(buf, 0, buf.length);
+            if (r <= 0)
+                return r;
+            pos = 0;
+            limit = n = r;
+        }
+        
+        n = Math.min(n, len);
+        System.arraycopy(buf, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+    
+    /**
+     * Reads exactly {@code b.length} bytes from the input stream.
+     * @param b the buffer into which the data is read
+     * @throws EOFException if the stream ends before the buffer is filled.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+    
+    /**
+     * Reads exactly {@code len} bytes from the input stream into an array of bytes.
+     * @param b the buffer into which the data is read
+     * @param off the start offset in the array
+     * @param len the number of bytes to be read
+     * @throws EOFException if the stream ends before {@code len} bytes are read.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        checkBounds(b.length, off, len);
+        
+        while (len > 0) {
+            int r = read(b, off, len);
+            if (r < 0)
+                throw new EOFException("Unexpected end of stream (" + len + " more bytes needed)");
+            off += r;
+            len -= r;
+        }
     }
     
     /**
      * Reads the next byte of data from the input stream.
      * @return the 8-bit value.
+     * @throws EOFException if the end of the stream is reached.
      * @throws IOException if an I/O exception occurs.
      */
     public byte readByte() throws IOException {
-        return (byte) in.read();
+        require(1);
+        return buf[pos++];
     }
     
     /**
      * Reads the next short value of data from the input stream.
      * @return the 16-bit value.
+     * @throws EOFException if the end of the stream is reached.
      * @throws IOException if an I/O exception occurs.
      */
     public short readShort() throws IOException {
-        read(buff2, 0, 2);
-        return BitConverter.toShort(buff2, endian, 0);
+        require(Short.BYTES);
+        short ret = BitConverter.toShort(buf, endian, pos);
+        pos += Short.BYTES;
+        return ret;
     }
     
     /**
      * Reads the next int value of data from the input stream.
      * @return the 32-bit value.
+     * @throws EOFException if the end of the stream is reached.
      * @throws IOException if an I/O exception occurs.
      */
     public int readInt() throws IOException {
-        read(buff4, 0, 4);
-        return BitConverter.toInt(buff4, endian, 0);
+        require(Integer.BYTES);
+        int ret = BitConverter.toInt(buf, endian, pos);
+        pos += Integer.BYTES;
+        return ret;
     }
     
     /**
      * Reads the next long value of data from the input stream.
      * @return the 64-bit value.
+     * @throws EOFException if the end of the stream is reached.
      * @throws IOException if an I/O exception occurs.
      */
     public long readLong() throws IOException {
-        read(buff8, 0, 8);
-        return BitConverter.toLong(buff8, endian, 0);
+        require(Long.BYTES);
+        long ret = BitConverter.toLong(buf, endian, pos);
+        pos += Long.BYTES;
+        return ret;
     }
     
     /**
      * Reads the next float value of data from the input stream.
      * @return the float value.
+     * @throws EOFException if the end of the stream is reached.
      * @throws IOException if an I/O exception occurs.
      */
     public float readFloat() throws IOException {
@@ -136,6 +253,7 @@ public class BinaryInputStream extends InputStream {
     /**
      * Reads the next double value of data from the input stream.
      * @return the double value.
+     * @throws EOFException if the end of the stream is reached.
      * @throws IOException if an I/O exception occurs.
      */
     public double readDouble() throws IOException {
@@ -145,6 +263,7 @@ public class BinaryInputStream extends InputStream {
     /**
      * Reads the next Unicode character of data from the input stream.
      * @return the Unicode character.
+     * @throws EOFException if the end of the stream is reached.
      * @throws IOException if an I/O exception occurs.
      */
     public char readChar() throws IOException {
@@ -154,10 +273,203 @@ public class BinaryInputStream extends InputStream {
     /**
      * Reads the next boolean value of data from the input stream.
      * @return the boolean value.
+     * @throws EOFException if the end of the stream is reached.
      * @throws IOException if an I/O exception occurs.
      */
     public boolean readBoolean() throws IOException {
-        return in.read() != 0x0;
+        return readByte() != 0x0;
+    }
+    
+    /**
+     * Fills the specified array with short values from the input stream.
+     * @param vals the array into which the values are read
+     * @throws EOFException if the end of the stream is reached.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void readShorts(short[] vals) throws IOException {
+        readShorts(vals, 0, vals.length);
+    }
+    
+    /**
+     * Reads {@code len} short values from the input stream into the specified
+     * array, starting at offset {@code off}.
+     * @param vals the array into which the values are read
+     * @param off the start offset in the array
+     * @param len the number of values to be read
+     * @throws EOFException if the end of the stream is reached.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void readShorts(short[] vals, int off, int len) throws IOException {
+        checkBounds(vals.length, off, len);
+        
+        while (len > 0) {
+            require(Short.BYTES);
+            int n = Math.min(len, (limit - pos) / Short.BYTES);
+            for (int i = 0 ; i < n ; i++, pos += Short.BYTES)
+                vals[off + i] = BitConverter.toShort(buf, endian, pos);
+            off += n;
+            len -= n;
+        }
+    }
+    
+    /**
+     * Fills the specified array with int values from the input stream.
+     * @param vals the array into which the values are read
+     * @throws EOFException if the end of the stream is reached.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void readInts(int[] vals) throws IOException {
+        readInts(vals, 0, vals.length);
+    }
+    
+    /**
+     * Reads {@code len} int values from the input stream into the specified
+     * array, starting at offset {@code off}.
+     * @param vals the array into which the values are read
+     * @param off the start offset in the array
+     * @param len the number of values to be read
+     * @throws EOFException if the end of the stream is reached.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void readInts(int[] vals, int off, int len) throws IOException {
+        checkBounds(vals.length, off, len);
+        
+        while (len > 0) {
+            require(Integer.BYTES);
+            int n = Math.min(len, (limit - pos) / Integer.BYTES);
+            for (int i = 0 ; i < n ; i++, pos += Integer.BYTES)
+                vals[off + i] = BitConverter.toInt(buf, endian, pos);
+            off += n;
+            len -= n;
+        }
+    }
+    
+    /**
+     * Fills the specified array with long values from the input stream.
+     * @param vals the array into which the values are read
+     * @throws EOFException if the end of the stream is reached.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void readLongs(long[] vals) throws IOException {
+        readLongs(vals, 0, vals.length);
+    }
+    
+    /**
+     * Reads {@code len} long values from the input stream into the specified
+     * array, starting at offset {@code off}.
+     * @param vals the array into which the values are read
+     * @param off the start offset in the array
+     * @param len the number of values to be read
+     * @throws EOFException if the end of the stream is reached.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void readLongs(long[] vals, int off, int len) throws IOException {
+        checkBounds(vals.length, off, len);
+        
+        while (len > 0) {
+            require(Long.BYTES);
+            int n = Math.min(len, (limit - pos) / Long.BYTES);
+            for (int i = 0 ; i < n ; i++, pos += Long.BYTES)
+                vals[off + i] = BitConverter.toLong(buf, endian, pos);
+            off += n;
+            len -= n;
+        }
+    }
+    
+    /**
+     * Fills the specified array with float values from the input stream.
+     * @param vals the array into which the values are read
+     * @throws EOFException if the end of the stream is reached.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void readFloats(float[] vals) throws IOException {
+        readFloats(vals, 0, vals.length);
+    }
+    
+    /**
+     * Reads {@code len} float values from the input stream into the specified
+     * array, starting at offset {@code off}.
+     * @param vals the array into which the values are read
+     * @param off the start offset in the array
+     * @param len the number of values to be read
+     * @throws EOFException if the end of the stream is reached.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void readFloats(float[] vals, int off, int len) throws IOException {
+        checkBounds(vals.length, off, len);
+        
+        while (len > 0) {
+            require(Float.BYTES);
+            int n = Math.min(len, (limit - pos) / Float.BYTES);
+            for (int i = 0 ; i < n ; i++, pos += Float.BYTES)
+                vals[off + i] = BitConverter.toFloat(buf, endian, pos);
+            off += n;
+            len -= n;
+        }
+    }
+    
+    /**
+     * Fills the specified array with double values from the input stream.
+     * @param vals the array into which the values are read
+     * @throws EOFException if the end of the stream is reached.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void readDoubles(double[] vals) throws IOException {
+        readDoubles(vals, 0, vals.length);
+    }
+    
+    /**
+     * Reads {@code len} double values from the input stream into the specified
+     * array, starting at offset {@code off}.
+     * @param vals the array into which the values are read
+     * @param off the start offset in the array
+     * @param len the number of values to be read
+     * @throws EOFException if the end of the stream is reached.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void readDoubles(double[] vals, int off, int len) throws IOException {
+        checkBounds(vals.length, off, len);
+        
+        while (len > 0) {
+            require(Double.BYTES);
+            int n = Math.min(len, (limit - pos) / Double.BYTES);
+            for (int i = 0 ; i < n ; i++, pos += Double.BYTES)
+                vals[off + i] = BitConverter.toDouble(buf, endian, pos);
+            off += n;
+            len -= n;
+        }
+    }
+    
+    /**
+     * Fills the specified array with boolean values from the input stream.
+     * @param vals the array into which the values are read
+     * @throws EOFException if the end of the stream is reached.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void readBooleans(boolean[] vals) throws IOException {
+        readBooleans(vals, 0, vals.length);
+    }
+    
+    /**
+     * Reads {@code len} boolean values from the input stream into the specified
+     * array, starting at offset {@code off}.
+     * @param vals the array into which the values are read
+     * @param off the start offset in the array
+     * @param len the number of values to be read
+     * @throws EOFException if the end of the stream is reached.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void readBooleans(boolean[] vals, int off, int len) throws IOException {
+        checkBounds(vals.length, off, len);
+        
+        while (len > 0) {
+            require(1);
+            int n = Math.min(len, (limit - pos) / 1);
+            for (int i = 0 ; i < n ; i++, pos += 1)
+                vals[off + i] = buf[pos] != 0x0;
+            off += n;
+            len -= n;
+        }
     }
     
     /**
@@ -167,45 +479,58 @@ public class BinaryInputStream extends InputStream {
      */
     @Override
     public int available() throws IOException {
-        return in.available();
+        int n = limit - pos;
+        int a = in.available();
+        return n > Integer.MAX_VALUE - a ? Integer.MAX_VALUE : n + a;
     }
     
     /**
-     * Skips over and discards {@code a} bytes of data from this input stream.
+     * Skips over and discards {@code n} bytes of data from this input stream.
      * @param n the number of bytes to be skipped
      * @return the number of actual bytes skipped.
      * @throws IOException if an I/O exception occurs.
      */
     @Override
     public long skip(long n) throws IOException {
-        return in.skip(n);
+        if (n <= 0)
+            return 0;
+        
+        int buffered = limit - pos;
+        if (n <= buffered) {
+            pos += (int) n;
+            return n;
+        }
+        
+        pos = limit = 0;
+        return buffered + in.skip(n - buffered);
     }
     
     /**
-     * Tests if this input stream supports marked positions.
-     * @return {@code true} if this input stream supports marked positions.
+     * Tests if this input stream supports marked positions. Since data is
+     * read ahead into an internal buffer, marked positions are not supported.
+     * @return {@code false}.
      */
     @Override
     public boolean markSupported() {
-        return in.markSupported();
+        return false;
     }
     
     /**
-     * Marks the current position in this input stream.
+     * Does nothing, marked positions are not supported.
      * @param readLimit the maximum limit of bytes that can be read
      *                  before the mark position becomes invalid
      */
     @Override
     public synchronized void mark(int readLimit) {
-        in.mark(readLimit);
+        // nope...
     }
     
     /**
-     * Repositions this stream to the position where the input stream was last called.
-     * @throws IOException if an I/O exception occurs.
+     * Always fails, marked positions are not supported.
+     * @throws IOException always.
      */
     @Override
     public synchronized void reset() throws IOException {
-        in.reset();
+        throw new IOException("mark/reset not supported");
     }
 }
\ No newline at end of file
@@ -24,16 +24,54 @@ import java.io.OutputStream;
 import java.io.IOException;
 
 public class BinaryOutputStream extends OutputStream {
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    
     protected volatile OutputStream out;
     protected ByteOrder endian;
     
+    private final byte[] buf;
+    private int count;
+    
     public BinaryOutputStream(OutputStream out) {
         this(out, LITTLE_ENDIAN);
     }
     
     public BinaryOutputStream(OutputStream out, ByteOrder endian) {
+        this(out, endian, DEFAULT_BUFFER_SIZE);
+    }
+    
+    /**
+     * Creates a binary output stream with an encode buffer of the given size.
+     * Values are encoded into the buffer and passed on to the underlying
+     * stream once it is full, or when this stream is flushed or closed.
+     * @param out the underlying output stream
+     * @param endian the byte order of multi-byte values
+     * @param size the buffer size, at least 8 bytes
+     */
+    public BinaryOutputStream(OutputStream out, ByteOrder endian, int size) {
+        if (size < Long.BYTES)
+            throw new IllegalArgumentException("Buffer size must be at least " + Long.BYTES + " bytes");
+        
         this.out = out;
         this.endian = endian;
+        this.buf = new byte[size];
+    }
+    
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+    
+    private void ensure(int len) throws IOException {
+        if (buf.length - count < len)
+            flushBuffer();
+    }
+    
+    private static void checkBounds(int arrlen, int off, int len) {
+        if (off < 0 || len < 0 || len > arrlen - off)
+            throw new IndexOutOfBoundsException();
     }
     
     /**
@@ -43,17 +81,23 @@ public class BinaryOutputStream extends OutputStream {
      */
     @Override
     public void flush() throws IOException {
+        flushBuffer();
         out.flush();
     }
     
     /**
      * Closes this output stream and releases any system resources associated
-     * with this stream.
+     * with this stream. Buffered output bytes are written out first.
      * @throws IOException if an I/O exception occurs.
      */
     @Override
     public void close() throws IOException {
-        out.close();
+        try {
+            flushBuffer();
+        }
+        finally {
+            out.close();
+        }
     }
     
     /**
@@ -63,7 +107,8 @@ public class BinaryOutputStream extends OutputStream {
      */
     @Override
     public void write(int b) throws IOException {
-        out.write(b);
+        ensure(1);
+        buf[count++] = (byte) b;
     }
     
     /**
@@ -74,7 +119,7 @@ public class BinaryOutputStream extends OutputStream {
      */
     @Override
     public void write(byte[] b) throws IOException {
-        out.write(b);
+        write(b, 0, b.length);
     }
     
     /**
@@ -85,7 +130,17 @@ public class BinaryOutputStream extends OutputStream {
      */
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
-        out.write(b, off, len);
+        checkBounds(b.length, off, len);
+        
+        if (len >= buf.length) {
+            flushBuffer();
+            out.write(b, off, len);
+            return;
+        }
+        
+        ensure(len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
     }
     
     /**
@@ -95,7 +150,8 @@ public class BinaryOutputStream extends OutputStream {
      * @throws IOException if an I/O exception occurs.
      */
     public void writeByte(byte val) throws IOException {
-        out.write(val);
+        ensure(1);
+        buf[count++] = val;
     }
     
     /**
@@ -104,7 +160,9 @@ public class BinaryOutputStream extends OutputStream {
      * @throws IOException if an I/O exception occurs.
      */
     public void writeShort(short val) throws IOException {
-        out.write(BitConverter.getBytes(val, endian));
+        ensure(Short.BYTES);
+        BitConverter.putShort(buf, endian, count, val);
+        count += Short.BYTES;
     }
     
     /**
@@ -113,7 +171,9 @@ public class BinaryOutputStream extends OutputStream {
      * @throws IOException if an I/O exception occurs.
      */
     public void writeInt(int val) throws IOException {
-        out.write(BitConverter.getBytes(val, endian));
+        ensure(Integer.BYTES);
+        BitConverter.putInt(buf, endian, count, val);
+        count += Integer.BYTES;
     }
     
     /**
@@ -122,7 +182,9 @@ public class BinaryOutputStream extends OutputStream {
      * @throws IOException if an I/O exception occurs.
      */
     public void writeLong(long val) throws IOException {
-        out.write(BitConverter.getBytes(val, endian));
+        ensure(Long.BYTES);
+        BitConverter.putLong(buf, endian, count, val);
+        count += Long.BYTES;
     }
     
     /**
@@ -131,7 +193,7 @@ public class BinaryOutputStream extends OutputStream {
      * @throws IOException if an I/O exception occurs.
      */
     public void writeFloat(float val) throws IOException {
-        out.write(BitConverter.getBytes(val, endian));
+        writeInt(Float.floatToIntBits(val));
     }
     
     /**
@@ -140,7 +202,7 @@ public class BinaryOutputStream extends OutputStream {
      * @throws IOException if an I/O exception occurs.
      */
     public void writeDouble(double val) throws IOException {
-        out.write(BitConverter.getBytes(val, endian));
+        writeLong(Double.doubleToLongBits(val));
     }
     
     /**
@@ -149,7 +211,7 @@ public class BinaryOutputStream extends OutputStream {
      * @throws IOException if an I/O exception occurs.
      */
     public void writeCharacter(char val) throws IOException {
-        out.write(BitConverter.getBytes(val, endian));
+        writeShort((short) val);
     }
     
     /**
@@ -158,6 +220,132 @@ public class BinaryOutputStream extends OutputStream {
      * @throws IOException if an I/O exception occurs.
      */
     public void writeBoolean(boolean val) throws IOException {
-        out.write(val ? 1 : 0);
+        writeByte((byte) (val ? 1 : 0));
+    }
+    
+    /**
+     * Writes {@code len} short values from the specified array
+     * starting at offset {@code off} to this output stream.
+     * @param vals the short values
+     * @param off the start offset in the array
+     * @param len the number of values to write
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void writeShorts(short[] vals, int off, int len) throws IOException {
+        checkBounds(vals.length, off, len);
+        
+        while (len > 0) {
+            ensure(Short.BYTES);
+            int n = Math.min(len, (buf.length - count) / Short.BYTES);
+            for (int i = 0 ; i < n ; i++, count += Short.BYTES)
+                BitConverter.putShort(buf, endian, count, vals[off + i]);
+            off += n;
+            len -= n;
+        }
+    }
+    
+    /**
+     * Writes {@code len} int values from the specified array
+     * starting at offset {@code off} to this output stream.
+     * @param vals the int values
+     * @param off the start offset in the array
+     * @param len the number of values to write
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void writeInts(int[] vals, int off, int len) throws IOException {
+        checkBounds(vals.length, off, len);
+        
+        while (len > 0) {
+            ensure(Integer.BYTES);
+            int n = Math.min(len, (buf.length - count) / Integer.BYTES);
+            for (int i = 0 ; i < n ; i++, count += Integer.BYTES)
+                BitConverter.putInt(buf, endian, count, vals[off + i]);
+            off += n;
+            len -= n;
+        }
+    }
+    
+    /**
+     * Writes {@code len} long values from the specified array
+     * starting at offset {@code off} to this output stream.
+     * @param vals the long values
+     * @param off the start offset in the array
+     * @param len the number of values to write
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void writeLongs(long[] vals, int off, int len) throws IOException {
+        checkBounds(vals.length, off, len);
+        
+        while (len > 0) {
+            ensure(Long.BYTES);
+            int n = Math.min(len, (buf.length - count) / Long.BYTES);
+            for (int i = 0 ; i < n ; i++, count += Long.BYTES)
+                BitConverter.putLong(buf, endian, count, vals[off + i]);
+            off += n;
+            len -= n;
+        }
+    }
+    
+    /**
+     * Writes {@code len} float values from the specified array
+     * starting at offset {@code off} to this output stream.
+     * @param vals the float values
+     * @param off the start offset in the array
+     * @param len the number of values to write
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void writeFloats(float[] vals, int off, int len) throws IOException {
+        checkBounds(vals.length, off, len);
+        
+        while (len > 0) {
+            ensure(Float.BYTES);
+            int n = Math.min(len, (buf.length - count) / Float.BYTES);
+            for (int i = 0 ; i < n ; i++, count += Float.BYTES)
+                BitConverter.putFloat(buf, endian, count, vals[off + i]);
+            off += n;
+            len -= n;
+        }
+    }
+    
+    /**
+     * Writes {@code len} double values from the specified array
+     * starting at offset {@code off} to this output stream.
+     * @param vals the double values
+     * @param off the start offset in the array
+     * @param len the number of values to write
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void writeDoubles(double[] vals, int off, int len) throws IOException {
+        checkBounds(vals.length, off, len);
+        
+        while (len > 0) {
+            ensure(Double.BYTES);
+            int n = Math.min(len, (buf.length - count) / Double.BYTES);
+            for (int i = 0 ; i < n ; i++, count += Double.BYTES)
+                BitConverter.putDouble(buf, endian, count, vals[off + i]);
+            off += n;
+            len -= n;
+        }
+    }
+    
+    /**
+     * Writes {@code len} boolean values from the specified array
+     * starting at offset {@code off} to this output stream.
+     * @param vals the boolean values
+     * @param off the start offset in the array
+     * @param len the number of values to write
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void writeBooleans(boolean[] vals, int off, int len) throws IOException {
+        checkBounds(vals.length, off, len);
+        
+        while (len > 0) {
+            ensure(1);
+            int n = Math.min(len, buf.length - count);
+            for (int i = 0 ; i < n ; i++)
+                buf[count++] = (byte) (vals[off + i] ? 1 : 0);
+            off += n;
+            len -= n;
+        }
     }
 }
\ No newline at end of file
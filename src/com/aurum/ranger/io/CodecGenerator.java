@@ -0,0 +1,393 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes the class file of a {@link ColumnCodec} subclass for one sheet and
+ * loads it. The generated methods cast every column once, then loop over the
+ * entries with one unrolled block of loads and stores per field. Multi-byte
+ * values go through {@link com.aurum.ranger.BitConverter} with the constant
+ * {@link CompiledSheet#ENDIAN}, which the JIT inlines and folds.
+ * <p>
+ * The class file uses version 49, which has no stack map frames, so the
+ * verifier infers the types for the loop itself. Each class gets its own
+ * class loader and is unloaded with its sheet.
+ */
+final class CodecGenerator {
+    private static final int VERSION = 49;
+    private static final int MAX_FIELDS = 200;
+    private static final String SUPER = "com/aurum/ranger/io/ColumnCodec";
+    private static final String CONVERTER = "com/aurum/ranger/BitConverter";
+    private static final String ORDER = "Lcom/aurum/ranger/ByteOrder;";
+    private static final AtomicInteger SERIAL = new AtomicInteger();
+    
+    // opcodes
+    private static final int ALOAD_0 = 0x2A, ILOAD = 0x15, ALOAD = 0x19, ISTORE = 0x36, ASTORE = 0x3A;
+    private static final int BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13, AALOAD = 0x32, IADD = 0x60, IINC = 0x84;
+    private static final int GOTO = 0xA7, IF_ICMPLT = 0xA1, RETURN = 0xB1;
+    private static final int GETSTATIC = 0xB2, INVOKESPECIAL = 0xB7, INVOKESTATIC = 0xB8, CHECKCAST = 0xC0;
+    
+    private static final class Loader extends ClassLoader {
+        Loader() {
+            super(ColumnCodec.class.getClassLoader());
+        }
+        
+        Class<?> define(String name, byte[] b) {
+            return defineClass(name, b, 0, b.length);
+        }
+    }
+    
+    private final CompiledSheet sheet;
+    private final Map<String, Integer> pool = new HashMap();
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(poolBytes);
+    private int poolCount = 1;
+    
+    private CodecGenerator(CompiledSheet sheet) {
+        this.sheet = sheet;
+    }
+    
+    /**
+     * Generates, loads and instantiates the codec of a sheet.
+     * @param sheet the compiled sheet
+     * @return the codec, or {@code null} if the sheet has too many fields.
+     */
+    static ColumnCodec generate(CompiledSheet sheet) {
+        if (sheet.count() > MAX_FIELDS)
+            return null;
+        
+        StringBuilder name = new StringBuilder("com.aurum.ranger.io.ColumnCodec$");
+        for (char c : sheet.getName().toCharArray())
+            name.append(Character.isLetterOrDigit(c) && c < 0x80 ? c : '_');
+        name.append('$').append(SERIAL.incrementAndGet());
+        
+        try {
+            byte[] b = new CodecGenerator(sheet).write(name.toString().replace('.', '/'));
+            Class<?> c = new Loader().define(name.toString(), b);
+            return (ColumnCodec) c.getDeclaredConstructor().newInstance();
+        }
+        catch (IOException | ReflectiveOperationException ex) {
+            throw new IllegalStateException("Cannot generate codec for sheet " + sheet.getName(), ex);
+        }
+    }
+    
+    /*
+     * Constant pool
+     */
+    
+    private int constant(String key, int tag, byte[] body) throws IOException {
+        Integer ret = pool.get(key);
+        if (ret != null)
+            return ret;
+        
+        poolOut.writeByte(tag);
+        poolOut.write(body);
+        pool.put(key, poolCount);
+        return poolCount++;
+    }
+    
+    private static byte[] u2(int... vals) {
+        byte[] ret = new byte[vals.length * 2];
+        for (int i = 0 ; i < vals.length ; i++) {
+            ret[i * 2] = (byte) (vals[i] >> 8);
+            ret[i * 2 + 1] = (byte) vals[i];
+        }
+        return ret;
+    }
+    
+    private int utf8(String s) throws IOException {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        new DataOutputStream(b).writeUTF(s);
+        return constant("U" + s, 1, b.toByteArray());
+    }
+    
+    private int integer(int val) throws IOException {
+        return constant("I" + val, 3, new byte[] { (byte) (val >> 24), (byte) (val >> 16), (byte) (val >> 8), (byte) val });
+    }
+    
+    private int type(String name) throws IOException {
+        return constant("C" + name, 7, u2(utf8(name)));
+    }
+    
+    private int nameAndType(String name, String desc) throws IOException {
+        return constant("N" + name + " " + desc, 12, u2(utf8(name), utf8(desc)));
+    }
+    
+    private int field(String owner, String name, String desc) throws IOException {
+        return constant("F" + owner + "." + name + " " + desc, 9, u2(type(owner), nameAndType(name, desc)));
+    }
+    
+    private int method(String owner, String name, String desc) throws IOException {
+        return constant("M" + owner + "." + name + " " + desc, 10, u2(type(owner), nameAndType(name, desc)));
+    }
+    
+    /*
+     * Code
+     */
+    
+    private static void op(ByteArrayOutputStream code, int... bytes) {
+        for (int b : bytes)
+            code.write(b);
+    }
+    
+    private static void op2(ByteArrayOutputStream code, int opcode, int index) {
+        op(code, opcode, (index >> 8) & 0xFF, index & 0xFF);
+    }
+    
+    private void push(ByteArrayOutputStream code, int val) throws IOException {
+        if (val >= -1 && val <= 5)
+            op(code, 0x03 + val);
+        else if (val >= Byte.MIN_VALUE && val <= Byte.MAX_VALUE)
+            op(code, BIPUSH, val & 0xFF);
+        else if (val >= Short.MIN_VALUE && val <= Short.MAX_VALUE)
+            op2(code, SIPUSH, val);
+        else
+            op2(code, LDC_W, integer(val));
+    }
+    
+    /**
+     * Pushes the position of a field, which is the entry position in local
+     * {@code pos} plus the field offset.
+     */
+    private void position(ByteArrayOutputStream code, int pos, int offset) throws IOException {
+        op(code, ILOAD, pos);
+        if (offset != 0) {
+            push(code, offset);
+            op(code, IADD);
+        }
+    }
+    
+    private static String arrayType(FieldType type) {
+        switch(type) {
+            case INT8: return "[B";
+            case INT16: return "[S";
+            case INT32: return "[I";
+            case INT64: return "[J";
+            case FLOAT32: return "[F";
+            case FLOAT64: return "[D";
+            case BOOLEAN: return "[Z";
+            default: throw new IllegalArgumentException("Unknown/unsupported field type " + type.name());
+        }
+    }
+    
+    private static String valueType(FieldType type) {
+        return arrayType(type).substring(1);
+    }
+    
+    private static String suffix(FieldType type) {
+        switch(type) {
+            case INT16: return "Short";
+            case INT32: return "Int";
+            case INT64: return "Long";
+            case FLOAT32: return "Float";
+            case FLOAT64: return "Double";
+            default: return "Boolean";
+        }
+    }
+    
+    /**
+     * Returns the {@code xaload} opcode of a field type. The {@code xastore}
+     * opcode follows 33 places later.
+     */
+    private static int arrayLoad(FieldType type) {
+        switch(type) {
+            case INT8:
+            case BOOLEAN: return 0x33;
+            case INT16: return 0x35;
+            case INT32: return 0x2E;
+            case INT64: return 0x2F;
+            case FLOAT32: return 0x30;
+            default: return 0x31;
+        }
+    }
+    
+    /**
+     * Casts every column into a local, starting at local 6.
+     */
+    private void castColumns(ByteArrayOutputStream code, int columns) throws IOException {
+        for (int j = 0 ; j < sheet.count() ; j++) {
+            op(code, ALOAD, columns);
+            push(code, j);
+            op(code, AALOAD);
+            op2(code, CHECKCAST, type(arrayType(sheet.types[j])));
+            op(code, ASTORE, 6 + j);
+        }
+    }
+    
+    /**
+     * Writes the loop around the unrolled body. The entry position starts at
+     * local {@code offset}, the row runs from local {@code from} to local
+     * {@code to}.
+     */
+    private void loop(ByteArrayOutputStream code, ByteArrayOutputStream body, int offset, int from, int to, int pos, int row) throws IOException {
+        op(code, ILOAD, offset, ISTORE, pos);
+        op(code, ILOAD, from, ISTORE, row);
+        
+        op(body, ILOAD, pos);
+        push(body, sheet.byteSum);
+        op(body, IADD, ISTORE, pos);
+        op(body, IINC, row, 1);
+        
+        // goto the condition, which follows the body
+        op2(code, GOTO, 3 + body.size());
+        int start = code.size();
+        body.writeTo(code);
+        op(code, ILOAD, row, ILOAD, to);
+        op2(code, IF_ICMPLT, start - code.size());
+        op(code, RETURN);
+    }
+    
+    /**
+     * {@code decode(byte[] data, int offset, Object[] columns, int from, int to)}
+     */
+    private byte[] decode() throws IOException {
+        int pos = 6 + sheet.count(), row = pos + 1;
+        int endian = field("com/aurum/ranger/io/CompiledSheet", "ENDIAN", ORDER);
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        
+        castColumns(code, 3);
+        for (int j = 0 ; j < sheet.count() ; j++) {
+            FieldType t = sheet.types[j];
+            op(body, ALOAD, 6 + j, ILOAD, row);
+            op(body, ALOAD, 1);
+            
+            switch(t) {
+                case INT8:
+                    position(body, pos, sheet.offsets[j]);
+                    op(body, 0x33);
+                    break;
+                case BOOLEAN:
+                    position(body, pos, sheet.offsets[j]);
+                    op2(body, INVOKESTATIC, method(CONVERTER, "toBoolean", "([BI)Z"));
+                    break;
+                default:
+                    op2(body, GETSTATIC, endian);
+                    position(body, pos, sheet.offsets[j]);
+                    op2(body, INVOKESTATIC, method(CONVERTER, "to" + suffix(t), "([B" + ORDER + "I)" + valueType(t)));
+                    break;
+            }
+            op(body, arrayLoad(t) + 33);
+        }
+        
+        loop(code, body, 2, 4, 5, pos, row);
+        return code.toByteArray();
+    }
+    
+    /**
+     * {@code encode(Object[] columns, int from, int to, byte[] data, int offset)}
+     */
+    private byte[] encode() throws IOException {
+        int pos = 6 + sheet.count(), row = pos + 1;
+        int endian = field("com/aurum/ranger/io/CompiledSheet", "ENDIAN", ORDER);
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        
+        castColumns(code, 1);
+        for (int j = 0 ; j < sheet.count() ; j++) {
+            FieldType t = sheet.types[j];
+            op(body, ALOAD, 4);
+            
+            switch(t) {
+                case INT8:
+                    position(body, pos, sheet.offsets[j]);
+                    op(body, ALOAD, 6 + j, ILOAD, row, 0x33);
+                    op(body, 0x54);
+                    break;
+                case BOOLEAN:
+                    position(body, pos, sheet.offsets[j]);
+                    op(body, ALOAD, 6 + j, ILOAD, row, 0x33);
+                    op2(body, INVOKESTATIC, method(CONVERTER, "putBoolean", "([BIZ)V"));
+                    break;
+                default:
+                    op2(body, GETSTATIC, endian);
+                    position(body, pos, sheet.offsets[j]);
+                    op(body, ALOAD, 6 + j, ILOAD, row, arrayLoad(t));
+                    op2(body, INVOKESTATIC, method(CONVERTER, "put" + suffix(t), "([B" + ORDER + "I" + valueType(t) + ")V"));
+                    break;
+            }
+        }
+        
+        loop(code, body, 5, 2, 3, pos, row);
+        return code.toByteArray();
+    }
+    
+    private byte[] constructor() throws IOException {
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        op(code, ALOAD_0);
+        op2(code, INVOKESPECIAL, method(SUPER, "<init>", "()V"));
+        op(code, RETURN);
+        return code.toByteArray();
+    }
+    
+    private void writeMethod(DataOutputStream out, int access, String name, String desc, byte[] code, int maxStack, int maxLocals) throws IOException {
+        out.writeShort(access);
+        out.writeShort(utf8(name));
+        out.writeShort(utf8(desc));
+        out.writeShort(1);
+        
+        out.writeShort(utf8("Code"));
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);  // exception table
+        out.writeShort(0);  // attributes
+    }
+    
+    private byte[] write(String name) throws IOException {
+        int locals = 8 + sheet.count();
+        byte[] init = constructor();
+        byte[] decode = decode();
+        byte[] encode = encode();
+        
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(b);
+        body.writeShort(0x0031);  // public final super
+        body.writeShort(type(name));
+        body.writeShort(type(SUPER));
+        body.writeShort(0);  // interfaces
+        body.writeShort(0);  // fields
+        body.writeShort(3);
+        writeMethod(body, 0x0001, "<init>", "()V", init, 1, 1);
+        writeMethod(body, 0x0001, "decode", "([BI[Ljava/lang/Object;II)V", decode, 8, locals);
+        writeMethod(body, 0x0001, "encode", "([Ljava/lang/Object;II[BI)V", encode, 8, locals);
+        body.writeShort(0);  // attributes
+        
+        // the constant pool is complete only now, but comes first
+        ByteArrayOutputStream ret = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(ret);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(VERSION);
+        out.writeShort(poolCount);
+        poolBytes.writeTo(out);
+        b.writeTo(out);
+        out.flush();
+        return ret.toByteArray();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import java.lang.reflect.Array;
+
+/**
+ * Decodes raw entry bytes into the columns of a {@link ColumnStore} and
+ * encodes them back, for one exact sheet layout. Implementations are
+ * generated at runtime by {@link CodecGenerator}, with every field unrolled
+ * into straight-line code, so there is no switch over field types and no
+ * column cast per field and the JIT sees one fixed sequence of loads and
+ * stores per entry.
+ * <p>
+ * The switch-based code in {@link ContainerInputStream} and
+ * {@link ContainerOutputStream} is used whenever no codec is available.
+ * Every generated codec is checked against {@link CompiledSheet#get} and
+ * {@link CompiledSheet#put} before it is used. Setting the
+ * {@code pokesheet.codegen} system property to {@code false} turns
+ * generation off.
+ */
+public abstract class ColumnCodec {
+    protected ColumnCodec() {
+    }
+    
+    /**
+     * Decodes consecutive entries into rows of the columns.
+     * @param data the buffer holding the entries
+     * @param offset the position of the first entry in the buffer
+     * @param columns the columns, one primitive array per field
+     * @param from the first row to write
+     * @param to the row after the last row to write
+     */
+    public abstract void decode(byte[] data, int offset, Object[] columns, int from, int to);
+    
+    /**
+     * Encodes rows of the columns into consecutive entries.
+     * @param columns the columns, one primitive array per field
+     * @param from the first row to read
+     * @param to the row after the last row to read
+     * @param data the buffer to write the entries to
+     * @param offset the position of the first entry in the buffer
+     */
+    public abstract void encode(Object[] columns, int from, int to, byte[] data, int offset);
+    
+    /**
+     * Generates and checks the codec for a sheet.
+     * @param sheet the compiled sheet
+     * @return the codec, or {@code null} if it cannot be generated here.
+     */
+    static ColumnCodec generate(CompiledSheet sheet) {
+        if (!Boolean.parseBoolean(System.getProperty("pokesheet.codegen", "true")))
+            return null;
+        
+        try {
+            ColumnCodec ret = CodecGenerator.generate(sheet);
+            return ret != null && check(sheet, ret) ? ret : null;
+        }
+        catch (RuntimeException | LinkageError ex) {
+            // class loading is restricted or the class was rejected
+            return null;
+        }
+    }
+    
+    /**
+     * Runs a codec on two entries of made-up bytes and compares the results
+     * with the interpreted decoding and encoding of the same bytes.
+     */
+    private static boolean check(CompiledSheet sheet, ColumnCodec codec) {
+        int size = sheet.byteSum;
+        int rows = 2;
+        byte[] data = new byte[rows * size];
+        
+        for (int i = 0 ; i < data.length ; i++)
+            data[i] = (byte) (i * 0x9D + 0x3B);
+        for (int r = 0 ; r < rows ; r++) {
+            for (int j = 0 ; j < sheet.count() ; j++) {
+                if (sheet.types[j] == DataSheet.FieldType.BOOLEAN)
+                    data[r * size + sheet.offsets[j]] = (byte) ((r + j) & 1);
+            }
+        }
+        
+        ColumnStore cols = new ColumnStore(sheet, rows + 1);
+        codec.decode(data, 0, cols.columns, 1, rows + 1);
+        byte[] expected = new byte[data.length];
+        byte[] actual = new byte[data.length];
+        
+        for (int r = 0 ; r < rows ; r++) {
+            for (int j = 0 ; j < sheet.count() ; j++) {
+                Object val = sheet.get(data, r * size, j);
+                if (!val.equals(Array.get(cols.columns[j], r + 1)))
+                    return false;
+                sheet.put(expected, r * size, j, val);
+            }
+        }
+        
+        codec.encode(cols.columns, 1, rows + 1, actual, 0);
+        for (int i = 0 ; i < data.length ; i++) {
+            if (actual[i] != expected[i])
+                return false;
+        }
+        return true;
+    }
+}
\ No newline at end of file
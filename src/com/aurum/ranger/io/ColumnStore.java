@@ -0,0 +1,382 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.lang.reflect.Array;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented entry storage. Every sheet field is kept in its own
+ * primitive array ({@code byte[]} for INT8, {@code short[]} for INT16 and so
+ * on), so entries cost exactly their binary size and no boxing is needed to
+ * decode or encode them. {@link #entries()} provides the usual row-oriented
+ * {@code DataEntry} view on top of the columns.
+ */
+public final class ColumnStore {
+    final CompiledSheet sheet;
+    final Object[] columns;
+    private int size;
+    
+    public ColumnStore(CompiledSheet sheet) {
+        this(sheet, 16);
+    }
+    
+    public ColumnStore(CompiledSheet sheet, int capacity) {
+        this.sheet = sheet;
+        this.columns = new Object[sheet.count()];
+        
+        for (int i = 0 ; i < columns.length ; i++)
+            columns[i] = newColumn(sheet.types[i], capacity);
+    }
+    
+    private static Object newColumn(FieldType type, int capacity) {
+        switch(type) {
+            case INT8: return new byte[capacity];
+            case INT16: return new short[capacity];
+            case INT32: return new int[capacity];
+            case INT64: return new long[capacity];
+            case FLOAT32: return new float[capacity];
+            case FLOAT64: return new double[capacity];
+            case BOOLEAN: return new boolean[capacity];
+            default: throw new IllegalArgumentException("Unknown/unsupported field type " + type.name());
+        }
+    }
+    
+    private static Object resize(Object column, int capacity) {
+        if (column instanceof byte[]) return Arrays.copyOf((byte[]) column, capacity);
+        if (column instanceof short[]) return Arrays.copyOf((short[]) column, capacity);
+        if (column instanceof int[]) return Arrays.copyOf((int[]) column, capacity);
+        if (column instanceof long[]) return Arrays.copyOf((long[]) column, capacity);
+        if (column instanceof float[]) return Arrays.copyOf((float[]) column, capacity);
+        if (column instanceof double[]) return Arrays.copyOf((double[]) column, capacity);
+        return Arrays.copyOf((boolean[]) column, capacity);
+    }
+    
+    public CompiledSheet sheet() {
+        return sheet;
+    }
+    
+    /**
+     * Returns the number of entries in this store.
+     * @return the number of entries.
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the number of entries this store can hold without growing.
+     * @return the capacity.
+     */
+    public int capacity() {
+        return columns.length == 0 ? Integer.MAX_VALUE : Array.getLength(columns[0]);
+    }
+    
+    /**
+     * Grows the columns so that they can hold at least {@code capacity} entries.
+     * @param capacity the minimum capacity
+     */
+    public void ensureCapacity(int capacity) {
+        int cur = capacity();
+        if (capacity <= cur)
+            return;
+        
+        int len = Math.max(capacity, cur + (cur >> 1));
+        for (int i = 0 ; i < columns.length ; i++)
+            columns[i] = resize(columns[i], len);
+    }
+    
+    /**
+     * Appends {@code count} zeroed entries and returns the index of the first one.
+     * @param count the number of entries to append
+     * @return the index of the first new entry.
+     * @throws IllegalArgumentException if the count is negative or too large.
+     */
+    public int grow(int count) {
+        if (count < 0 || count > Integer.MAX_VALUE - size)
+            throw new IllegalArgumentException("Cannot append " + count + " entries to " + size + " entries");
+        
+        int first = size;
+        ensureCapacity(first + count);
+        size += count;
+        return first;
+    }
+    
+    /**
+     * Removes all entries. The capacity is kept.
+     */
+    public void clear() {
+        size = 0;
+    }
+    
+    /**
+     * Returns the primitive array holding the values of a field. Its type
+     * depends on the field type, and only the first {@code size()} elements
+     * are valid. The array is replaced when the store grows.
+     * @param field the field index
+     * @return the column array.
+     */
+    public Object column(int field) {
+        return columns[field];
+    }
+    
+    private void checkRow(int row) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("Entry index " + row + " out of bounds (size " + size + ")");
+    }
+    
+    public byte getByte(int field, int row) {
+        checkRow(row);
+        return ((byte[]) columns[field])[row];
+    }
+    
+    public short getShort(int field, int row) {
+        checkRow(row);
+        return ((short[]) columns[field])[row];
+    }
+    
+    public int getInt(int field, int row) {
+        checkRow(row);
+        return ((int[]) columns[field])[row];
+    }
+    
+    public long getLong(int field, int row) {
+        checkRow(row);
+        return ((long[]) columns[field])[row];
+    }
+    
+    public float getFloat(int field, int row) {
+        checkRow(row);
+        return ((float[]) columns[field])[row];
+    }
+    
+    public double getDouble(int field, int row) {
+        checkRow(row);
+        return ((double[]) columns[field])[row];
+    }
+    
+    public boolean getBoolean(int field, int row) {
+        checkRow(row);
+        return ((boolean[]) columns[field])[row];
+    }
+    
+    public void setByte(int field, int row, byte val) {
+        checkRow(row);
+        ((byte[]) columns[field])[row] = val;
+    }
+    
+    public void setShort(int field, int row, short val) {
+        checkRow(row);
+        ((short[]) columns[field])[row] = val;
+    }
+    
+    public void setInt(int field, int row, int val) {
+        checkRow(row);
+        ((int[]) columns[field])[row] = val;
+    }
+    
+    public void setLong(int field, int row, long val) {
+        checkRow(row);
+        ((long[]) columns[field])[row] = val;
+    }
+    
+    public void setFloat(int field, int row, float val) {
+        checkRow(row);
+        ((float[]) columns[field])[row] = val;
+    }
+    
+    public void setDouble(int field, int row, double val) {
+        checkRow(row);
+        ((double[]) columns[field])[row] = val;
+    }
+    
+    public void setBoolean(int field, int row, boolean val) {
+        checkRow(row);
+        ((boolean[]) columns[field])[row] = val;
+    }
+    
+    /**
+     * Returns the boxed value of a field.
+     * @param field the field index
+     * @param row the entry index
+     * @return the boxed value.
+     */
+    public Object get(int field, int row) {
+        checkRow(row);
+        Object col = columns[field];
+        
+        switch(sheet.types[field]) {
+            case INT8: return ((byte[]) col)[row];
+            case INT16: return ((short[]) col)[row];
+            case INT32: return ((int[]) col)[row];
+            case INT64: return ((long[]) col)[row];
+            case FLOAT32: return ((float[]) col)[row];
+            case FLOAT64: return ((double[]) col)[row];
+            case BOOLEAN: return ((boolean[]) col)[row];
+            default: throw new IllegalArgumentException("Unknown/unsupported field type " + sheet.types[field].name());
+        }
+    }
+    
+    /**
+     * Sets the value of a field from its boxed form.
+     * @param field the field index
+     * @param row the entry index
+     * @param val the boxed value, which has to match the field type
+     */
+    public void set(int field, int row, Object val) {
+        checkRow(row);
+        Object col = columns[field];
+        
+        switch(sheet.types[field]) {
+            case INT8: ((byte[]) col)[row] = (byte) val; break;
+            case INT16: ((short[]) col)[row] = (short) val; break;
+            case INT32: ((int[]) col)[row] = (int) val; break;
+            case INT64: ((long[]) col)[row] = (long) val; break;
+            case FLOAT32: ((float[]) col)[row] = (float) val; break;
+            case FLOAT64: ((double[]) col)[row] = (double) val; break;
+            case BOOLEAN: ((boolean[]) col)[row] = (boolean) val; break;
+        }
+    }
+    
+    private void copyFrom(Map<String, Object> de, int row) {
+        for (int i = 0 ; i < columns.length ; i++) {
+            Object val = de.get(sheet.names[i]);
+            if (val == null)
+                throw new IllegalArgumentException("Entry has no value for field " + sheet.names[i]);
+            set(i, row, val);
+        }
+    }
+    
+    private DataEntry copyOf(int row) {
+        DataEntry ret = new DataEntry();
+        for (int i = 0 ; i < columns.length ; i++)
+            ret.put(sheet.names[i], get(i, row));
+        return ret;
+    }
+    
+    private void insert(int row) {
+        int old = size;
+        grow(1);
+        for (Object col : columns)
+            System.arraycopy(col, row, col, row + 1, old - row);
+    }
+    
+    private void delete(int row) {
+        for (Object col : columns)
+            System.arraycopy(col, row + 1, col, row, size - row - 1);
+        size--;
+    }
+    
+    /**
+     * Returns a row-oriented view of this store. The entries returned by
+     * {@code get} are {@link FieldEntry} views that read and write through to
+     * the store, like {@code entry}. A view stays tied to its row index, so
+     * it shows another entry once entries before it are added or removed.
+     * Entries passed to {@code add} or {@code set} are copied into the store.
+     * @return the entry list view.
+     */
+    public List<DataEntry> entries() {
+        return new AbstractList<DataEntry>() {
+            @Override
+            public int size() {
+                return size;
+            }
+            
+            @Override
+            public DataEntry get(int index) {
+                return entry(index);
+            }
+            
+            @Override
+            public DataEntry set(int index, DataEntry de) {
+                DataEntry old = copyOf(index);
+                copyFrom(de, index);
+                return old;
+            }
+            
+            @Override
+            public void add(int index, DataEntry de) {
+                if (index < 0 || index > size)
+                    throw new IndexOutOfBoundsException("Entry index " + index + " out of bounds (size " + size + ")");
+                
+                insert(index);
+                try {
+                    copyFrom(de, index);
+                }
+                catch (RuntimeException ex) {
+                    delete(index);
+                    throw ex;
+                }
+                modCount++;
+            }
+            
+            @Override
+            public DataEntry remove(int index) {
+                DataEntry old = copyOf(index);
+                delete(index);
+                modCount++;
+                return old;
+            }
+            
+            @Override
+            public void clear() {
+                size = 0;
+                modCount++;
+            }
+        };
+    }
+    
+    /**
+     * Returns a view of a single row, which reads and writes through to the
+     * store.
+     * @param row the row index
+     * @return the entry view.
+     */
+    public FieldEntry entry(int row) {
+        checkRow(row);
+        return new ColumnEntry(row);
+    }
+    
+    /**
+     * A {@code FieldEntry} view of a single row.
+     */
+    private final class ColumnEntry extends FieldEntry {
+        private static final long serialVersionUID = 1L;
+        
+        private final int row;
+        
+        ColumnEntry(int row) {
+            super(ColumnStore.this.sheet);
+            this.row = row;
+        }
+        
+        @Override
+        public Object get(int field) {
+            return ColumnStore.this.get(field, row);
+        }
+        
+        @Override
+        public void set(int field, Object val) {
+            ColumnStore.this.set(field, row, val);
+        }
+    }
+}
\ No newline at end of file
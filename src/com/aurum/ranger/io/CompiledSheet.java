@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.BitConverter;
+import com.aurum.ranger.ByteOrder;
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable, flattened form of a {@link DataSheet}. The fields are stored
+ * in sheet order as parallel arrays of names, types and entry offsets, so the
+ * container streams can walk them by index instead of iterating and hashing
+ * the sheet's map for every field of every entry.
+ */
+public final class CompiledSheet {
+    /**
+     * The byte order of entries in container files.
+     */
+    public static final ByteOrder ENDIAN = ByteOrder.LITTLE_ENDIAN;
+    
+    final String sheetName;
+    final String[] names;
+    final FieldType[] types;
+    final int[] offsets;
+    final int byteSum;
+    private final Map<String, Integer> indices;
+    private volatile ColumnCodec codec;
+    private volatile boolean codecDone;
+    
+    CompiledSheet(DataSheet sheet) {
+        int count = sheet.values().size();
+        
+        sheetName = sheet.getName();
+        names = new String[count];
+        types = new FieldType[count];
+        offsets = new int[count];
+        indices = new HashMap(count * 2);
+        
+        int i = 0, offset = 0;
+        for (Map.Entry<String, FieldType> e : sheet.values().entrySet()) {
+            names[i] = e.getKey().intern();
+            types[i] = e.getValue();
+            offsets[i] = offset;
+            indices.put(names[i], i);
+            offset += types[i].size();
+            i++;
+        }
+        byteSum = offset;
+    }
+    
+    @Override
+    public String toString() {
+        return sheetName;
+    }
+    
+    public String getName() {
+        return sheetName;
+    }
+    
+    /**
+     * Returns the number of fields in an entry.
+     * @return the number of fields.
+     */
+    public int count() {
+        return names.length;
+    }
+    
+    /**
+     * Returns the size of one entry in bytes.
+     * @return the entry size.
+     */
+    public int byteSum() {
+        return byteSum;
+    }
+    
+    /**
+     * Returns the interned name of the field at the given index.
+     * @param field the field index
+     * @return the field name.
+     */
+    public String name(int field) {
+        return names[field];
+    }
+    
+    /**
+     * Returns the type of the field at the given index.
+     * @param field the field index
+     * @return the field type.
+     */
+    public FieldType type(int field) {
+        return types[field];
+    }
+    
+    /**
+     * Returns the offset of the field at the given index, relative to the
+     * start of an entry.
+     * @param field the field index
+     * @return the field offset in bytes.
+     */
+    public int offset(int field) {
+        return offsets[field];
+    }
+    
+    /**
+     * Returns the index of the field with the given name.
+     * @param name the field name
+     * @return the field index, or -1 if the sheet has no such field.
+     */
+    public int indexOf(String name) {
+        Integer ret = indices.get(name);
+        return ret == null ? -1 : ret;
+    }
+    
+    /**
+     * Returns the generated codec of this sheet, generating it on first use.
+     * @return the codec, or {@code null} if the switch-based code has to be
+     *         used instead.
+     */
+    ColumnCodec codec() {
+        if (!codecDone) {
+            synchronized (this) {
+                if (!codecDone) {
+                    codec = ColumnCodec.generate(this);
+                    codecDone = true;
+                }
+            }
+        }
+        return codec;
+    }
+    
+    /**
+     * Decodes a field from the raw bytes of an entry.
+     * @param data the buffer holding the entry
+     * @param offset the position of the entry in the buffer
+     * @param field the field index
+     * @return the boxed value.
+     */
+    public Object get(byte[] data, int offset, int field) {
+        offset += offsets[field];
+        
+        switch(types[field]) {
+            case INT8: return data[offset];
+            case INT16: return BitConverter.toShort(data, ENDIAN, offset);
+            case INT32: return BitConverter.toInt(data, ENDIAN, offset);
+            case INT64: return BitConverter.toLong(data, ENDIAN, offset);
+            case FLOAT32: return BitConverter.toFloat(data, ENDIAN, offset);
+            case FLOAT64: return BitConverter.toDouble(data, ENDIAN, offset);
+            case BOOLEAN: return BitConverter.toBoolean(data, offset);
+            default: throw new IllegalArgumentException("Unknown/unsupported field type " + types[field].name());
+        }
+    }
+    
+    /**
+     * Encodes a field into the raw bytes of an entry.
+     * @param data the buffer holding the entry
+     * @param offset the position of the entry in the buffer
+     * @param field the field index
+     * @param val the boxed value, which has to match the field type
+     */
+    public void put(byte[] data, int offset, int field, Object val) {
+        offset += offsets[field];
+        
+        switch(types[field]) {
+            case INT8: data[offset] = (byte) val; break;
+            case INT16: BitConverter.putShort(data, ENDIAN, offset, (short) val); break;
+            case INT32: BitConverter.putInt(data, ENDIAN, offset, (int) val); break;
+            case INT64: BitConverter.putLong(data, ENDIAN, offset, (long) val); break;
+            case FLOAT32: BitConverter.putFloat(data, ENDIAN, offset, (float) val); break;
+            case FLOAT64: BitConverter.putDouble(data, ENDIAN, offset, (double) val); break;
+            case BOOLEAN: BitConverter.putBoolean(data, offset, (boolean) val); break;
+        }
+    }
+    
+    /**
+     * Parses the text form of a field value, as written by {@code toString}
+     * of the boxed value, and encodes it into the raw bytes of an entry.
+     * @param data the buffer holding the entry
+     * @param offset the position of the entry in the buffer
+     * @param field the field index
+     * @param value the text of the value
+     * @throws NumberFormatException if the text is not a valid number.
+     */
+    public void parse(byte[] data, int offset, int field, String value) {
+        offset += offsets[field];
+        
+        switch(types[field]) {
+            case INT8: data[offset] = Byte.parseByte(value); break;
+            case INT16: BitConverter.putShort(data, ENDIAN, offset, Short.parseShort(value)); break;
+            case INT32: BitConverter.putInt(data, ENDIAN, offset, Integer.parseInt(value)); break;
+            case INT64: BitConverter.putLong(data, ENDIAN, offset, Long.parseLong(value)); break;
+            case FLOAT32: BitConverter.putFloat(data, ENDIAN, offset, Float.parseFloat(value)); break;
+            case FLOAT64: BitConverter.putDouble(data, ENDIAN, offset, Double.parseDouble(value)); break;
+            case BOOLEAN: BitConverter.putBoolean(data, offset, Boolean.parseBoolean(value)); break;
+        }
+    }
+}
\ No newline at end of file
@@ -19,23 +19,66 @@ package com.aurum.ranger.io;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import org.jdom2.Element;
 import org.jdom2.JDOMException;
 import org.jdom2.input.SAXBuilder;
-import org.jdom2.output.Format;
-import org.jdom2.output.XMLOutputter;
 
 public class Container {
+    /**
+     * The ways a container can keep its entries.
+     */
+    public enum Storage {
+        /** A list of {@code DataEntry} maps. */
+        LIST,
+        /** One primitive array per field, see {@link ColumnStore}. */
+        COLUMNS,
+        /** The raw entry bytes, see {@link RecordStore}. */
+        RECORDS;
+    }
+    
     private List<DataEntry> entries;
     private DataSheet sheet;
+    private ColumnStore columns;
+    private RecordStore records;
     
     public Container(DataSheet sheet) {
-        this.entries = new ArrayList();
+        this(sheet, Storage.LIST);
+    }
+    
+    /**
+     * Creates an empty container.
+     * @param sheet the data sheet
+     * @param columnar whether the entries are kept in a {@link ColumnStore}
+     *                 instead of a list of {@code DataEntry} maps
+     */
+    public Container(DataSheet sheet, boolean columnar) {
+        this(sheet, columnar ? Storage.COLUMNS : Storage.LIST);
+    }
+    
+    /**
+     * Creates an empty container.
+     * @param sheet the data sheet
+     * @param storage how the entries are kept
+     */
+    public Container(DataSheet sheet, Storage storage) {
         this.sheet = sheet;
+        
+        switch(storage) {
+            case COLUMNS:
+                this.columns = new ColumnStore(sheet.compile());
+                this.entries = columns.entries();
+                break;
+            case RECORDS:
+                this.records = new RecordStore(sheet.compile());
+                this.entries = records.entries();
+                break;
+            default:
+                this.entries = new ArrayList();
+                break;
+        }
     }
     
     @Override
@@ -47,22 +90,65 @@ public class Container {
         return entries;
     }
     
+    /**
+     * Returns an entry that reads and writes through to this container, the
+     * same as {@code entries().get(index)}. With list storage this is the
+     * {@code DataEntry} itself, otherwise a {@link FieldEntry} view of the
+     * stored row.
+     * @param index the entry index
+     * @return the entry.
+     */
+    public DataEntry entry(int index) {
+        if (columns != null)
+            return columns.entry(index);
+        if (records != null)
+            return records.entry(index);
+        return entries.get(index);
+    }
+    
     public DataSheet sheet() {
         return sheet;
     }
     
+    public Storage storage() {
+        return columns != null ? Storage.COLUMNS : records != null ? Storage.RECORDS : Storage.LIST;
+    }
+    
+    public boolean isColumnar() {
+        return columns != null;
+    }
+    
+    /**
+     * Returns the column storage of a columnar container.
+     * @return the column store, or {@code null} if this container keeps a
+     *         list of entries.
+     */
+    public ColumnStore columns() {
+        return columns;
+    }
+    
+    /**
+     * Returns the record storage of a container that keeps raw entry bytes.
+     * @return the record store, or {@code null} if this container uses
+     *         another storage.
+     */
+    public RecordStore records() {
+        return records;
+    }
+    
     public static Container readXml(String f, DataSheet s) throws IOException, JDOMException {
         return readXml(new File(f), s);
     }
     
     public static Container readXml(File f, DataSheet s) throws IOException, JDOMException {
+        Metrics.Timer t = Metrics.start(Metrics.Phase.XML_READ, f.getPath());
         Element root;
         
         try (FileInputStream in = new FileInputStream(f)) {
             SAXBuilder xml = new SAXBuilder();
             root = xml.build(in).getRootElement();
         }
-
+        
         if (!root.getName().equals(s.getName()))
             throw new IllegalArgumentException("root element name does not correspond with sheet name");
         
@@ -86,6 +172,8 @@ public class Container {
             c.entries().add(de);
         }
         
+        int count = c.entries().size();
+        t.stop((long) count * s.compile().byteSum(), count, (long) count * s.compile().count());
         return c;
     }
     
@@ -94,20 +182,27 @@ public class Container {
     }
     
     public static void writeXml(File f, Container c) throws IOException {
-        Element root = new Element(c.toString());
-        for (DataEntry de : c.entries()) {
-            Element child = new Element("entry");
-            for (String fn : c.sheet().values().keySet()) {
-                child.addContent(new Element(fn).setAttribute("value", de.get(fn).toString()));
+        Metrics.Timer t = Metrics.start(Metrics.Phase.XML_WRITE, f.getPath());
+        
+        try (ContainerXmlWriter out = new ContainerXmlWriter(f, c.sheet())) {
+            if (c.isColumnar()) {
+                ColumnStore cols = c.columns();
+                for (int i = 0 ; i < cols.size() ; i++)
+                    out.writeEntry(cols, i);
+            }
+            else if (c.records() != null) {
+                RecordStore recs = c.records();
+                for (int i = 0 ; i < recs.size() ; i++)
+                    out.writeEntry(recs.data(), recs.offset(i));
+            }
+            else {
+                for (DataEntry de : c.entries())
+                    out.writeEntry(de);
             }
-            root.addContent(child);
         }
         
-        try (FileOutputStream out = new FileOutputStream(f)) {
-            XMLOutputter xout = new XMLOutputter();
-            xout.setFormat(Format.getPrettyFormat());
-            xout.output(root, out);
-            out.flush();
-        }
+        CompiledSheet cs = c.sheet().compile();
+        int count = c.entries().size();
+        t.stop((long) count * cs.byteSum(), count, (long) count * cs.count());
     }
 }
\ No newline at end of file
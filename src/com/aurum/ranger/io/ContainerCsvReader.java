@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/**
+ * Pulls container entries from CSV one line at a time and encodes them into
+ * raw entry bytes. The first line names the fields; its columns may come in
+ * any order and columns that are not in the sheet are ignored. It accepts the
+ * files written by {@link ContainerCsvWriter}.
+ */
+public class ContainerCsvReader implements EntrySource {
+    private final BufferedReader in;
+    private final DataSheet source;
+    private final CompiledSheet sheet;
+    private final int[] columns;
+    private int entries;
+    private boolean finished;
+    
+    public ContainerCsvReader(File f, DataSheet s) throws IOException {
+        this(new FileInputStream(f), s);
+    }
+    
+    public ContainerCsvReader(InputStream in, DataSheet s) throws IOException {
+        this.in = new BufferedReader(new InputStreamReader(in, Charset.forName("UTF-8")), 0x10000);
+        this.source = s;
+        this.sheet = s.compile();
+        
+        String header;
+        try {
+            header = this.in.readLine();
+        }
+        catch (IOException ex) {
+            this.in.close();
+            throw ex;
+        }
+        if (header == null) {
+            close();
+            throw new IllegalArgumentException("CSV file has no header line");
+        }
+        
+        columns = new int[count(header)];
+        boolean[] seen = new boolean[sheet.count()];
+        
+        for (int i = 0, start = 0 ; i < columns.length ; i++) {
+            int end = end(header, start);
+            int field = sheet.indexOf(header.substring(start, end));
+            
+            // like the XML files, the first column of a name wins
+            if (field >= 0 && !seen[field]) {
+                columns[i] = field;
+                seen[field] = true;
+            }
+            else
+                columns[i] = -1;
+            start = end + 1;
+        }
+        
+        for (int i = 0 ; i < seen.length ; i++) {
+            if (!seen[i]) {
+                close();
+                throw new IllegalArgumentException("CSV header has no field " + sheet.names[i]);
+            }
+        }
+    }
+    
+    /**
+     * Returns the number of comma-separated values in a line.
+     */
+    private static int count(String line) {
+        int ret = 1;
+        for (int i = 0 ; i < line.length() ; i++) {
+            if (line.charAt(i) == ',')
+                ret++;
+        }
+        return ret;
+    }
+    
+    /**
+     * Returns the end of the value that starts at the given position.
+     */
+    private static int end(String line, int start) {
+        int ret = line.indexOf(',', start);
+        return ret < 0 ? line.length() : ret;
+    }
+    
+    @Override
+    public DataSheet sheet() {
+        return source;
+    }
+    
+    @Override
+    public boolean readEntry(byte[] data, int offset) throws IOException {
+        if (finished)
+            return false;
+        
+        String line;
+        do {
+            line = in.readLine();
+            if (line == null) {
+                finished = true;
+                return false;
+            }
+        } while (line.isEmpty());
+        
+        int start = 0;
+        for (int i = 0 ; i < columns.length ; i++) {
+            if (start > line.length())
+                throw new IllegalArgumentException("Entry " + entries + " has " + i + " values, expected " + columns.length);
+            
+            int end = end(line, start);
+            if (columns[i] >= 0)
+                FieldText.parse(sheet, data, offset, columns[i], line, start, end);
+            start = end + 1;
+        }
+        if (start <= line.length())
+            throw new IllegalArgumentException("Entry " + entries + " has more than " + columns.length + " values");
+        
+        entries++;
+        return true;
+    }
+    
+    @Override
+    public int count() {
+        return entries;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
\ No newline at end of file
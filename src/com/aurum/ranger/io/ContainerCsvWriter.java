@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Writes container entries as CSV while they are visited. The first line
+ * names the fields in sheet order and every following line holds one entry,
+ * with values in the same form as the XML files. Field names and values never
+ * contain commas or quotes, so nothing is quoted.
+ */
+public class ContainerCsvWriter implements EntrySink {
+    private final Writer out;
+    private final CompiledSheet sheet;
+    private final FieldText text;
+    private boolean started, closed;
+    
+    public ContainerCsvWriter(File f, DataSheet s) throws IOException {
+        this(new FileOutputStream(f), s);
+    }
+    
+    public ContainerCsvWriter(OutputStream out, DataSheet s) {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, Charset.forName("UTF-8")), 0x10000);
+        this.sheet = s.compile();
+        this.text = new FieldText(this.out);
+    }
+    
+    private void start() throws IOException {
+        if (!started) {
+            for (int i = 0 ; i < sheet.count() ; i++) {
+                if (i > 0)
+                    out.write(',');
+                out.write(sheet.names[i]);
+            }
+            out.write('\n');
+            started = true;
+        }
+    }
+    
+    @Override
+    public void writeEntry(byte[] data, int offset) throws IOException {
+        start();
+        for (int i = 0 ; i < sheet.count() ; i++) {
+            if (i > 0)
+                out.write(',');
+            text.write(sheet, data, offset, i);
+        }
+        out.write('\n');
+    }
+    
+    /**
+     * Writes the header line if no entry was written and closes the
+     * underlying stream.
+     * @throws IOException if an I/O exception occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        
+        try {
+            start();
+        }
+        finally {
+            out.close();
+        }
+    }
+}
\ No newline at end of file
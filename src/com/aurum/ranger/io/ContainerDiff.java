@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Compares two container files of the same sheet. The entry regions of both
+ * files are mapped and compared eight bytes at a time; only the entries in
+ * which a difference is found are decoded, field by field.
+ */
+public final class ContainerDiff {
+    /**
+     * A changed field. Entries that exist in only one of the files are
+     * reported field by field, with a {@code null} value for the other file.
+     */
+    public static final class Change {
+        public final int entry;
+        public final String field;
+        public final Object oldValue, newValue;
+        
+        public Change(int entry, String field, Object oldValue, Object newValue) {
+            this.entry = entry;
+            this.field = field;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+        
+        @Override
+        public String toString() {
+            return entry + " " + field + ": " + (oldValue != null ? oldValue : "-") + " -> " + (newValue != null ? newValue : "-");
+        }
+    }
+    
+    private ContainerDiff() {}
+    
+    /**
+     * Finds the first position at which two buffers differ.
+     * @param a the first buffer
+     * @param b the second buffer
+     * @param from the first position to compare
+     * @param to the position after the last one to compare
+     * @return the position of the first difference, or -1 if the ranges are
+     *         equal.
+     */
+    static int mismatch(ByteBuffer a, ByteBuffer b, int from, int to) {
+        int i = from;
+        
+        for ( ; i <= to - Long.BYTES ; i += Long.BYTES) {
+            if (a.getLong(i) != b.getLong(i))
+                break;
+        }
+        for ( ; i < to ; i++) {
+            if (a.get(i) != b.get(i))
+                return i;
+        }
+        return -1;
+    }
+    
+    /**
+     * Compares two container files and reports every changed field.
+     * @param oldFile the old container file
+     * @param newFile the new container file
+     * @param s the data sheet of both files
+     * @param changes receives the changed fields, in entry and sheet order
+     * @return the number of changed, added or removed entries.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public static int compare(File oldFile, File newFile, DataSheet s, Consumer<Change> changes) throws IOException {
+        try (MappedContainer a = MappedContainer.open(oldFile, s);
+                MappedContainer b = MappedContainer.open(newFile, s)) {
+            CompiledSheet cs = s.compile();
+            ByteBuffer ba = a.buffer(), bb = b.buffer();
+            int size = cs.byteSum();
+            int common = Math.min(a.size(), b.size());
+            int end = MappedContainer.HEADER_SIZE + common * size;
+            int changed = 0;
+            
+            int pos = MappedContainer.HEADER_SIZE;
+            while (pos < end && (pos = mismatch(ba, bb, pos, end)) >= 0) {
+                int entry = (pos - MappedContainer.HEADER_SIZE) / size;
+                int start = MappedContainer.HEADER_SIZE + entry * size;
+                
+                for (int i = 0 ; i < cs.count() ; i++) {
+                    int off = start + cs.offsets[i];
+                    if (mismatch(ba, bb, off, off + cs.types[i].size()) >= 0)
+                        changes.accept(new Change(entry, cs.names[i], a.get(entry, i), b.get(entry, i)));
+                }
+                
+                changed++;
+                pos = start + size;
+            }
+            
+            for (int e = common ; e < a.size() ; e++) {
+                for (int i = 0 ; i < cs.count() ; i++)
+                    changes.accept(new Change(e, cs.names[i], a.get(e, i), null));
+            }
+            for (int e = common ; e < b.size() ; e++) {
+                for (int i = 0 ; i < cs.count() ; i++)
+                    changes.accept(new Change(e, cs.names[i], null, b.get(e, i)));
+            }
+            
+            return changed + Math.abs(a.size() - b.size());
+        }
+    }
+    
+    /**
+     * Compares two container files and collects every changed field.
+     * @param oldFile the old container file
+     * @param newFile the new container file
+     * @param s the data sheet of both files
+     * @return the changed fields, in entry and sheet order.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public static List<Change> compare(File oldFile, File newFile, DataSheet s) throws IOException {
+        List<Change> ret = new ArrayList();
+        compare(oldFile, newFile, s, ret::add);
+        return ret;
+    }
+}
\ No newline at end of file
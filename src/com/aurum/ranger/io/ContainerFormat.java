@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+/**
+ * The text formats containers can be converted to and from. The format of a
+ * file is picked by its extension: {@code .csv} for CSV, {@code .jsonl} or
+ * {@code .ndjson} for JSON Lines and XML for anything else.
+ */
+public enum ContainerFormat {
+    XML, CSV, JSONL;
+    
+    /**
+     * Returns the format of a text file by its extension.
+     * @param f the text file
+     * @return the format.
+     */
+    public static ContainerFormat of(File f) {
+        String name = f.getName().toLowerCase(Locale.ROOT);
+        
+        if (name.endsWith(".csv"))
+            return CSV;
+        if (name.endsWith(".jsonl") || name.endsWith(".ndjson"))
+            return JSONL;
+        return XML;
+    }
+    
+    /**
+     * Opens a writer for a text file of this format.
+     * @param f the text file
+     * @param s the data sheet
+     * @return the writer.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public EntrySink writer(File f, DataSheet s) throws IOException {
+        switch(this) {
+            case CSV: return new ContainerCsvWriter(f, s);
+            case JSONL: return new ContainerJsonWriter(f, s);
+            default: return new ContainerXmlWriter(f, s);
+        }
+    }
+    
+    /**
+     * Opens a reader for a text file of this format.
+     * @param f the text file
+     * @param s the data sheet
+     * @return the reader.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public EntrySource reader(File f, DataSheet s) throws IOException {
+        switch(this) {
+            case CSV: return new ContainerCsvReader(f, s);
+            case JSONL: return new ContainerJsonReader(f, s);
+            default: return new ContainerXmlReader(f, s);
+        }
+    }
+    
+    /**
+     * Opens a reader for a text file of this format, using the sheet
+     * registered for the name of the XML root element. Only XML files name
+     * their sheet.
+     * @param f the text file
+     * @param reg the sheet registry
+     * @return the reader.
+     * @throws IOException if an I/O exception occurs.
+     * @throws IllegalArgumentException if the format does not name its sheet.
+     */
+    public EntrySource reader(File f, SheetRegistry reg) throws IOException {
+        if (this != XML)
+            throw new IllegalArgumentException(name() + " files do not name their sheet, a sheet file is required");
+        return new ContainerXmlReader(f, reg);
+    }
+    
+    /**
+     * Converts a container file to a text file of the format picked by its
+     * extension, writing every entry as soon as it is read. If a
+     * {@link ConversionCache} is set, an earlier result is reused.
+     * @param container the container file
+     * @param s the data sheet
+     * @param text the text file
+     * @throws IOException if an I/O exception occurs.
+     */
+    public static void export(File container, DataSheet s, File text) throws IOException {
+        ConversionCache cache = ConversionCache.shared();
+        String key = cache != null ? cache.key(container, s, "export " + of(text)) : null;
+        if (key != null && cache.fetch(key, text))
+            return;
+        
+        try (ContainerInputStream in = new ContainerInputStream(new BinaryInputStream(new FileInputStream(container)))) {
+            in.readHeader(s);
+            of(text).write(in, s, text);
+        }
+        if (key != null)
+            cache.store(key, text);
+    }
+    
+    /**
+     * Converts a container file like {@code export(File, DataSheet, File)},
+     * using the sheet registered for the magic in its header.
+     * @param container the container file
+     * @param reg the sheet registry
+     * @param text the text file
+     * @throws IOException if an I/O exception occurs.
+     */
+    public static void export(File container, SheetRegistry reg, File text) throws IOException {
+        if (ConversionCache.shared() != null) {
+            export(container, reg.detect(container), text);
+            return;
+        }
+        
+        try (ContainerInputStream in = new ContainerInputStream(new BinaryInputStream(new FileInputStream(container)))) {
+            DataSheet s = in.readHeader(reg);
+            of(text).write(in, s, text);
+        }
+    }
+    
+    /**
+     * Writes the entries of a container stream, whose header has been read,
+     * to a text file of this format.
+     */
+    void write(ContainerInputStream in, DataSheet s, File text) throws IOException {
+        Metrics.Timer t = Metrics.start(Metrics.Phase.EXPORT, text.getPath());
+        int count = in.count();
+        int size = in.entrySize();
+        
+        File tmp = temp(text);
+        try {
+            try (EntrySink out = writer(tmp, s)) {
+                byte[] rec = new byte[size];
+                
+                for (int i = 0 ; i < count ; i++) {
+                    in.readRecord(rec, 0, size);
+                    out.writeEntry(rec, 0);
+                }
+            }
+            replace(tmp, text);
+        }
+        finally {
+            tmp.delete();
+        }
+        t.stop((long) count * size, count, (long) count * s.compile().count());
+    }
+    
+    /**
+     * Converts a text file of the format picked by its extension to a
+     * container file in a single pass. If a {@link ConversionCache} is set,
+     * an earlier result is reused.
+     * @param text the text file
+     * @param s the data sheet
+     * @param container the container file
+     * @throws IOException if an I/O exception occurs.
+     */
+    public static void compile(File text, DataSheet s, File container) throws IOException {
+        ConversionCache cache = ConversionCache.shared();
+        String key = cache != null ? cache.key(text, s, "compile " + of(text)) : null;
+        if (key != null && cache.fetch(key, container))
+            return;
+        
+        compile(of(text).reader(text, s), container);
+        if (key != null)
+            cache.store(key, container);
+    }
+    
+    /**
+     * Converts a text file like {@code compile(File, DataSheet, File)}, using
+     * the sheet registered for the XML root element.
+     * @param text the text file
+     * @param reg the sheet registry
+     * @param container the container file
+     * @throws IOException if an I/O exception occurs.
+     * @throws IllegalArgumentException if the format does not name its sheet.
+     */
+    public static void compile(File text, SheetRegistry reg, File container) throws IOException {
+        EntrySource source = of(text).reader(text, reg);
+        ConversionCache cache = ConversionCache.shared();
+        String key = null;
+        
+        if (cache != null) {
+            try {
+                key = cache.key(text, source.sheet(), "compile " + of(text));
+            }
+            catch (IOException ex) {
+                source.close();
+                throw ex;
+            }
+            if (cache.fetch(key, container)) {
+                source.close();
+                return;
+            }
+        }
+        
+        compile(source, container);
+        if (key != null)
+            cache.store(key, container);
+    }
+    
+    /**
+     * Encodes and writes every entry as soon as it is read. The entry count
+     * in the header is filled in at the end, so memory use does not depend on
+     * the size of the text file. The container is written under a temporary
+     * name and only replaces the old one once every entry has been read.
+     */
+    static void compile(EntrySource source, File container) throws IOException {
+        Metrics.Timer t = Metrics.start(Metrics.Phase.COMPILE, container.getPath());
+        File tmp;
+        
+        try {
+            tmp = temp(container);
+        }
+        catch (IOException ex) {
+            source.close();
+            throw ex;
+        }
+        
+        try {
+            try (EntrySource in = source;
+                    FileOutputStream file = new FileOutputStream(tmp);
+                    ContainerOutputStream out = new ContainerOutputStream(new BinaryOutputStream(file))) {
+                DataSheet s = in.sheet();
+                int size = s.compile().byteSum();
+                byte[] rec = new byte[size];
+                
+                out.writeHeader(s, 0);
+                while (in.readEntry(rec, 0))
+                    out.writeRecord(rec, 0, size);
+                out.flush();
+                
+                ByteBuffer count = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                count.putInt(0, in.count());
+                file.getChannel().write(count, 0x8);
+            }
+            replace(tmp, container);
+        }
+        finally {
+            tmp.delete();
+        }
+        
+        CompiledSheet cs = source.sheet().compile();
+        t.stop((long) source.count() * cs.byteSum(), source.count(), (long) source.count() * cs.count());
+    }
+    
+    /**
+     * Creates an empty temporary file in the directory of an output file, so
+     * that the output can be written in full and then moved into place.
+     * @param out the output file
+     * @return the temporary file.
+     * @throws IOException if the file cannot be created.
+     */
+    static File temp(File out) throws IOException {
+        return File.createTempFile("." + out.getName() + ".", ".tmp", out.getAbsoluteFile().getParentFile());
+    }
+    
+    /**
+     * Moves a complete temporary file over an output file in one step, so
+     * that readers see either the old or the new file and never a partial one.
+     * @param tmp the temporary file
+     * @param out the output file
+     * @throws IOException if the file cannot be moved.
+     */
+    static void replace(File tmp, File out) throws IOException {
+        Files.move(tmp.toPath(), out.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
\ No newline at end of file
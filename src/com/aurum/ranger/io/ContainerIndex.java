@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.BitConverter;
+import com.aurum.ranger.ByteOrder;
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The indexes of a container, one {@link FieldIndex} for every field that the
+ * sheet marks with {@code index="true"}.
+ * <p>
+ * Indexes can be kept in a sidecar file next to the container. The sidecar
+ * records the length and modification time of the container it was built
+ * from and is ignored and rebuilt as soon as either of them changes, or if
+ * its checksum does not match.
+ */
+public final class ContainerIndex {
+    public static final String SUFFIX = ".idx";
+    
+    private static final int MAGIC = 0x58495350; // "PSIX"
+    private static final int VERSION = 1;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    private final DataSheet sheet;
+    private final Map<String, FieldIndex> indexes = new LinkedHashMap();
+    
+    private ContainerIndex(DataSheet sheet) {
+        this.sheet = sheet;
+    }
+    
+    public DataSheet sheet() {
+        return sheet;
+    }
+    
+    /**
+     * Returns the index of a field.
+     * @param field the field name
+     * @return the index.
+     * @throws IllegalArgumentException if the field is not indexed.
+     */
+    public FieldIndex get(String field) {
+        FieldIndex ret = indexes.get(field);
+        if (ret == null)
+            throw new IllegalArgumentException("Field " + field + " of sheet " + sheet.getName() + " is not indexed");
+        return ret;
+    }
+    
+    public Collection<FieldIndex> indexes() {
+        return Collections.unmodifiableCollection(indexes.values());
+    }
+    
+    /**
+     * Returns the sidecar file of a container.
+     * @param container the container file
+     * @return the sidecar file.
+     */
+    public static File sidecar(File container) {
+        return new File(container.getPath() + SUFFIX);
+    }
+    
+    /**
+     * Builds the indexes of a container file.
+     * @param container the container file
+     * @param s the data sheet
+     * @return the indexes.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public static ContainerIndex build(File container, DataSheet s) throws IOException {
+        ContainerIndex ret = new ContainerIndex(s);
+        CompiledSheet cs = s.compile();
+        
+        try (MappedContainer mc = MappedContainer.open(container, s)) {
+            ByteBuffer buf = mc.buffer();
+            int count = mc.size();
+            long[] keys = new long[count];
+            
+            for (String fn : s.indexedFields()) {
+                int field = cs.indexOf(fn);
+                FieldType type = cs.types[field];
+                
+                int pos = MappedContainer.HEADER_SIZE + cs.offsets[field];
+                for (int i = 0 ; i < count ; i++, pos += cs.byteSum)
+                    keys[i] = FieldIndex.key(type, buf, pos);
+                
+                ret.indexes.put(fn, FieldIndex.build(fn, type, keys, count));
+            }
+        }
+        return ret;
+    }
+    
+    /**
+     * Builds the indexes of the entries of a container. Later changes to the
+     * container are not reflected by the indexes.
+     * @param c the container
+     * @return the indexes.
+     */
+    public static ContainerIndex build(Container c) {
+        DataSheet s = c.sheet();
+        ContainerIndex ret = new ContainerIndex(s);
+        CompiledSheet cs = s.compile();
+        List<DataEntry> entries = c.entries();
+        RecordStore recs = c.records();
+        int count = entries.size();
+        long[] keys = new long[count];
+        
+        for (String fn : s.indexedFields()) {
+            int field = cs.indexOf(fn);
+            FieldType type = cs.types[field];
+            
+            if (recs != null) {
+                for (int i = 0 ; i < count ; i++)
+                    keys[i] = FieldIndex.key(type, recs.data(), recs.offset(i) + cs.offsets[field]);
+            }
+            else if (c.isColumnar()) {
+                for (int i = 0 ; i < count ; i++)
+                    keys[i] = FieldIndex.key(type, c.columns().get(field, i));
+            }
+            else {
+                for (int i = 0 ; i < count ; i++)
+                    keys[i] = FieldIndex.key(type, entries.get(i).get(fn));
+            }
+            
+            ret.indexes.put(fn, FieldIndex.build(fn, type, keys, count));
+        }
+        return ret;
+    }
+    
+    /**
+     * Returns the indexes of a container file, from its sidecar file if that
+     * is up to date. Otherwise the indexes are built and the sidecar file is
+     * written. A sidecar file that cannot be written is not an error; the
+     * indexes are then simply built again next time.
+     * @param container the container file
+     * @param s the data sheet
+     * @return the indexes.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public static ContainerIndex open(File container, DataSheet s) throws IOException {
+        File f = sidecar(container);
+        
+        ContainerIndex ret = load(f, container, s);
+        if (ret != null)
+            return ret;
+        
+        ret = build(container, s);
+        try {
+            ret.save(f, container);
+        }
+        catch (IOException ex) {
+            f.delete();
+        }
+        return ret;
+    }
+    
+    private static void writeString(BinaryOutputStream out, String str) throws IOException {
+        byte[] b = str.getBytes(UTF8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+    
+    private static String readString(BinaryInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0 || len > 0xFFFF)
+            throw new IOException("Corrupt index file");
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, UTF8);
+    }
+    
+    /**
+     * Writes these indexes to a sidecar file.
+     * @param f the sidecar file
+     * @param container the container file the indexes were built from
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void save(File f, File container) throws IOException {
+        try (FileOutputStream file = new FileOutputStream(f)) {
+            CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32());
+            BinaryOutputStream out = new BinaryOutputStream(checked);
+            
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(container.length());
+            out.writeLong(container.lastModified());
+            writeString(out, sheet.getName());
+            out.writeInt(sheet.compile().byteSum());
+            out.writeInt(indexes.size());
+            
+            for (FieldIndex fi : indexes.values()) {
+                writeString(out, fi.field());
+                out.writeByte((byte) fi.type().ordinal());
+                fi.write(out);
+            }
+            
+            out.flush();
+            out = new BinaryOutputStream(file);
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+        }
+    }
+    
+    /**
+     * Reads the indexes of a container file from a sidecar file.
+     * @param f the sidecar file
+     * @param container the container file
+     * @param s the data sheet
+     * @return the indexes, or {@code null} if the sidecar file is missing,
+     *         unreadable or does not match the container and sheet.
+     */
+    public static ContainerIndex load(File f, File container, DataSheet s) {
+        if (!f.isFile())
+            return null;
+        
+        try {
+            byte[] data = Files.readAllBytes(f.toPath());
+            if (data.length < Integer.BYTES)
+                return null;
+            
+            int len = data.length - Integer.BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, len);
+            if ((int) crc.getValue() != BitConverter.toInt(data, ByteOrder.LITTLE_ENDIAN, len))
+                return null;
+            
+            BinaryInputStream in = new BinaryInputStream(new ByteArrayInputStream(data, 0, len));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return null;
+            if (in.readLong() != container.length() || in.readLong() != container.lastModified())
+                return null;
+            if (!readString(in).equals(s.getName()) || in.readInt() != s.compile().byteSum())
+                return null;
+            
+            List<String> fields = s.indexedFields();
+            if (in.readInt() != fields.size())
+                return null;
+            
+            ContainerIndex ret = new ContainerIndex(s);
+            for (String fn : fields) {
+                FieldType type = s.values().get(fn);
+                if (!readString(in).equals(fn) || in.readByte() != type.ordinal())
+                    return null;
+                ret.indexes.put(fn, FieldIndex.read(in, fn, type));
+            }
+            return ret;
+        }
+        catch (IOException ex) {
+            return null;
+        }
+    }
+}
\ No newline at end of file
@@ -17,14 +17,32 @@
 
 package com.aurum.ranger.io;
 
+import com.aurum.ranger.BitConverter;
 import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ContainerInputStream extends InputStream {
+    /**
+     * The number of entry bytes decoded by a single task of a parallel read.
+     */
+    private static final int CHUNK_SIZE = 0x10000;
+    
     protected volatile BinaryInputStream in;
     
+    private final byte[] magic = new byte[4];
+    private int size, count;
+    
     public ContainerInputStream(BinaryInputStream in) {
         this.in = in;
     }
@@ -74,25 +92,128 @@ public class ContainerInputStream extends InputStream {
         // nope...
     }
     
-    public void read(Container c) throws IOException {
-        in.readInt();   // useless magic
-        int size = in.readInt();
-        int count = in.readInt();
+    /**
+     * Reads the container header. Its values are available through
+     * {@code magic}, {@code entrySize} and {@code count} afterwards.
+     * @throws IOException if an I/O exception occurs.
+     * @throws IllegalArgumentException if the entry size or count is negative.
+     */
+    public void readHeader() throws IOException {
+        in.readFully(magic, 0, magic.length);
+        size = in.readInt();
+        count = in.readInt();
         in.readInt();   // padding...
         
-        int sheetsize = c.sheet().byteSum();
+        if (size < 0 || count < 0)
+            throw new IllegalArgumentException("Container header is corrupt (entry size " + size + ", " + count + " entries)");
+    }
+    
+    /**
+     * Reads the container header and checks its entry size against the sheet.
+     * The entries can then be read one by one with {@code readRecord}.
+     * @param s the data sheet
+     * @return the number of entries.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public int readHeader(DataSheet s) throws IOException {
+        readHeader();
+        
+        int sheetsize = s.compile().byteSum();
+        if (size != sheetsize) {
+            throw new IllegalArgumentException("Entry sheet size does not equal entry size (" + size + " != " + sheetsize + ")");
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Reads the container header, picks the sheet registered for its magic
+     * and checks the entry size against it.
+     * @param reg the sheet registry
+     * @return the data sheet.
+     * @throws IOException if an I/O exception occurs.
+     * @throws IllegalArgumentException if no sheet is registered for the magic.
+     */
+    public DataSheet readHeader(SheetRegistry reg) throws IOException {
+        readHeader();
+        
+        DataSheet s = reg.forMagic(magic);
+        int sheetsize = s.compile().byteSum();
         if (size != sheetsize) {
             throw new IllegalArgumentException("Entry sheet size does not equal entry size (" + size + " != " + sheetsize + ")");
         }
         
+        return s;
+    }
+    
+    /**
+     * Returns the magic of the last header read.
+     * @return the magic.
+     */
+    public String magic() {
+        return new String(magic, Charset.forName("UTF-8"));
+    }
+    
+    /**
+     * Returns the entry size of the last header read.
+     * @return the entry size in bytes.
+     */
+    public int entrySize() {
+        return size;
+    }
+    
+    /**
+     * Returns the entry count of the last header read.
+     * @return the number of entries.
+     */
+    public int count() {
+        return count;
+    }
+    
+    /**
+     * Reads the raw bytes of the next entry.
+     * @param b the buffer into which the entry is read
+     * @param off the start offset in the buffer
+     * @param len the entry size
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void readRecord(byte[] b, int off, int len) throws IOException {
+        in.readFully(b, off, len);
+    }
+    
+    public void read(Container c) throws IOException {
+        Metrics.Timer t = Metrics.start(Metrics.Phase.DECODE, c.sheet().getName());
+        int count = readEntries(c);
+        CompiledSheet cs = c.sheet().compile();
+        t.stop((long) count * cs.byteSum(), count, (long) count * cs.count());
+    }
+    
+    private int readEntries(Container c) throws IOException {
+        int count = readHeader(c.sheet());
+        CompiledSheet cs = c.sheet().compile();
+        
+        if (c.isColumnar()) {
+            readColumns(c.columns(), count);
+            return count;
+        }
+        if (c.records() != null) {
+            if (cs.byteSum() > 0 && count > Integer.MAX_VALUE / cs.byteSum())
+                throw new IllegalArgumentException("Container is too large to be read at once (" + count + " entries)");
+            
+            readRecords(c.records(), count);
+            return count;
+        }
+        
+        String[] names = cs.names;
+        FieldType[] types = cs.types;
+        
         for (int i = 0 ; i < count ; i++) {
             DataEntry de = new DataEntry();
-            HashMap<String, FieldType> val = c.sheet().values();
             
-            for (String fn : val.keySet()) {
-                FieldType ft = val.get(fn);
+            for (int j = 0 ; j < types.length ; j++) {
+                String fn = names[j];
                 
-                switch(ft) {
+                switch(types[j]) {
                     case INT8: de.put(fn, in.readByte()); break;
                     case INT16: de.put(fn, in.readShort()); break;
                     case INT32: de.put(fn, in.readInt()); break;
@@ -100,11 +221,352 @@ public class ContainerInputStream extends InputStream {
                     case FLOAT32: de.put(fn, in.readFloat()); break;
                     case FLOAT64: de.put(fn, in.readDouble()); break;
                     case BOOLEAN: de.put(fn, in.readBoolean()); break;
-                    default: throw new IllegalArgumentException("Unknown/unsupported field type " + ft.name());
+                    default: throw new IllegalArgumentException("Unknown/unsupported field type " + types[j].name());
                 }
             }
             
             c.entries().add(de);
         }
+        
+        return count;
+    }
+    
+    /**
+     * Reads the container like {@code read(Container)}, but decodes the
+     * entries on the common fork/join pool.
+     * @param c the container to read into
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void readParallel(Container c) throws IOException {
+        read(c, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Reads the container like {@code read(Container)}, but decodes the
+     * entries in parallel. The whole entry region is read at once and split
+     * into ranges of entries, which are decoded concurrently into storage that
+     * is sized up front, so the entries end up in file order.
+     * @param c the container to read into
+     * @param pool the pool to decode on
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void read(Container c, ForkJoinPool pool) throws IOException {
+        Metrics.Timer t = Metrics.start(Metrics.Phase.DECODE, c.sheet().getName());
+        int count = readEntries(c, pool);
+        CompiledSheet cs = c.sheet().compile();
+        t.stop((long) count * cs.byteSum(), count, (long) count * cs.count());
+    }
+    
+    private int readEntries(Container c, ForkJoinPool pool) throws IOException {
+        int count = readHeader(c.sheet());
+        CompiledSheet cs = c.sheet().compile();
+        int size = cs.byteSum();
+        
+        if (size > 0 && count > Integer.MAX_VALUE / size)
+            throw new IllegalArgumentException("Container is too large to be read at once (" + count + " entries)");
+        if (c.records() != null) {
+            readRecords(c.records(), count);
+            return count;
+        }
+        
+        byte[] data = readData(count * size);
+        int chunk = chunk(size);
+        
+        if (c.isColumnar()) {
+            ColumnStore cols = c.columns();
+            int first = cols.grow(count);
+            pool.invoke(new DecodeColumns(cs, data, cols.columns, first, 0, count, chunk));
+        }
+        else {
+            DataEntry[] entries = new DataEntry[count];
+            pool.invoke(new DecodeEntries(cs, data, entries, 0, count, chunk));
+            c.entries().addAll(Arrays.asList(entries));
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Reads the container header and returns a spliterator over its entries.
+     * Entries are read one at a time into a single {@link RecordEntry}, which
+     * is moved on for every entry, so memory use does not depend on the size
+     * of the container. Call {@code clone} on an entry to keep a copy. The
+     * spliterator is {@code SIZED} by the header count and does not split.
+     * @param s the data sheet
+     * @return the spliterator.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public Spliterator<DataEntry> spliterator(DataSheet s) throws IOException {
+        int n = readHeader(s);
+        return new Entries(this, s.compile(), n);
+    }
+    
+    /**
+     * Reads the container header and returns a sequential stream over its
+     * entries, like {@code spliterator}. Closing the stream closes this
+     * input stream. I/O exceptions while reading entries are thrown as
+     * {@link UncheckedIOException}.
+     * @param s the data sheet
+     * @return the stream.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public Stream<DataEntry> entries(DataSheet s) throws IOException {
+        return StreamSupport.stream(spliterator(s), false).onClose(() -> {
+            try {
+                close();
+            }
+            catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+    
+    private static final class Entries implements Spliterator<DataEntry> {
+        private final ContainerInputStream in;
+        private final RecordEntry entry;
+        private final int size;
+        private int left;
+        
+        Entries(ContainerInputStream in, CompiledSheet sheet, int count) {
+            this.in = in;
+            this.entry = new RecordEntry(sheet);
+            this.size = sheet.byteSum();
+            this.left = count;
+        }
+        
+        @Override
+        public boolean tryAdvance(Consumer<? super DataEntry> action) {
+            if (left <= 0)
+                return false;
+            
+            try {
+                in.readRecord(entry.data(), 0, size);
+            }
+            catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            left--;
+            action.accept(entry);
+            return true;
+        }
+        
+        @Override
+        public Spliterator<DataEntry> trySplit() {
+            return null;
+        }
+        
+        @Override
+        public long estimateSize() {
+            return left;
+        }
+        
+        @Override
+        public int characteristics() {
+            return SIZED | ORDERED | NONNULL;
+        }
+    }
+    
+    /**
+     * Decodes a range of entries, splitting it in halves until it is no
+     * longer than {@code chunk} entries.
+     */
+    private static abstract class Decode extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        final CompiledSheet sheet;
+        final byte[] data;
+        final int from, to, chunk;
+        
+        Decode(CompiledSheet sheet, byte[] data, int from, int to, int chunk) {
+            this.sheet = sheet;
+            this.data = data;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+        
+        abstract Decode split(int from, int to);
+        abstract void decode();
+        
+        @Override
+        protected void compute() {
+            if (to - from <= chunk)
+                decode();
+            else {
+                int mid = (from + to) >>> 1;
+                invokeAll(split(from, mid), split(mid, to));
+            }
+        }
+    }
+    
+    private static final class DecodeEntries extends Decode {
+        private static final long serialVersionUID = 1L;
+        
+        final DataEntry[] entries;
+        
+        DecodeEntries(CompiledSheet sheet, byte[] data, DataEntry[] entries, int from, int to, int chunk) {
+            super(sheet, data, from, to, chunk);
+            this.entries = entries;
+        }
+        
+        @Override
+        Decode split(int from, int to) {
+            return new DecodeEntries(sheet, data, entries, from, to, chunk);
+        }
+        
+        @Override
+        void decode() {
+            String[] names = sheet.names;
+            
+            for (int i = from ; i < to ; i++) {
+                DataEntry de = new DataEntry();
+                int offset = i * sheet.byteSum;
+                for (int j = 0 ; j < names.length ; j++)
+                    de.put(names[j], sheet.get(data, offset, j));
+                entries[i] = de;
+            }
+        }
+    }
+    
+    private static final class DecodeColumns extends Decode {
+        private static final long serialVersionUID = 1L;
+        
+        final Object[] columns;
+        final int first;
+        
+        DecodeColumns(CompiledSheet sheet, byte[] data, Object[] columns, int first, int from, int to, int chunk) {
+            super(sheet, data, from, to, chunk);
+            this.columns = columns;
+            this.first = first;
+        }
+        
+        @Override
+        Decode split(int from, int to) {
+            return new DecodeColumns(sheet, data, columns, first, from, to, chunk);
+        }
+        
+        @Override
+        void decode() {
+            ColumnCodec codec = sheet.codec();
+            if (codec != null) {
+                codec.decode(data, from * sheet.byteSum, columns, first + from, first + to);
+                return;
+            }
+            
+            FieldType[] types = sheet.types;
+            int[] offsets = sheet.offsets;
+            
+            for (int i = from ; i < to ; i++) {
+                int offset = i * sheet.byteSum;
+                int row = first + i;
+                
+                for (int j = 0 ; j < types.length ; j++) {
+                    int pos = offset + offsets[j];
+                    
+                    switch(types[j]) {
+                        case INT8: ((byte[]) columns[j])[row] = data[pos]; break;
+                        case INT16: ((short[]) columns[j])[row] = BitConverter.toShort(data, CompiledSheet.ENDIAN, pos); break;
+                        case INT32: ((int[]) columns[j])[row] = BitConverter.toInt(data, CompiledSheet.ENDIAN, pos); break;
+                        case INT64: ((long[]) columns[j])[row] = BitConverter.toLong(data, CompiledSheet.ENDIAN, pos); break;
+                        case FLOAT32: ((float[]) columns[j])[row] = BitConverter.toFloat(data, CompiledSheet.ENDIAN, pos); break;
+                        case FLOAT64: ((double[]) columns[j])[row] = BitConverter.toDouble(data, CompiledSheet.ENDIAN, pos); break;
+                        case BOOLEAN: ((boolean[]) columns[j])[row] = BitConverter.toBoolean(data, pos); break;
+                        default: throw new IllegalArgumentException("Unknown/unsupported field type " + types[j].name());
+                    }
+                }
+            }
+        }
+    }
+    
+    /*
+     * The header count is not trusted to size storage: a truncated or corrupt
+     * file could announce far more entries than it holds. Storage grows chunk
+     * by chunk as the data arrives instead, so such a file ends in an
+     * EOFException once its data runs out.
+     */
+    
+    private static int chunk(int size) {
+        return Math.max(1, CHUNK_SIZE / Math.max(1, size));
+    }
+    
+    private byte[] readData(int len) throws IOException {
+        byte[] data = new byte[Math.min(len, CHUNK_SIZE)];
+        int n = 0;
+        
+        while (n < len) {
+            if (n == data.length)
+                data = Arrays.copyOf(data, (int) Math.min(len, 2L * data.length));
+            int r = in.read(data, n, data.length - n);
+            if (r < 0)
+                throw new EOFException("Unexpected end of stream (" + (len - n) + " more bytes needed)");
+            n += r;
+        }
+        return data;
+    }
+    
+    private void readRecords(RecordStore recs, int count) throws IOException {
+        int size = recs.sheet.byteSum;
+        int chunk = chunk(size);
+        
+        for (int i = 0 ; i < count ; i += chunk) {
+            int n = Math.min(chunk, count - i);
+            int first = recs.grow(n);
+            in.readFully(recs.data(), first * size, n * size);
+        }
+    }
+    
+    private void readColumns(ColumnStore cols, int count) throws IOException {
+        FieldType[] types = cols.sheet.types;
+        ColumnCodec codec = cols.sheet.codec();
+        int size = cols.sheet.byteSum;
+        int chunk = chunk(size);
+        byte[] buf = types.length != 1 && codec != null ? new byte[Math.min(count, chunk) * size] : null;
+        
+        for (int i = 0 ; i < count ; i += chunk) {
+            int n = Math.min(chunk, count - i);
+            int first = cols.grow(n);
+            
+            if (types.length == 1)
+                readColumn(types[0], cols.columns[0], first, n);
+            else if (codec != null) {
+                in.readFully(buf, 0, n * size);
+                codec.decode(buf, 0, cols.columns, first, first + n);
+            }
+            else
+                readFields(types, cols.columns, first, n);
+        }
+    }
+    
+    /**
+     * Reads single-field entries, which are just the column itself.
+     */
+    private void readColumn(FieldType type, Object column, int first, int count) throws IOException {
+        switch(type) {
+            case INT8: in.readFully((byte[]) column, first, count); break;
+            case INT16: in.readShorts((short[]) column, first, count); break;
+            case INT32: in.readInts((int[]) column, first, count); break;
+            case INT64: in.readLongs((long[]) column, first, count); break;
+            case FLOAT32: in.readFloats((float[]) column, first, count); break;
+            case FLOAT64: in.readDoubles((double[]) column, first, count); break;
+            case BOOLEAN: in.readBooleans((boolean[]) column, first, count); break;
+            default: throw new IllegalArgumentException("Unknown/unsupported field type " + type.name());
+        }
+    }
+    
+    private void readFields(FieldType[] types, Object[] columns, int first, int count) throws IOException {
+        for (int i = first ; i < first + count ; i++) {
+            for (int j = 0 ; j < types.length ; j++) {
+                switch(types[j]) {
+                    case INT8: ((byte[]) columns[j])[i] = in.readByte(); break;
+                    case INT16: ((short[]) columns[j])[i] = in.readShort(); break;
+                    case INT32: ((int[]) columns[j])[i] = in.readInt(); break;
+                    case INT64: ((long[]) columns[j])[i] = in.readLong(); break;
+                    case FLOAT32: ((float[]) columns[j])[i] = in.readFloat(); break;
+                    case FLOAT64: ((double[]) columns[j])[i] = in.readDouble(); break;
+                    case BOOLEAN: ((boolean[]) columns[j])[i] = in.readBoolean(); break;
+                    default: throw new IllegalArgumentException("Unknown/unsupported field type " + types[j].name());
+                }
+            }
+        }
     }
 }
\ No newline at end of file
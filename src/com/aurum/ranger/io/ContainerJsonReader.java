@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/**
+ * Pulls container entries from JSON Lines one line at a time and encodes them
+ * into raw entry bytes. Every line holds one entry as a flat object of field
+ * names and numbers, booleans or strings. The fields may come in any order and
+ * names that are not in the sheet are ignored. It accepts the files written
+ * by {@link ContainerJsonWriter}.
+ */
+public class ContainerJsonReader implements EntrySource {
+    private final BufferedReader in;
+    private final DataSheet source;
+    private final CompiledSheet sheet;
+    private final boolean[] seen;
+    private String line;
+    private int pos, entries;
+    private boolean finished;
+    
+    public ContainerJsonReader(File f, DataSheet s) throws IOException {
+        this(new FileInputStream(f), s);
+    }
+    
+    public ContainerJsonReader(InputStream in, DataSheet s) {
+        this.in = new BufferedReader(new InputStreamReader(in, Charset.forName("UTF-8")), 0x10000);
+        this.source = s;
+        this.sheet = s.compile();
+        this.seen = new boolean[sheet.count()];
+    }
+    
+    @Override
+    public DataSheet sheet() {
+        return source;
+    }
+    
+    private IllegalArgumentException error(String msg) {
+        return new IllegalArgumentException("Entry " + entries + ": " + msg + " at column " + (pos + 1));
+    }
+    
+    private void skipSpace() {
+        while (pos < line.length() && Character.isWhitespace(line.charAt(pos)))
+            pos++;
+    }
+    
+    private void expect(char c) {
+        skipSpace();
+        if (pos >= line.length() || line.charAt(pos) != c)
+            throw error("expected '" + c + "'");
+        pos++;
+    }
+    
+    /**
+     * Reads a string starting at the current position, which is the opening
+     * quote, and moves past its closing quote.
+     * @return the end of the string contents, or -1 if it has escapes and
+     *         has to be read with {@code unescape}.
+     */
+    private int string() {
+        int start = pos + 1;
+        
+        for (int i = start ; i < line.length() ; i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                pos = i + 1;
+                return i;
+            }
+            if (c == '\\')
+                return -1;
+        }
+        throw error("unterminated string");
+    }
+    
+    private String unescape() {
+        StringBuilder ret = new StringBuilder();
+        
+        for (pos++ ; pos < line.length() ; pos++) {
+            char c = line.charAt(pos);
+            if (c == '"') {
+                pos++;
+                return ret.toString();
+            }
+            if (c != '\\') {
+                ret.append(c);
+                continue;
+            }
+            if (++pos >= line.length())
+                break;
+            
+            switch(c = line.charAt(pos)) {
+                case 'b': ret.append('\b'); break;
+                case 'f': ret.append('\f'); break;
+                case 'n': ret.append('\n'); break;
+                case 'r': ret.append('\r'); break;
+                case 't': ret.append('\t'); break;
+                case 'u': {
+                    if (pos + 5 > line.length())
+                        throw error("invalid escape");
+                    ret.append((char) Integer.parseInt(line.substring(pos + 1, pos + 5), 16));
+                    pos += 4;
+                    break;
+                }
+                default: ret.append(c); break;
+            }
+        }
+        throw error("unterminated string");
+    }
+    
+    /**
+     * Reads a field name and returns its index. The fields are usually in
+     * sheet order, so the expected field is compared in place first.
+     */
+    private int key(int expected) {
+        skipSpace();
+        if (pos >= line.length() || line.charAt(pos) != '"')
+            throw error("expected field name");
+        
+        int start = pos + 1;
+        if (expected < seen.length) {
+            String name = sheet.names[expected];
+            int end = start + name.length();
+            
+            if (end < line.length() && line.charAt(end) == '"' && line.regionMatches(start, name, 0, name.length())) {
+                pos = end + 1;
+                return expected;
+            }
+        }
+        
+        int end = string();
+        return sheet.indexOf(end >= 0 ? line.substring(start, end) : unescape());
+    }
+    
+    /**
+     * Reads a value and encodes it into the field, unless the field is -1.
+     */
+    private void value(byte[] data, int offset, int field) {
+        skipSpace();
+        if (pos >= line.length())
+            throw error("expected value");
+        
+        char c = line.charAt(pos);
+        if (c == '{' || c == '[')
+            throw error("nested values are not supported");
+        
+        if (c == '"') {
+            int start = pos + 1;
+            int end = string();
+            
+            if (end >= 0) {
+                if (field >= 0)
+                    FieldText.parse(sheet, data, offset, field, line, start, end);
+            }
+            else {
+                // a string with escapes has to be read even if it is ignored
+                String val = unescape();
+                if (field >= 0)
+                    FieldText.parse(sheet, data, offset, field, val, 0, val.length());
+            }
+            return;
+        }
+        
+        int start = pos;
+        while (pos < line.length() && (c = line.charAt(pos)) != ',' && c != '}' && !Character.isWhitespace(c))
+            pos++;
+        
+        if (pos - start == 4 && line.startsWith("null", start))
+            throw error("field " + (field >= 0 ? sheet.names[field] + " " : "") + "is null");
+        if (field >= 0)
+            FieldText.parse(sheet, data, offset, field, line, start, pos);
+    }
+    
+    @Override
+    public boolean readEntry(byte[] data, int offset) throws IOException {
+        if (finished)
+            return false;
+        
+        do {
+            line = in.readLine();
+            if (line == null) {
+                finished = true;
+                return false;
+            }
+            pos = 0;
+            skipSpace();
+        } while (pos == line.length());
+        
+        for (int i = 0 ; i < seen.length ; i++)
+            seen[i] = false;
+        
+        expect('{');
+        skipSpace();
+        if (pos < line.length() && line.charAt(pos) == '}')
+            pos++;
+        else {
+            int next = 0;
+            
+            while (true) {
+                int field = key(next);
+                expect(':');
+                
+                // like the XML files, the first field of a name wins
+                if (field >= 0 && seen[field])
+                    field = -1;
+                value(data, offset, field);
+                if (field >= 0) {
+                    seen[field] = true;
+                    next = field + 1;
+                }
+                
+                skipSpace();
+                if (pos < line.length() && line.charAt(pos) == ',') {
+                    pos++;
+                    continue;
+                }
+                expect('}');
+                break;
+            }
+        }
+        
+        skipSpace();
+        if (pos < line.length())
+            throw error("unexpected text after entry");
+        
+        for (int i = 0 ; i < seen.length ; i++) {
+            if (!seen[i])
+                throw new IllegalArgumentException("Entry " + entries + " has no field " + sheet.names[i]);
+        }
+        
+        entries++;
+        return true;
+    }
+    
+    @Override
+    public int count() {
+        return entries;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
\ No newline at end of file
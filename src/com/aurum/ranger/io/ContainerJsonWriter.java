@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.BitConverter;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Writes container entries as JSON Lines while they are visited. Every line
+ * holds one entry as an object with the fields in sheet order. Numbers and
+ * booleans are written as JSON literals, except for NaN and infinite floats,
+ * which JSON has no literal for and are written as strings instead.
+ */
+public class ContainerJsonWriter implements EntrySink {
+    private final Writer out;
+    private final CompiledSheet sheet;
+    private final FieldText text;
+    private final String[] fieldStart;
+    private boolean closed;
+    
+    public ContainerJsonWriter(File f, DataSheet s) throws IOException {
+        this(new FileOutputStream(f), s);
+    }
+    
+    public ContainerJsonWriter(OutputStream out, DataSheet s) {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, Charset.forName("UTF-8")), 0x10000);
+        this.sheet = s.compile();
+        this.text = new FieldText(this.out);
+        this.fieldStart = new String[sheet.count()];
+        
+        for (int i = 0 ; i < fieldStart.length ; i++)
+            fieldStart[i] = (i == 0 ? "{\"" : ",\"") + sheet.names[i] + "\":";
+    }
+    
+    private void writeFloat(String val, boolean finite) throws IOException {
+        if (finite)
+            out.write(val);
+        else {
+            out.write('"');
+            out.write(val);
+            out.write('"');
+        }
+    }
+    
+    @Override
+    public void writeEntry(byte[] data, int offset) throws IOException {
+        if (fieldStart.length == 0)
+            out.write('{');
+        
+        for (int i = 0 ; i < fieldStart.length ; i++) {
+            int pos = offset + sheet.offsets[i];
+            
+            out.write(fieldStart[i]);
+            switch(sheet.types[i]) {
+                case FLOAT32: {
+                    float val = BitConverter.toFloat(data, CompiledSheet.ENDIAN, pos);
+                    writeFloat(Float.toString(val), !Float.isNaN(val) && !Float.isInfinite(val));
+                    break;
+                }
+                case FLOAT64: {
+                    double val = BitConverter.toDouble(data, CompiledSheet.ENDIAN, pos);
+                    writeFloat(Double.toString(val), !Double.isNaN(val) && !Double.isInfinite(val));
+                    break;
+                }
+                default: text.write(sheet, data, offset, i); break;
+            }
+        }
+        out.write("}\n");
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        out.close();
+    }
+}
\ No newline at end of file
@@ -21,9 +21,13 @@ import com.aurum.ranger.io.DataSheet.FieldType;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
-import java.util.HashMap;
 
 public class ContainerOutputStream extends OutputStream {
+    /**
+     * The number of entry bytes encoded at once by a generated codec.
+     */
+    private static final int CHUNK_SIZE = 0x10000;
+    
     protected volatile BinaryOutputStream out;
     
     public ContainerOutputStream(BinaryOutputStream out) {
@@ -55,23 +59,69 @@ public class ContainerOutputStream extends OutputStream {
         out.close();
     }
     
-    public void write(Container c) throws IOException {
-        byte[] magic = c.sheet().getName().getBytes(Charset.forName("UTF-8"));
+    /**
+     * Writes the container header. The entries have to follow with
+     * {@code writeRecord}.
+     * @param s the data sheet
+     * @param count the number of entries
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void writeHeader(DataSheet s, int count) throws IOException {
+        CompiledSheet cs = s.compile();
+        byte[] magic = cs.getName().getBytes(Charset.forName("UTF-8"));
         if (magic.length != 4)
             throw new IllegalArgumentException("sheet name bytes is not 4 bytes long");
         
         out.write(magic);
-        out.writeInt(c.sheet().byteSum());
-        out.writeInt(c.entries().size());
+        out.writeInt(cs.byteSum());
+        out.writeInt(count);
         out.writeInt(0x0);
+    }
+    
+    /**
+     * Writes the raw bytes of an entry.
+     * @param b the buffer holding the entry
+     * @param off the start offset in the buffer
+     * @param len the entry size
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void writeRecord(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+    
+    public void write(Container c) throws IOException {
+        Metrics.Timer t = Metrics.start(Metrics.Phase.ENCODE, c.sheet().getName());
+        CompiledSheet cs = c.sheet().compile();
+        int count = c.entries().size();
+        
+        writeEntries(c);
+        t.stop((long) count * cs.byteSum(), count, (long) count * cs.count());
+    }
+    
+    private void writeEntries(Container c) throws IOException {
+        CompiledSheet cs = c.sheet().compile();
+        writeHeader(c.sheet(), c.entries().size());
+        
+        if (c.isColumnar()) {
+            writeColumns(c.columns());
+            out.flush();
+            return;
+        }
+        if (c.records() != null) {
+            RecordStore recs = c.records();
+            out.write(recs.data(), 0, recs.size() * cs.byteSum());
+            out.flush();
+            return;
+        }
+        
+        String[] names = cs.names;
+        FieldType[] types = cs.types;
         
         for (DataEntry e : c.entries()) {
-            HashMap<String, FieldType> val = c.sheet().values();
-            
-            for (String fn : val.keySet()) {
-                FieldType ft = val.get(fn);
+            for (int j = 0 ; j < types.length ; j++) {
+                String fn = names[j];
                 
-                switch(ft) {
+                switch(types[j]) {
                     case INT8: out.writeByte((byte) e.get(fn)); break;
                     case INT16: out.writeShort((short) e.get(fn)); break;
                     case INT32: out.writeInt((int) e.get(fn)); break;
@@ -82,5 +132,54 @@ public class ContainerOutputStream extends OutputStream {
                 }
             }
         }
+        
+        out.flush();
+    }
+    
+    private void writeColumns(ColumnStore cols) throws IOException {
+        FieldType[] types = cols.sheet.types;
+        Object[] columns = cols.columns;
+        int count = cols.size();
+        
+        if (types.length == 1) {
+            // single-field entries are just the column itself
+            switch(types[0]) {
+                case INT8: out.write((byte[]) columns[0], 0, count); return;
+                case INT16: out.writeShorts((short[]) columns[0], 0, count); return;
+                case INT32: out.writeInts((int[]) columns[0], 0, count); return;
+                case INT64: out.writeLongs((long[]) columns[0], 0, count); return;
+                case FLOAT32: out.writeFloats((float[]) columns[0], 0, count); return;
+                case FLOAT64: out.writeDoubles((double[]) columns[0], 0, count); return;
+                case BOOLEAN: out.writeBooleans((boolean[]) columns[0], 0, count); return;
+            }
+        }
+        
+        ColumnCodec codec = cols.sheet.codec();
+        if (codec != null) {
+            int size = cols.sheet.byteSum;
+            int chunk = Math.max(1, CHUNK_SIZE / Math.max(1, size));
+            byte[] buf = new byte[Math.min(count, chunk) * size];
+            
+            for (int i = 0 ; i < count ; i += chunk) {
+                int n = Math.min(chunk, count - i);
+                codec.encode(columns, i, i + n, buf, 0);
+                out.write(buf, 0, n * size);
+            }
+            return;
+        }
+        
+        for (int i = 0 ; i < count ; i++) {
+            for (int j = 0 ; j < types.length ; j++) {
+                switch(types[j]) {
+                    case INT8: out.writeByte(((byte[]) columns[j])[i]); break;
+                    case INT16: out.writeShort(((short[]) columns[j])[i]); break;
+                    case INT32: out.writeInt(((int[]) columns[j])[i]); break;
+                    case INT64: out.writeLong(((long[]) columns[j])[i]); break;
+                    case FLOAT32: out.writeFloat(((float[]) columns[j])[i]); break;
+                    case FLOAT64: out.writeDouble(((double[]) columns[j])[i]); break;
+                    case BOOLEAN: out.writeBoolean(((boolean[]) columns[j])[i]); break;
+                }
+            }
+        }
     }
 }
\ No newline at end of file
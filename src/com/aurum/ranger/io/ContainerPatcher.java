@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Changes single fields of a container file in place. The header is checked
+ * against the sheet once, after which every value is encoded on its own and
+ * written at its position in the file, so patching a few values costs a few
+ * small writes instead of a full conversion.
+ * <p>
+ * Closing a patcher that has written anything deletes the
+ * {@link ContainerIndex} sidecar file of the container, since a patch can
+ * keep both the length and the modification time of the file the same.
+ */
+public final class ContainerPatcher implements Closeable {
+    public static final int HEADER_SIZE = 0x10;
+    
+    private final File file;
+    private final FileChannel channel;
+    private final DataSheet sheet;
+    private final CompiledSheet layout;
+    private final int count;
+    private final byte[] record;
+    private final ByteBuffer buffer;
+    private boolean written;
+    
+    private ContainerPatcher(File file, FileChannel channel, DataSheet sheet) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.sheet = sheet;
+        this.layout = sheet.compile();
+        
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0)
+                throw new IllegalArgumentException("File is too small to be a container");
+        }
+        
+        String magic = new String(header.array(), 0, 4, Charset.forName("UTF-8"));
+        int size = header.getInt(0x4);
+        this.count = header.getInt(0x8);
+        
+        if (!magic.equals(layout.getName()))
+            throw new IllegalArgumentException("Container magic does not equal sheet name (" + magic + " != " + layout.getName() + ")");
+        if (size != layout.byteSum())
+            throw new IllegalArgumentException("Entry sheet size does not equal entry size (" + size + " != " + layout.byteSum() + ")");
+        if (count < 0 || HEADER_SIZE + (long) count * size > channel.size())
+            throw new IllegalArgumentException("Container holds less data than its header announces (" + count + " entries)");
+        
+        this.record = new byte[layout.byteSum()];
+        this.buffer = ByteBuffer.wrap(record);
+    }
+    
+    public static ContainerPatcher open(String f, DataSheet s) throws IOException {
+        return open(new File(f), s);
+    }
+    
+    /**
+     * Opens a container file for patching and checks its header.
+     * @param f the container file
+     * @param s the data sheet
+     * @return the patcher.
+     * @throws IOException if an I/O exception occurs.
+     * @throws IllegalArgumentException if the header does not match the sheet.
+     */
+    public static ContainerPatcher open(File f, DataSheet s) throws IOException {
+        FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        
+        try {
+            return new ContainerPatcher(f, ch, s);
+        }
+        catch (IOException | RuntimeException ex) {
+            ch.close();
+            throw ex;
+        }
+    }
+    
+    public DataSheet sheet() {
+        return sheet;
+    }
+    
+    /**
+     * Returns the number of entries in the container.
+     * @return the number of entries.
+     */
+    public int size() {
+        return count;
+    }
+    
+    private int field(String name) {
+        int field = layout.indexOf(name);
+        if (field < 0)
+            throw new IllegalArgumentException("Sheet " + layout.getName() + " has no field " + name);
+        return field;
+    }
+    
+    private void check(int entry) {
+        if (entry < 0 || entry >= count)
+            throw new IndexOutOfBoundsException("Entry: " + entry + ", Size: " + count);
+    }
+    
+    private void write(ByteBuffer buf, int entry, int field) throws IOException {
+        int off = layout.offsets[field];
+        long pos = HEADER_SIZE + (long) entry * layout.byteSum + off;
+        
+        buf.limit(off + layout.types[field].size());
+        buf.position(off);
+        written = true;
+        while (buf.hasRemaining())
+            channel.write(buf, pos + buf.position() - off);
+    }
+    
+    /**
+     * Replaces the value of a field.
+     * @param entry the entry index
+     * @param field the field index
+     * @param val the boxed value, which has to match the field type
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void set(int entry, int field, Object val) throws IOException {
+        check(entry);
+        layout.put(record, 0, field, val);
+        write(buffer, entry, field);
+    }
+    
+    public void set(int entry, String field, Object val) throws IOException {
+        set(entry, field(field), val);
+    }
+    
+    /**
+     * Replaces the value of a field with the value parsed from its text form,
+     * as it appears in the XML files.
+     * @param entry the entry index
+     * @param field the field index
+     * @param value the text of the value
+     * @throws IOException if an I/O exception occurs.
+     * @throws NumberFormatException if the text is not a valid number.
+     */
+    public void parse(int entry, int field, String value) throws IOException {
+        check(entry);
+        layout.parse(record, 0, field, value);
+        write(buffer, entry, field);
+    }
+    
+    public void parse(int entry, String field, String value) throws IOException {
+        parse(entry, field(field), value);
+    }
+    
+    /**
+     * Replaces several values like {@code parse}, given as entry indices,
+     * field names and value texts at the same positions. Every value is
+     * checked and encoded before the first one is written, so an invalid
+     * value leaves the container unchanged.
+     * @param entries the entry indices
+     * @param fields the field names
+     * @param values the texts of the values
+     * @throws IOException if an I/O exception occurs.
+     * @throws IllegalArgumentException if a field does not exist.
+     * @throws IndexOutOfBoundsException if an entry does not exist.
+     * @throws NumberFormatException if a text is not a valid number.
+     */
+    public void parse(int[] entries, String[] fields, String[] values) throws IOException {
+        if (fields.length != entries.length || values.length != entries.length)
+            throw new IllegalArgumentException("Entry, field and value counts differ (" + entries.length + ", " + fields.length + ", " + values.length + ")");
+        
+        int n = entries.length;
+        int[] ids = new int[n];
+        byte[][] recs = new byte[n][];
+        
+        for (int i = 0 ; i < n ; i++) {
+            check(entries[i]);
+            ids[i] = field(fields[i]);
+            recs[i] = new byte[layout.byteSum];
+            layout.parse(recs[i], 0, ids[i], values[i]);
+        }
+        for (int i = 0 ; i < n ; i++)
+            write(ByteBuffer.wrap(recs[i]), entries[i], ids[i]);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        if (written)
+            ContainerIndex.sidecar(file).delete();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Pulls container entries from XML one at a time and encodes them into raw
+ * entry bytes, without building a document tree or boxed entries. It accepts
+ * the same documents as {@link Container#readXml}.
+ */
+public class ContainerXmlReader implements EntrySource {
+    private final InputStream in;
+    private final XMLStreamReader xml;
+    private final DataSheet source;
+    private final CompiledSheet sheet;
+    private final boolean[] seen;
+    private int entries;
+    private boolean finished;
+    
+    public ContainerXmlReader(File f, DataSheet s) throws IOException {
+        this(new FileInputStream(f), s);
+    }
+    
+    public ContainerXmlReader(InputStream in, DataSheet s) throws IOException {
+        this(in, s, null);
+    }
+    
+    /**
+     * Creates a reader that uses the sheet registered for the name of the
+     * root element.
+     * @param f the XML file
+     * @param reg the sheet registry
+     * @throws IOException if an I/O or XML exception occurs.
+     */
+    public ContainerXmlReader(File f, SheetRegistry reg) throws IOException {
+        this(new FileInputStream(f), null, reg);
+    }
+    
+    private ContainerXmlReader(InputStream in, DataSheet s, SheetRegistry reg) throws IOException {
+        this.in = in;
+        
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        
+        try {
+            xml = factory.createXMLStreamReader(new BufferedInputStream(in, 0x10000));
+            xml.nextTag();
+        }
+        catch (XMLStreamException ex) {
+            in.close();
+            throw new IOException(ex);
+        }
+        
+        if (reg != null) {
+            try {
+                s = reg.forMagic(xml.getLocalName());
+            }
+            catch (IllegalArgumentException ex) {
+                close();
+                throw new IllegalArgumentException("No sheet registered for root element " + xml.getLocalName());
+            }
+        }
+        
+        this.source = s;
+        this.sheet = s.compile();
+        this.seen = new boolean[sheet.count()];
+        
+        if (!xml.getLocalName().equals(sheet.getName())) {
+            close();
+            throw new IllegalArgumentException("root element name does not correspond with sheet name");
+        }
+    }
+    
+    @Override
+    public DataSheet sheet() {
+        return source;
+    }
+    
+    /**
+     * Skips the current element including all of its children.
+     */
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int ev = xml.next();
+            if (ev == XMLStreamConstants.START_ELEMENT)
+                depth++;
+            else if (ev == XMLStreamConstants.END_ELEMENT)
+                depth--;
+        }
+    }
+    
+    /**
+     * Moves to the next child element of the current element.
+     * @return {@code true} if a child element starts, {@code false} if the
+     *         current element ends.
+     */
+    private boolean nextChild() throws XMLStreamException {
+        while (true) {
+            int ev = xml.next();
+            if (ev == XMLStreamConstants.START_ELEMENT)
+                return true;
+            if (ev == XMLStreamConstants.END_ELEMENT)
+                return false;
+        }
+    }
+    
+    private void parse(byte[] data, int offset, int field, String value) {
+        if (value == null)
+            throw new IllegalArgumentException("Entry " + entries + " field " + sheet.names[field] + " has no value");
+        
+        sheet.parse(data, offset, field, value);
+    }
+    
+    /**
+     * Reads the next entry and encodes it into its raw bytes, in container
+     * byte order.
+     * @param data the buffer into which the entry is encoded
+     * @param offset the position of the entry in the buffer
+     * @return {@code true} if an entry was read, {@code false} at the end of
+     *         the document.
+     * @throws IOException if an I/O or XML exception occurs.
+     */
+    @Override
+    public boolean readEntry(byte[] data, int offset) throws IOException {
+        if (finished)
+            return false;
+        
+        try {
+            if (!nextChild()) {
+                finished = true;
+                return false;
+            }
+            
+            for (int i = 0 ; i < seen.length ; i++)
+                seen[i] = false;
+            
+            while (nextChild()) {
+                int field = sheet.indexOf(xml.getLocalName());
+                
+                // like Element.getChild, the first element of a name wins
+                if (field >= 0 && !seen[field]) {
+                    parse(data, offset, field, xml.getAttributeValue(null, "value"));
+                    seen[field] = true;
+                }
+                skipElement();
+            }
+        }
+        catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+        
+        for (int i = 0 ; i < seen.length ; i++) {
+            if (!seen[i])
+                throw new IllegalArgumentException("Entry " + entries + " has no field " + sheet.names[i]);
+        }
+        
+        entries++;
+        return true;
+    }
+    
+    /**
+     * Returns the number of entries read so far.
+     * @return the number of entries.
+     */
+    @Override
+    public int count() {
+        return entries;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            xml.close();
+        }
+        catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+        finally {
+            in.close();
+        }
+    }
+    
+    /**
+     * Converts an XML file to a container file in a single pass. Every entry
+     * is encoded and written as soon as it is parsed, and the entry count in
+     * the header is filled in at the end, so memory use does not depend on
+     * the size of the XML file.
+     * @param xml the XML file
+     * @param s the data sheet
+     * @param container the container file
+     * @throws IOException if an I/O exception occurs.
+     */
+    public static void compile(File xml, DataSheet s, File container) throws IOException {
+        ContainerFormat.compile(new ContainerXmlReader(xml, s), container);
+    }
+    
+    /**
+     * Converts an XML file to a container file like {@code compile(File,
+     * DataSheet, File)}, using the sheet registered for the root element.
+     * @param xml the XML file
+     * @param reg the sheet registry
+     * @param container the container file
+     * @throws IOException if an I/O exception occurs.
+     */
+    public static void compile(File xml, SheetRegistry reg, File container) throws IOException {
+        ContainerFormat.compile(new ContainerXmlReader(xml, reg), container);
+    }
+}
\ No newline at end of file
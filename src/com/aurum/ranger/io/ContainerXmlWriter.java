@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Writes container entries as XML while they are visited, without building a
+ * document tree first. The output is identical to what JDOM's pretty format
+ * produces for the same container, so files written by either path can be
+ * compared byte by byte.
+ */
+public class ContainerXmlWriter implements EntrySink {
+    private static final String EOL = "\r\n";
+    
+    private final Writer out;
+    private final CompiledSheet sheet;
+    private final String[] fieldStart;
+    private final FieldText text;
+    private boolean started, closed;
+    
+    public ContainerXmlWriter(File f, DataSheet s) throws IOException {
+        this(new FileOutputStream(f), s);
+    }
+    
+    public ContainerXmlWriter(OutputStream out, DataSheet s) {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, Charset.forName("UTF-8")), 0x10000);
+        this.sheet = s.compile();
+        this.text = new FieldText(this.out);
+        this.fieldStart = new String[sheet.count()];
+        
+        for (int i = 0 ; i < fieldStart.length ; i++)
+            fieldStart[i] = "    <" + sheet.names[i] + " value=\"";
+    }
+    
+    private void start() throws IOException {
+        if (!started) {
+            out.write("<" + sheet.getName() + ">" + EOL);
+            started = true;
+        }
+    }
+    
+    private void startEntry() throws IOException {
+        start();
+        out.write(sheet.count() == 0 ? "  <entry />" + EOL : "  <entry>" + EOL);
+    }
+    
+    private void endEntry() throws IOException {
+        if (sheet.count() > 0)
+            out.write("  </entry>" + EOL);
+    }
+    
+    private void startField(int field) throws IOException {
+        out.write(fieldStart[field]);
+    }
+    
+    private void endField() throws IOException {
+        out.write("\" />" + EOL);
+    }
+    
+    /**
+     * Writes an entry given as a map of boxed values.
+     * @param de the entry
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void writeEntry(DataEntry de) throws IOException {
+        startEntry();
+        for (int i = 0 ; i < fieldStart.length ; i++) {
+            startField(i);
+            out.write(de.get(sheet.names[i]).toString());
+            endField();
+        }
+        endEntry();
+    }
+    
+    /**
+     * Writes an entry of a column store.
+     * @param cols the column store
+     * @param row the entry index
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void writeEntry(ColumnStore cols, int row) throws IOException {
+        Object[] columns = cols.columns;
+        
+        startEntry();
+        for (int i = 0 ; i < fieldStart.length ; i++) {
+            startField(i);
+            switch(sheet.types[i]) {
+                case INT8: text.writeNumber(((byte[]) columns[i])[row]); break;
+                case INT16: text.writeNumber(((short[]) columns[i])[row]); break;
+                case INT32: text.writeNumber(((int[]) columns[i])[row]); break;
+                case INT64: text.writeNumber(((long[]) columns[i])[row]); break;
+                case FLOAT32: out.write(Float.toString(((float[]) columns[i])[row])); break;
+                case FLOAT64: out.write(Double.toString(((double[]) columns[i])[row])); break;
+                case BOOLEAN: out.write(((boolean[]) columns[i])[row] ? "true" : "false"); break;
+            }
+            endField();
+        }
+        endEntry();
+    }
+    
+    /**
+     * Writes an entry given as its raw bytes, in container byte order.
+     * @param data the buffer holding the entry
+     * @param offset the position of the entry in the buffer
+     * @throws IOException if an I/O exception occurs.
+     */
+    @Override
+    public void writeEntry(byte[] data, int offset) throws IOException {
+        startEntry();
+        for (int i = 0 ; i < fieldStart.length ; i++) {
+            startField(i);
+            text.write(sheet, data, offset, i);
+            endField();
+        }
+        endEntry();
+    }
+    
+    /**
+     * Closes the root element and the underlying stream.
+     * @throws IOException if an I/O exception occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        
+        try {
+            if (started)
+                out.write("</" + sheet.getName() + ">");
+            else
+                out.write("<" + sheet.getName() + " />");
+        }
+        finally {
+            out.close();
+        }
+    }
+    
+    /**
+     * Converts a container file to XML, writing every entry as soon as it is
+     * read. Memory use does not depend on the container size.
+     * @param container the container file
+     * @param s the data sheet
+     * @param xml the XML file
+     * @throws IOException if an I/O exception occurs.
+     */
+    public static void export(File container, DataSheet s, File xml) throws IOException {
+        try (ContainerInputStream in = new ContainerInputStream(new BinaryInputStream(new FileInputStream(container)))) {
+            in.readHeader(s);
+            ContainerFormat.XML.write(in, s, xml);
+        }
+    }
+    
+    /**
+     * Converts a container file to XML, using the sheet registered for the
+     * magic in its header.
+     * @param container the container file
+     * @param reg the sheet registry
+     * @param xml the XML file
+     * @throws IOException if an I/O exception occurs.
+     */
+    public static void export(File container, SheetRegistry reg, File xml) throws IOException {
+        try (ContainerInputStream in = new ContainerInputStream(new BinaryInputStream(new FileInputStream(container)))) {
+            DataSheet s = in.readHeader(reg);
+            ContainerFormat.XML.write(in, s, xml);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A directory of conversion results, keyed by the content of the input file,
+ * the definition of the sheet and the kind of conversion. Converting the same
+ * file with the same sheet again copies the earlier result instead.
+ * <p>
+ * Every result is a file named by its key, written under a temporary name
+ * and then moved into place, so several processes can share the directory.
+ * Using a result marks it as recently used, and once the directory grows past
+ * its size limit the least recently used results are deleted.
+ */
+public final class ConversionCache {
+    private static final int VERSION = 1;
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final long TMP_AGE_MS = 60 * 60 * 1000;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    private static volatile ConversionCache shared;
+    
+    private final File dir;
+    private final long maxBytes;
+    
+    /**
+     * Creates a cache in a directory, which is created if needed.
+     * @param dir the cache directory
+     * @param maxBytes the total size the results may take
+     */
+    public ConversionCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * Returns the cache that {@link ContainerFormat} uses for conversions.
+     * @return the cache, or {@code null} if conversions are not cached.
+     */
+    public static ConversionCache shared() {
+        return shared;
+    }
+    
+    /**
+     * Sets the cache that {@link ContainerFormat} uses for conversions.
+     * @param cache the cache, or {@code null} to turn caching off
+     */
+    public static void setShared(ConversionCache cache) {
+        shared = cache;
+    }
+    
+    /**
+     * Computes the key of a conversion. It covers every byte of the input
+     * file and the sheet name and fields, with their types, in order.
+     * @param input the input file
+     * @param s the data sheet
+     * @param op the kind of conversion, including the output format
+     * @return the key.
+     * @throws IOException if the input file cannot be read.
+     */
+    public String key(File input, DataSheet s, String op) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        
+        CompiledSheet cs = s.compile();
+        StringBuilder def = new StringBuilder();
+        def.append(VERSION).append('\n').append(op).append('\n').append(cs.getName()).append('\n');
+        for (int i = 0 ; i < cs.count() ; i++)
+            def.append(cs.names[i]).append('\t').append(cs.types[i]).append('\n');
+        md.update(def.toString().getBytes(UTF8));
+        
+        try (InputStream in = new FileInputStream(input)) {
+            byte[] buf = new byte[0x10000];
+            int n;
+            while ((n = in.read(buf)) > 0)
+                md.update(buf, 0, n);
+        }
+        
+        byte[] hash = md.digest();
+        char[] ret = new char[hash.length * 2];
+        for (int i = 0 ; i < hash.length ; i++) {
+            ret[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            ret[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(ret);
+    }
+    
+    /**
+     * Copies the result of a conversion to an output file, if it is cached.
+     * Like a conversion, the copy only replaces the output once it is complete.
+     * @param key the key of the conversion
+     * @param output the output file
+     * @return {@code true} if the result was cached and has been copied.
+     */
+    public boolean fetch(String key, File output) {
+        File f = new File(dir, key);
+        if (!f.isFile())
+            return false;
+        
+        Metrics.Timer t = Metrics.start(Metrics.Phase.CACHE, output.getPath());
+        try {
+            File tmp = ContainerFormat.temp(output);
+            try {
+                Files.copy(f.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                ContainerFormat.replace(tmp, output);
+            }
+            finally {
+                tmp.delete();
+            }
+            Files.setLastModifiedTime(f.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+        }
+        catch (IOException ex) {
+            // evicted by another process, convert again
+            return false;
+        }
+        t.stop(output.length(), 0, 0);
+        return true;
+    }
+    
+    /**
+     * Stores the result of a conversion and evicts old results if the cache
+     * has grown too large. A result that cannot be stored is not an error.
+     * @param key the key of the conversion
+     * @param output the output file of the conversion
+     */
+    public void store(String key, File output) {
+        if (output.length() > maxBytes)
+            return;
+        
+        try {
+            dir.mkdirs();
+            File tmp = File.createTempFile(key, TMP_SUFFIX, dir);
+            try {
+                Files.copy(output.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmp.toPath(), new File(dir, key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            finally {
+                tmp.delete();
+            }
+            evict();
+        }
+        catch (IOException ex) {
+            // read-only or full cache directory, convert again next time
+        }
+    }
+    
+    /**
+     * Deletes the least recently used results until the cache fits its size
+     * limit, and temporary files left behind by processes that died.
+     */
+    public void evict() {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+        
+        long now = System.currentTimeMillis();
+        long total = 0;
+        int n = 0;
+        
+        for (File f : files) {
+            if (!f.isFile())
+                continue;
+            if (f.getName().endsWith(TMP_SUFFIX)) {
+                if (now - f.lastModified() > TMP_AGE_MS)
+                    f.delete();
+                continue;
+            }
+            files[n++] = f;
+            total += f.length();
+        }
+        if (total <= maxBytes)
+            return;
+        
+        files = Arrays.copyOf(files, n);
+        long[] used = new long[n];
+        for (int i = 0 ; i < n ; i++)
+            used[i] = files[i].lastModified();
+        
+        Integer[] order = new Integer[n];
+        for (int i = 0 ; i < n ; i++)
+            order[i] = i;
+        Arrays.sort(order, Comparator.comparingLong(i -> used[i]));
+        
+        for (int i = 0 ; i < n && total > maxBytes ; i++) {
+            File f = files[order[i]];
+            long len = f.length();
+            if (f.delete())
+                total -= len;
+        }
+    }
+}
\ No newline at end of file
@@ -18,24 +18,43 @@
 package com.aurum.ranger.io;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
-import org.jdom2.Element;
+import java.util.List;
 import org.jdom2.JDOMException;
-import org.jdom2.input.SAXBuilder;
-import org.jdom2.output.Format;
-import org.jdom2.output.XMLOutputter;
 
 public class DataSheet {
     public enum FieldType {
-        INT8, INT16, INT32, INT64, FLOAT32, FLOAT64, BOOLEAN;
+        INT8    (Byte.BYTES),
+        INT16   (Short.BYTES),
+        INT32   (Integer.BYTES),
+        INT64   (Long.BYTES),
+        FLOAT32 (Float.BYTES),
+        FLOAT64 (Double.BYTES),
+        BOOLEAN (Byte.BYTES);
+        
+        private final int size;
+        private FieldType(int size) {
+            this.size = size;
+        }
+        
+        /**
+         * Returns the number of bytes a field of this type occupies in an entry.
+         * @return the size in bytes.
+         */
+        public int size() {
+            return size;
+        }
     }
 
     private String sheetName;
     private HashMap<String, FieldType> fieldTypes;
+    private HashSet<String> indexedFields;
+    private CompiledSheet compiled;
 
     public DataSheet() {
         this("NULL");
@@ -44,6 +63,7 @@ public class DataSheet {
     public DataSheet(String name) {
         sheetName = name;
         fieldTypes = new LinkedHashMap();
+        indexedFields = new HashSet();
     }
 
     public String getName() {
@@ -52,6 +72,7 @@ public class DataSheet {
 
     public void setName(String name) {
         sheetName = name;
+        compiled = null;
     }
 
     @Override
@@ -62,27 +83,77 @@ public class DataSheet {
     public int byteSum() {
         int sum = 0;
 
-        for (FieldType t : fieldTypes.values()) {
-            switch(t) {
-                case BOOLEAN:
-                case INT8: sum += Byte.BYTES; break;
-                case INT16: sum += Short.BYTES; break;
-                case INT32:
-                case FLOAT32: sum+= Integer.BYTES; break;
-                case INT64:
-                case FLOAT64: sum+= Long.BYTES; break;
-            }
-        }
+        for (FieldType t : fieldTypes.values())
+            sum += t.size();
 
         return sum;
     }
 
     public void add(String name, FieldType type) {
         fieldTypes.put(name, type);
+        compiled = null;
     }
 
     public void delete(String name) {
         fieldTypes.remove(name);
+        indexedFields.remove(name);
+        compiled = null;
+    }
+    
+    /**
+     * Returns whether lookups by the given field should be served by an
+     * index (see {@link ContainerIndex}).
+     * @param name the field name
+     * @return {@code true} if the field is indexed.
+     */
+    public boolean isIndexed(String name) {
+        return indexedFields.contains(name);
+    }
+    
+    public void setIndexed(String name, boolean indexed) {
+        if (!fieldTypes.containsKey(name))
+            throw new IllegalArgumentException("Sheet " + sheetName + " has no field " + name);
+        
+        if (indexed)
+            indexedFields.add(name);
+        else
+            indexedFields.remove(name);
+    }
+    
+    /**
+     * Returns the names of the indexed fields, in sheet order.
+     * @return the indexed field names.
+     */
+    public List<String> indexedFields() {
+        List<String> ret = new ArrayList();
+        for (String fn : fieldTypes.keySet()) {
+            if (indexedFields.contains(fn))
+                ret.add(fn);
+        }
+        return ret;
+    }
+    
+    /**
+     * Returns the compiled form of this sheet. It is built on first use and
+     * cached until the sheet is changed through {@code add}, {@code delete}
+     * or {@code setName}. Callers that modify {@code values()} directly have
+     * to call {@code recompile} afterwards.
+     * @return the compiled sheet.
+     */
+    public CompiledSheet compile() {
+        CompiledSheet ret = compiled;
+        if (ret == null)
+            compiled = ret = new CompiledSheet(this);
+        return ret;
+    }
+    
+    /**
+     * Discards the cached compiled form and builds a new one.
+     * @return the compiled sheet.
+     */
+    public CompiledSheet recompile() {
+        compiled = null;
+        return compile();
     }
 
     public HashMap<String, FieldType> values() {
@@ -93,40 +164,45 @@ public class DataSheet {
         return open(new File(f));
     }
 
+    /**
+     * Opens a sheet file. If its sidecar cache (see {@link SheetCache}) was
+     * built from the same XML, the sheet is read from there without parsing
+     * XML. Otherwise the XML is parsed and the cache is written next to the
+     * sheet file, in whatever directory that is. A cache that cannot be
+     * written is not an error.
+     * @param f the sheet file
+     * @return the sheet.
+     * @throws IOException if an I/O exception occurs.
+     * @throws JDOMException if the sheet is not well-formed XML.
+     */
     public static DataSheet open(File f) throws IOException, JDOMException {
-        Element root;
+        Metrics.Timer t = Metrics.start(Metrics.Phase.SHEET_CACHE, f.getPath());
+        byte[] xml = Files.readAllBytes(f.toPath());
+        File cache = SheetCache.sidecar(f);
         
-        try (FileInputStream in = new FileInputStream(f)) {
-            SAXBuilder xml = new SAXBuilder();
-            root = xml.build(in).getRootElement();
+        DataSheet sheet = SheetCache.load(cache, xml);
+        if (sheet != null) {
+            t.stop(xml.length, 0, sheet.compile().count());
+            return sheet;
         }
-
-        if (!root.getName().equals("sheet"))
-            throw new IllegalArgumentException("root element is not sheet");
-
-        DataSheet sheet = new DataSheet(root.getAttributeValue("name"));
-        for (Element child : root.getChildren()) {
-            sheet.add(child.getAttributeValue("field"), FieldType.valueOf(child.getAttributeValue("type")));
+        
+        t = Metrics.start(Metrics.Phase.SHEET_PARSE, f.getPath());
+        sheet = SheetXml.parse(xml);
+        try {
+            SheetCache.save(cache, xml, sheet);
         }
-
+        catch (IOException ex) {
+            // read-only sheets directory, parse again next time
+        }
+        t.stop(xml.length, 0, sheet.compile().count());
         return sheet;
     }
-
+    
     public static void save(String f, DataSheet s) throws IOException {
         save(new File(f), s);
     }
 
     public static void save(File f, DataSheet s) throws IOException {
-        Element root = new Element("sheet").setAttribute("name", s.getName());
-        for (String fn : s.values().keySet()) {
-            root.addContent(new Element("entry").setAttribute("field", fn).setAttribute("type", s.values().get(fn).name()));
-        }
-
-        try (FileOutputStream out = new FileOutputStream(f)) {
-            XMLOutputter xout = new XMLOutputter();
-            xout.setFormat(Format.getPrettyFormat());
-            xout.output(root, out);
-            out.flush();
-        }
+        SheetXml.save(f, s);
     }
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A text file that container entries are written to one at a time, such as
+ * XML, CSV or JSON Lines. Closing it finishes the file.
+ */
+public interface EntrySink extends Closeable {
+    /**
+     * Writes an entry given as its raw bytes, in container byte order.
+     * @param data the buffer holding the entry
+     * @param offset the position of the entry in the buffer
+     * @throws IOException if an I/O exception occurs.
+     */
+    public void writeEntry(byte[] data, int offset) throws IOException;
+}
\ No newline at end of file
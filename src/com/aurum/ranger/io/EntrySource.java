@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A text file that container entries are pulled from one at a time, such as
+ * XML, CSV or JSON Lines.
+ */
+public interface EntrySource extends Closeable {
+    /**
+     * Returns the sheet the entries are encoded with.
+     * @return the data sheet.
+     */
+    public DataSheet sheet();
+    
+    /**
+     * Reads the next entry and encodes it into its raw bytes, in container
+     * byte order.
+     * @param data the buffer into which the entry is encoded
+     * @param offset the position of the entry in the buffer
+     * @return {@code true} if an entry was read, {@code false} at the end of
+     *         the file.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public boolean readEntry(byte[] data, int offset) throws IOException;
+    
+    /**
+     * Returns the number of entries read so far.
+     * @return the number of entries.
+     */
+    public int count();
+}
\ No newline at end of file
@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import java.io.ObjectStreamException;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A {@link DataEntry} whose fields are laid out by a compiled sheet and stored
+ * somewhere else, such as a column store or raw entry bytes. Reads and writes
+ * go through to the storage, and the map inherited from {@code DataEntry}
+ * stays empty. The set of keys is fixed to the sheet's fields, so
+ * {@code remove} and {@code clear} are not supported and putting an unknown
+ * field is an error.
+ */
+public abstract class FieldEntry extends DataEntry {
+    private static final long serialVersionUID = 1L;
+    
+    protected final CompiledSheet sheet;
+    
+    protected FieldEntry(CompiledSheet sheet) {
+        this.sheet = sheet;
+    }
+    
+    /**
+     * Returns the boxed value of a field.
+     * @param field the field index
+     * @return the boxed value.
+     */
+    public abstract Object get(int field);
+    
+    /**
+     * Sets the value of a field from its boxed form.
+     * @param field the field index
+     * @param val the boxed value, which has to match the field type
+     */
+    public abstract void set(int field, Object val);
+    
+    private int field(Object key) {
+        return key instanceof String ? sheet.indexOf((String) key) : -1;
+    }
+    
+    private int fieldOrThrow(String key) {
+        int field = sheet.indexOf(key);
+        if (field < 0)
+            throw new IllegalArgumentException("Sheet " + sheet.getName() + " has no field " + key);
+        return field;
+    }
+    
+    /**
+     * Returns a detached copy of this entry's values.
+     * @return the copy.
+     */
+    public DataEntry copy() {
+        DataEntry ret = new DataEntry();
+        for (int i = 0 ; i < sheet.count() ; i++)
+            ret.put(sheet.names[i], get(i));
+        return ret;
+    }
+    
+    @Override
+    public int size() {
+        return sheet.count();
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return sheet.count() == 0;
+    }
+    
+    @Override
+    public boolean containsKey(Object key) {
+        return field(key) >= 0;
+    }
+    
+    @Override
+    public boolean containsValue(Object value) {
+        for (int i = 0 ; i < sheet.count() ; i++) {
+            if (Objects.equals(value, get(i)))
+                return true;
+        }
+        return false;
+    }
+    
+    @Override
+    public Object get(Object key) {
+        int field = field(key);
+        return field < 0 ? null : get(field);
+    }
+    
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        int field = field(key);
+        return field < 0 ? defaultValue : get(field);
+    }
+    
+    @Override
+    public Object put(String key, Object value) {
+        int field = fieldOrThrow(key);
+        Object old = get(field);
+        set(field, value);
+        return old;
+    }
+    
+    @Override
+    public void putAll(Map<? extends String, ? extends Object> m) {
+        for (Map.Entry<? extends String, ? extends Object> e : m.entrySet())
+            put(e.getKey(), e.getValue());
+    }
+    
+    @Override
+    public Object putIfAbsent(String key, Object value) {
+        return get(fieldOrThrow(key));
+    }
+    
+    @Override
+    public Object replace(String key, Object value) {
+        int field = field(key);
+        if (field < 0)
+            return null;
+        
+        Object old = get(field);
+        set(field, value);
+        return old;
+    }
+    
+    @Override
+    public boolean replace(String key, Object oldValue, Object newValue) {
+        int field = field(key);
+        if (field < 0 || !Objects.equals(get(field), oldValue))
+            return false;
+        
+        set(field, newValue);
+        return true;
+    }
+    
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super Object, ? extends Object> function) {
+        for (int i = 0 ; i < sheet.count() ; i++)
+            set(i, function.apply(sheet.names[i], get(i)));
+    }
+    
+    @Override
+    public Object computeIfAbsent(String key, Function<? super String, ? extends Object> function) {
+        return get(fieldOrThrow(key));
+    }
+    
+    @Override
+    public Object computeIfPresent(String key, BiFunction<? super String, ? super Object, ? extends Object> function) {
+        return compute(key, function);
+    }
+    
+    @Override
+    public Object compute(String key, BiFunction<? super String, ? super Object, ? extends Object> function) {
+        int field = fieldOrThrow(key);
+        Object val = function.apply(key, get(field));
+        if (val == null)
+            throw new UnsupportedOperationException("Fields cannot be removed from a " + sheet.getName() + " entry");
+        
+        set(field, val);
+        return val;
+    }
+    
+    @Override
+    public Object merge(String key, Object value, BiFunction<? super Object, ? super Object, ? extends Object> function) {
+        return compute(key, (k, old) -> function.apply(old, value));
+    }
+    
+    @Override
+    public Object remove(Object key) {
+        throw new UnsupportedOperationException("Fields cannot be removed from a " + sheet.getName() + " entry");
+    }
+    
+    @Override
+    public boolean remove(Object key, Object value) {
+        throw new UnsupportedOperationException("Fields cannot be removed from a " + sheet.getName() + " entry");
+    }
+    
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Fields cannot be removed from a " + sheet.getName() + " entry");
+    }
+    
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+        for (int i = 0 ; i < sheet.count() ; i++)
+            action.accept(sheet.names[i], get(i));
+    }
+    
+    /**
+     * Returns a detached copy, like {@code copy}. The copy is a plain
+     * {@code DataEntry} and no longer tied to the storage.
+     * @return the copy.
+     */
+    @Override
+    public Object clone() {
+        return copy();
+    }
+    
+    /**
+     * Serializes a detached copy, since the storage is not serialized.
+     */
+    protected Object writeReplace() throws ObjectStreamException {
+        return copy();
+    }
+    
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public int size() {
+                return sheet.count();
+            }
+            
+            @Override
+            public boolean contains(Object o) {
+                return field(o) >= 0;
+            }
+            
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<String>() {
+                    private int field = 0;
+                    
+                    @Override
+                    public boolean hasNext() {
+                        return field < sheet.count();
+                    }
+                    
+                    @Override
+                    public String next() {
+                        if (field >= sheet.count())
+                            throw new NoSuchElementException();
+                        return sheet.names[field++];
+                    }
+                };
+            }
+        };
+    }
+    
+    @Override
+    public Collection<Object> values() {
+        return new AbstractCollection<Object>() {
+            @Override
+            public int size() {
+                return sheet.count();
+            }
+            
+            @Override
+            public Iterator<Object> iterator() {
+                return new Iterator<Object>() {
+                    private int field = 0;
+                    
+                    @Override
+                    public boolean hasNext() {
+                        return field < sheet.count();
+                    }
+                    
+                    @Override
+                    public Object next() {
+                        if (field >= sheet.count())
+                            throw new NoSuchElementException();
+                        return get(field++);
+                    }
+                };
+            }
+        };
+    }
+    
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public int size() {
+                return sheet.count();
+            }
+            
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new Iterator<Map.Entry<String, Object>>() {
+                    private int field = 0;
+                    
+                    @Override
+                    public boolean hasNext() {
+                        return field < sheet.count();
+                    }
+                    
+                    @Override
+                    public Map.Entry<String, Object> next() {
+                        if (field >= sheet.count())
+                            throw new NoSuchElementException();
+                        
+                        final int f = field++;
+                        return new AbstractMap.SimpleEntry<String, Object>(sheet.names[f], get(f)) {
+                            @Override
+                            public Object setValue(Object value) {
+                                set(f, value);
+                                return super.setValue(value);
+                            }
+                        };
+                    }
+                };
+            }
+        };
+    }
+}
\ No newline at end of file
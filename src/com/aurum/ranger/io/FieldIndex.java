@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.BitConverter;
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A hash index from the values of one field to the positions of the entries
+ * that hold them. Values are keyed as {@code long}: integer fields by their
+ * value, boolean fields as 0 or 1 and floating point fields by the bits of
+ * their {@code double} value.
+ * <p>
+ * The index is an open addressing table of distinct keys. Every slot points
+ * to a run of entry positions in a single array, in ascending order, so a
+ * lookup is one probe sequence and no boxing is involved.
+ */
+public final class FieldIndex {
+    /** The most entries an index can hold, as the table has twice as many slots. */
+    public static final int MAX_COUNT = 1 << 29;
+    
+    private static final int[] NONE = new int[0];
+    
+    private final String field;
+    private final FieldType type;
+    private final long[] keys;
+    private final int[] starts;
+    private final int[] counts;
+    private final int[] rows;
+    private final int mask;
+    
+    private FieldIndex(String field, FieldType type, long[] keys, int[] starts, int[] counts, int[] rows) {
+        this.field = field;
+        this.type = type;
+        this.keys = keys;
+        this.starts = starts;
+        this.counts = counts;
+        this.rows = rows;
+        this.mask = keys.length - 1;
+    }
+    
+    /**
+     * Builds an index over the given field values.
+     * @param field the field name
+     * @param type the field type
+     * @param values the keys of the entries, by entry position
+     * @param count the number of entries
+     * @return the index.
+     * @throws IllegalArgumentException if there are more than {@code MAX_COUNT}
+     *         entries.
+     */
+    public static FieldIndex build(String field, FieldType type, long[] values, int count) {
+        if (count < 0 || count > MAX_COUNT)
+            throw new IllegalArgumentException("Cannot index field " + field + " of " + count + " entries, the limit is " + MAX_COUNT);
+        
+        int cap = capacity(count);
+        long[] keys = new long[cap];
+        int[] starts = new int[cap];
+        int[] counts = new int[cap];
+        int[] slots = new int[count];
+        int mask = cap - 1;
+        
+        for (int i = 0 ; i < count ; i++) {
+            long key = values[i];
+            int s = hash(key) & mask;
+            while (counts[s] != 0 && keys[s] != key)
+                s = (s + 1) & mask;
+            keys[s] = key;
+            counts[s]++;
+            slots[i] = s;
+        }
+        
+        for (int s = 0, start = 0 ; s < cap ; s++) {
+            starts[s] = start;
+            start += counts[s];
+        }
+        
+        int[] fill = starts.clone();
+        int[] rows = new int[count];
+        for (int i = 0 ; i < count ; i++)
+            rows[fill[slots[i]]++] = i;
+        
+        return new FieldIndex(field, type, keys, starts, counts, rows);
+    }
+    
+    private static int capacity(int count) {
+        int cap = 2;
+        while (cap < (long) count * 2 && cap < MAX_COUNT * 2)
+            cap <<= 1;
+        return cap;
+    }
+    
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+    
+    /**
+     * Returns the key under which the given value is indexed.
+     * @param type the field type
+     * @param val the boxed value
+     * @return the key.
+     */
+    public static long key(FieldType type, Object val) {
+        switch(type) {
+            case FLOAT32:
+            case FLOAT64: return Double.doubleToLongBits(((Number) val).doubleValue());
+            case BOOLEAN: return (boolean) val ? 1 : 0;
+            default: return ((Number) val).longValue();
+        }
+    }
+    
+    /**
+     * Returns the key of a field stored in raw entry bytes.
+     * @param type the field type
+     * @param data the buffer holding the field
+     * @param pos the position of the field in the buffer
+     * @return the key.
+     */
+    public static long key(FieldType type, byte[] data, int pos) {
+        switch(type) {
+            case INT8: return data[pos];
+            case INT16: return BitConverter.toShort(data, CompiledSheet.ENDIAN, pos);
+            case INT32: return BitConverter.toInt(data, CompiledSheet.ENDIAN, pos);
+            case INT64: return BitConverter.toLong(data, CompiledSheet.ENDIAN, pos);
+            case FLOAT32: return Double.doubleToLongBits(BitConverter.toFloat(data, CompiledSheet.ENDIAN, pos));
+            case FLOAT64: return Double.doubleToLongBits(BitConverter.toDouble(data, CompiledSheet.ENDIAN, pos));
+            case BOOLEAN: return data[pos] != 0x0 ? 1 : 0;
+            default: throw new IllegalArgumentException("Unknown/unsupported field type " + type.name());
+        }
+    }
+    
+    /**
+     * Returns the key of a field stored in a buffer in container byte order.
+     * @param type the field type
+     * @param buf the buffer holding the field
+     * @param pos the position of the field in the buffer
+     * @return the key.
+     */
+    static long key(FieldType type, ByteBuffer buf, int pos) {
+        switch(type) {
+            case INT8: return buf.get(pos);
+            case INT16: return buf.getShort(pos);
+            case INT32: return buf.getInt(pos);
+            case INT64: return buf.getLong(pos);
+            case FLOAT32: return Double.doubleToLongBits(buf.getFloat(pos));
+            case FLOAT64: return Double.doubleToLongBits(buf.getDouble(pos));
+            case BOOLEAN: return buf.get(pos) != 0x0 ? 1 : 0;
+            default: throw new IllegalArgumentException("Unknown/unsupported field type " + type.name());
+        }
+    }
+    
+    /**
+     * Returns the key under which the given text form of a value is indexed.
+     * @param type the field type
+     * @param value the text of the value, as it appears in the XML files
+     * @return the key.
+     * @throws NumberFormatException if the text is not a valid number.
+     */
+    public static long parseKey(FieldType type, String value) {
+        switch(type) {
+            case FLOAT32: return Double.doubleToLongBits(Float.parseFloat(value));
+            case FLOAT64: return Double.doubleToLongBits(Double.parseDouble(value));
+            case BOOLEAN: return Boolean.parseBoolean(value) ? 1 : 0;
+            default: return Long.parseLong(value);
+        }
+    }
+    
+    private int find(long key) {
+        int s = hash(key) & mask;
+        while (counts[s] != 0) {
+            if (keys[s] == key)
+                return s;
+            s = (s + 1) & mask;
+        }
+        return -1;
+    }
+    
+    public String field() {
+        return field;
+    }
+    
+    public FieldType type() {
+        return type;
+    }
+    
+    /**
+     * Returns the number of entries in the index.
+     * @return the number of entries.
+     */
+    public int size() {
+        return rows.length;
+    }
+    
+    /**
+     * Returns the number of entries that hold the given key.
+     * @param key the key
+     * @return the number of entries.
+     */
+    public int count(long key) {
+        int s = find(key);
+        return s < 0 ? 0 : counts[s];
+    }
+    
+    /**
+     * Returns the position of the first entry that holds the given key.
+     * @param key the key
+     * @return the entry position, or -1 if no entry holds the key.
+     */
+    public int first(long key) {
+        int s = find(key);
+        return s < 0 ? -1 : rows[starts[s]];
+    }
+    
+    /**
+     * Returns the positions of all entries that hold the given key.
+     * @param key the key
+     * @return the entry positions in ascending order.
+     */
+    public int[] lookup(long key) {
+        int s = find(key);
+        return s < 0 ? NONE : Arrays.copyOfRange(rows, starts[s], starts[s] + counts[s]);
+    }
+    
+    /**
+     * Returns the positions of all entries that hold the given value.
+     * @param val the boxed value
+     * @return the entry positions in ascending order.
+     */
+    public int[] lookup(Object val) {
+        return lookup(key(type, val));
+    }
+    
+    void write(BinaryOutputStream out) throws IOException {
+        out.writeInt(keys.length);
+        out.writeInt(rows.length);
+        out.writeLongs(keys, 0, keys.length);
+        out.writeInts(starts, 0, starts.length);
+        out.writeInts(counts, 0, counts.length);
+        out.writeInts(rows, 0, rows.length);
+    }
+    
+    static FieldIndex read(BinaryInputStream in, String field, FieldType type) throws IOException {
+        int cap = in.readInt();
+        int count = in.readInt();
+        if (count < 0 || count > MAX_COUNT || cap != capacity(count))
+            throw new IOException("Corrupt index for field " + field);
+        
+        long[] keys = new long[cap];
+        int[] starts = new int[cap];
+        int[] counts = new int[cap];
+        int[] rows = new int[count];
+        in.readLongs(keys);
+        in.readInts(starts);
+        in.readInts(counts);
+        in.readInts(rows);
+        
+        return new FieldIndex(field, type, keys, starts, counts, rows);
+    }
+}
\ No newline at end of file
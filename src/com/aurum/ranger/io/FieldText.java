@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.BitConverter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Formats and parses the text form of field values straight from and into
+ * raw entry bytes. Integers are written and parsed digit by digit, so neither
+ * direction boxes values or creates a {@code String} for them.
+ */
+final class FieldText {
+    private final Writer out;
+    private final char[] digits = new char[20];
+    
+    FieldText(Writer out) {
+        this.out = out;
+    }
+    
+    /**
+     * Writes a decimal number without going through a {@code String}.
+     * @param val the number
+     * @throws IOException if an I/O exception occurs.
+     */
+    void writeNumber(long val) throws IOException {
+        if (val == Long.MIN_VALUE) {
+            out.write(Long.toString(val));
+            return;
+        }
+        
+        int pos = digits.length;
+        long v = val < 0 ? -val : val;
+        do {
+            digits[--pos] = (char) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+        
+        if (val < 0)
+            digits[--pos] = '-';
+        out.write(digits, pos, digits.length - pos);
+    }
+    
+    /**
+     * Writes the value of a field in the same form as the XML files.
+     * @param sheet the compiled sheet
+     * @param data the buffer holding the entry
+     * @param offset the position of the entry in the buffer
+     * @param field the field index
+     * @throws IOException if an I/O exception occurs.
+     */
+    void write(CompiledSheet sheet, byte[] data, int offset, int field) throws IOException {
+        int pos = offset + sheet.offsets[field];
+        
+        switch(sheet.types[field]) {
+            case INT8: writeNumber(data[pos]); break;
+            case INT16: writeNumber(BitConverter.toShort(data, CompiledSheet.ENDIAN, pos)); break;
+            case INT32: writeNumber(BitConverter.toInt(data, CompiledSheet.ENDIAN, pos)); break;
+            case INT64: writeNumber(BitConverter.toLong(data, CompiledSheet.ENDIAN, pos)); break;
+            case FLOAT32: out.write(Float.toString(BitConverter.toFloat(data, CompiledSheet.ENDIAN, pos))); break;
+            case FLOAT64: out.write(Double.toString(BitConverter.toDouble(data, CompiledSheet.ENDIAN, pos))); break;
+            case BOOLEAN: out.write(data[pos] != 0 ? "true" : "false"); break;
+        }
+    }
+    
+    /**
+     * Parses a decimal number from a part of a string, with the same rules as
+     * {@code Long.parseLong}.
+     * @param s the string
+     * @param from the start of the number, inclusive
+     * @param to the end of the number, exclusive
+     * @param min the smallest allowed value
+     * @param max the largest allowed value
+     * @return the number.
+     * @throws NumberFormatException if the text is not a number in range.
+     */
+    static long parseNumber(String s, int from, int to, long min, long max) {
+        int i = from;
+        boolean negative = false;
+        
+        if (i < to && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        if (i == to)
+            throw new NumberFormatException("For input string: \"" + s.substring(from, to) + "\"");
+        
+        // accumulate negatively so that Long.MIN_VALUE fits
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long ret = 0;
+        
+        for ( ; i < to ; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9 || ret < limit / 10 || ret * 10 < limit + d)
+                throw new NumberFormatException("For input string: \"" + s.substring(from, to) + "\"");
+            ret = ret * 10 - d;
+        }
+        
+        ret = negative ? ret : -ret;
+        if (ret < min || ret > max)
+            throw new NumberFormatException("Value out of range. Value:\"" + s.substring(from, to) + "\"");
+        return ret;
+    }
+    
+    /**
+     * Parses the text form of a field value from a part of a string and
+     * encodes it into the raw bytes of an entry, like
+     * {@link CompiledSheet#parse}.
+     * @param sheet the compiled sheet
+     * @param data the buffer holding the entry
+     * @param offset the position of the entry in the buffer
+     * @param field the field index
+     * @param s the string
+     * @param from the start of the value, inclusive
+     * @param to the end of the value, exclusive
+     * @throws NumberFormatException if the text is not a valid number.
+     */
+    static void parse(CompiledSheet sheet, byte[] data, int offset, int field, String s, int from, int to) {
+        int pos = offset + sheet.offsets[field];
+        
+        switch(sheet.types[field]) {
+            case INT8: data[pos] = (byte) parseNumber(s, from, to, Byte.MIN_VALUE, Byte.MAX_VALUE); break;
+            case INT16: BitConverter.putShort(data, CompiledSheet.ENDIAN, pos, (short) parseNumber(s, from, to, Short.MIN_VALUE, Short.MAX_VALUE)); break;
+            case INT32: BitConverter.putInt(data, CompiledSheet.ENDIAN, pos, (int) parseNumber(s, from, to, Integer.MIN_VALUE, Integer.MAX_VALUE)); break;
+            case INT64: BitConverter.putLong(data, CompiledSheet.ENDIAN, pos, parseNumber(s, from, to, Long.MIN_VALUE, Long.MAX_VALUE)); break;
+            case FLOAT32: BitConverter.putFloat(data, CompiledSheet.ENDIAN, pos, Float.parseFloat(s.substring(from, to))); break;
+            case FLOAT64: BitConverter.putDouble(data, CompiledSheet.ENDIAN, pos, Double.parseDouble(s.substring(from, to))); break;
+            case BOOLEAN: BitConverter.putBoolean(data, pos, to - from == 4 && s.regionMatches(true, from, "true", 0, 4)); break;
+        }
+    }
+}
\ No newline at end of file
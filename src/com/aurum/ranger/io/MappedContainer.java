@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Random access to the entries of a container file. The file is mapped into
+ * memory and single fields are read straight from their position, so looking
+ * up a few entries does not require decoding everything in front of them.
+ */
+public final class MappedContainer implements Closeable {
+    public static final int HEADER_SIZE = 0x10;
+    
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final DataSheet sheet;
+    private final CompiledSheet layout;
+    private final String magic;
+    private final int count;
+    
+    private MappedContainer(FileChannel channel, ByteBuffer buffer, DataSheet sheet) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.sheet = sheet;
+        this.layout = sheet.compile();
+        
+        byte[] m = new byte[4];
+        for (int i = 0 ; i < m.length ; i++)
+            m[i] = buffer.get(i);
+        this.magic = new String(m, Charset.forName("UTF-8"));
+        
+        int size = buffer.getInt(0x4);
+        this.count = buffer.getInt(0x8);
+        
+        if (!magic.equals(layout.getName()))
+            throw new IllegalArgumentException("Container magic does not equal sheet name (" + magic + " != " + layout.getName() + ")");
+        if (size != layout.byteSum())
+            throw new IllegalArgumentException("Entry sheet size does not equal entry size (" + size + " != " + layout.byteSum() + ")");
+        if (count < 0 || HEADER_SIZE + (long) count * size > buffer.capacity())
+            throw new IllegalArgumentException("Container holds less data than its header announces (" + count + " entries)");
+    }
+    
+    public static MappedContainer open(String f, DataSheet s) throws IOException {
+        return open(new File(f), s);
+    }
+    
+    public static MappedContainer open(File f, DataSheet s) throws IOException {
+        FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+        
+        try {
+            long len = ch.size();
+            if (len < HEADER_SIZE)
+                throw new IllegalArgumentException("File is too small to be a container");
+            if (len > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Container is too large to be mapped");
+            
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, len).order(ByteOrder.LITTLE_ENDIAN);
+            return new MappedContainer(ch, buf, s);
+        }
+        catch (IOException | RuntimeException ex) {
+            ch.close();
+            throw ex;
+        }
+    }
+    
+    /**
+     * Closes the underlying file channel. The mapping itself is released
+     * once this object is garbage collected.
+     * @throws IOException if an I/O exception occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    @Override
+    public String toString() {
+        return sheet.getName();
+    }
+    
+    public DataSheet sheet() {
+        return sheet;
+    }
+    
+    /**
+     * Returns the magic stored in the container header.
+     * @return the magic.
+     */
+    public String magic() {
+        return magic;
+    }
+    
+    /**
+     * Returns the number of entries in the container.
+     * @return the number of entries.
+     */
+    public int size() {
+        return count;
+    }
+    
+    /**
+     * Returns the mapped file, header included, in container byte order.
+     * @return the mapped buffer.
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+    
+    /**
+     * Returns the file position of a field.
+     * @param entry the entry index
+     * @param field the field index
+     * @return the position of the field in the file.
+     */
+    public int offset(int entry, int field) {
+        if (entry < 0 || entry >= count)
+            throw new IndexOutOfBoundsException("Entry index " + entry + " out of bounds (size " + count + ")");
+        return HEADER_SIZE + entry * layout.byteSum + layout.offsets[field];
+    }
+    
+    public byte getByte(int entry, int field) {
+        return buffer.get(offset(entry, field));
+    }
+    
+    public short getShort(int entry, int field) {
+        return buffer.getShort(offset(entry, field));
+    }
+    
+    public int getInt(int entry, int field) {
+        return buffer.getInt(offset(entry, field));
+    }
+    
+    public long getLong(int entry, int field) {
+        return buffer.getLong(offset(entry, field));
+    }
+    
+    public float getFloat(int entry, int field) {
+        return buffer.getFloat(offset(entry, field));
+    }
+    
+    public double getDouble(int entry, int field) {
+        return buffer.getDouble(offset(entry, field));
+    }
+    
+    public boolean getBoolean(int entry, int field) {
+        return buffer.get(offset(entry, field)) != 0x0;
+    }
+    
+    /**
+     * Returns the boxed value of a field.
+     * @param entry the entry index
+     * @param field the field index
+     * @return the boxed value.
+     */
+    public Object get(int entry, int field) {
+        FieldType ft = layout.types[field];
+        
+        switch(ft) {
+            case INT8: return getByte(entry, field);
+            case INT16: return getShort(entry, field);
+            case INT32: return getInt(entry, field);
+            case INT64: return getLong(entry, field);
+            case FLOAT32: return getFloat(entry, field);
+            case FLOAT64: return getDouble(entry, field);
+            case BOOLEAN: return getBoolean(entry, field);
+            default: throw new IllegalArgumentException("Unknown/unsupported field type " + ft.name());
+        }
+    }
+    
+    /**
+     * Returns the boxed value of a field.
+     * @param entry the entry index
+     * @param field the field name
+     * @return the boxed value.
+     */
+    public Object get(int entry, String field) {
+        int i = layout.indexOf(field);
+        if (i < 0)
+            throw new IllegalArgumentException("Sheet " + sheet.getName() + " has no field " + field);
+        return get(entry, i);
+    }
+    
+    /**
+     * Decodes a whole entry.
+     * @param entry the entry index
+     * @return the decoded entry.
+     */
+    public DataEntry getEntry(int entry) {
+        DataEntry de = new DataEntry();
+        for (int i = 0 ; i < layout.names.length ; i++)
+            de.put(layout.names[i], get(entry, i));
+        return de;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide timings and throughput of the conversion phases. Every phase
+ * is timed once per sheet or container, not per entry, and is also emitted
+ * as a {@code com.aurum.ranger.Phase} Flight Recorder event, so it shows up
+ * in recordings started with {@code -XX:StartFlightRecording} or
+ * {@code jcmd JFR.start}. A phase that fails with an exception is not
+ * counted.
+ * <p>
+ * Flight Recorder is only part of Java 8 from update 262 on. On older
+ * runtimes only the counters are kept, and on newer ones the event type is
+ * only set up while a recording is running (see {@link PhaseEvent}).
+ */
+public final class Metrics {
+    public enum Phase {
+        /** Loading a sheet from its {@link SheetCache}. */
+        SHEET_CACHE ("sheet.cache"),
+        /** Parsing a sheet from its XML. */
+        SHEET_PARSE ("sheet.parse"),
+        /** Decoding a container into a {@link Container}. */
+        DECODE      ("decode"),
+        /** Encoding a {@link Container}. */
+        ENCODE      ("encode"),
+        /** Streaming a container file to a text file. */
+        EXPORT      ("export"),
+        /** Streaming a text file to a container file. */
+        COMPILE     ("compile"),
+        /** Building a {@link Container} from an XML document tree. */
+        XML_READ    ("xml.read"),
+        /** Writing a {@link Container} as XML. */
+        XML_WRITE   ("xml.write"),
+        /** Copying a result out of the {@link ConversionCache}. */
+        CACHE       ("cache");
+        
+        private final String key;
+        private Phase(String key) {
+            this.key = key;
+        }
+        
+        /**
+         * Returns the name of the phase in the JSON report and the events.
+         * @return the name.
+         */
+        public String key() {
+            return key;
+        }
+    }
+    
+    private static final class Counter {
+        final LongAdder count = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder entries = new LongAdder();
+        final LongAdder fields = new LongAdder();
+    }
+    
+    /**
+     * A running phase. It is counted once {@code stop} is called.
+     */
+    public static final class Timer {
+        private final Phase phase;
+        private final String detail;
+        private final Object event;
+        private final long start;
+        
+        private Timer(Phase phase, String detail) {
+            this.phase = phase;
+            this.detail = detail;
+            
+            event = PhaseEvent.start();
+            start = System.nanoTime();
+        }
+        
+        /**
+         * Ends the phase and records what it processed.
+         * @param bytes the number of binary entry bytes, or sheet bytes for
+         *              the sheet phases
+         * @param entries the number of entries
+         * @param fields the number of field values
+         */
+        public void stop(long bytes, long entries, long fields) {
+            long nanos = System.nanoTime() - start;
+            Counter c = COUNTERS[phase.ordinal()];
+            
+            c.count.increment();
+            c.nanos.add(nanos);
+            c.bytes.add(bytes);
+            c.entries.add(entries);
+            c.fields.add(fields);
+            
+            if (event != null)
+                PhaseEvent.stop(event, phase.key, detail, bytes, entries, fields);
+        }
+    }
+    
+    private static final Counter[] COUNTERS = new Counter[Phase.values().length];
+    static {
+        for (int i = 0 ; i < COUNTERS.length ; i++)
+            COUNTERS[i] = new Counter();
+    }
+    
+    private Metrics() {
+    }
+    
+    /**
+     * Starts timing a phase.
+     * @param phase the phase
+     * @param detail the file or format the phase works on
+     * @return the timer.
+     */
+    public static Timer start(Phase phase, String detail) {
+        return new Timer(phase, detail);
+    }
+    
+    /**
+     * Clears all counters.
+     */
+    public static void reset() {
+        for (Counter c : COUNTERS) {
+            c.count.reset();
+            c.nanos.reset();
+            c.bytes.reset();
+            c.entries.reset();
+            c.fields.reset();
+        }
+    }
+    
+    private static String rate(long amount, long nanos) {
+        return nanos > 0 ? String.format(Locale.ROOT, "%.1f", amount * 1e9 / nanos) : "0";
+    }
+    
+    /**
+     * Returns the counters of every phase that ran as a JSON object. Each
+     * phase lists how often it ran, its total time in milliseconds, the
+     * bytes, entries and fields it processed and their rates per second.
+     * @return the JSON text.
+     */
+    public static String toJson() {
+        StringBuilder ret = new StringBuilder("{");
+        boolean first = true;
+        
+        for (Phase p : Phase.values()) {
+            Counter c = COUNTERS[p.ordinal()];
+            long count = c.count.sum();
+            if (count == 0)
+                continue;
+            
+            long nanos = c.nanos.sum(), bytes = c.bytes.sum(), entries = c.entries.sum(), fields = c.fields.sum();
+            
+            ret.append(first ? "\n" : ",\n");
+            ret.append("  \"").append(p.key).append("\": {");
+            ret.append("\"count\": ").append(count);
+            ret.append(", \"ms\": ").append(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+            ret.append(", \"bytes\": ").append(bytes);
+            ret.append(", \"entries\": ").append(entries);
+            ret.append(", \"fields\": ").append(fields);
+            ret.append(", \"bytesPerSecond\": ").append(rate(bytes, nanos));
+            ret.append(", \"entriesPerSecond\": ").append(rate(entries, nanos));
+            ret.append(", \"fieldsPerSecond\": ").append(rate(fields, nanos));
+            ret.append('}');
+            first = false;
+        }
+        
+        return ret.append(first ? "}" : "\n}").toString();
+    }
+}
\ No newline at end of file
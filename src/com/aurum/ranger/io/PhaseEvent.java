@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aurum.ranger.io;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The Flight Recorder events for the timed phases of a conversion, see
+ * {@link Metrics}. The event type is defined at runtime with
+ * {@code jdk.jfr.EventFactory}, and all of {@code jdk.jfr} is used through
+ * reflection, so this class compiles for Java 8 and links on runtimes
+ * without Flight Recorder. Events are passed around as {@code Object}.
+ * <p>
+ * The event type and the Flight Recorder classes behind it are only loaded
+ * once a recording is running. Setting them up takes long enough to show
+ * when converting small files.
+ */
+final class PhaseEvent {
+    private static final Method IS_INITIALIZED, GET_RECORDER, GET_RECORDINGS;
+    static {
+        Method init = null, recorder = null, recordings = null;
+        try {
+            Class<?> fr = Class.forName("jdk.jfr.FlightRecorder");
+            init = fr.getMethod("isInitialized");
+            recorder = fr.getMethod("getFlightRecorder");
+            recordings = fr.getMethod("getRecordings");
+        }
+        catch (ReflectiveOperationException | LinkageError ex) {
+            // no Flight Recorder, only the counters are kept
+        }
+        IS_INITIALIZED = init;
+        GET_RECORDER = recorder;
+        GET_RECORDINGS = recordings;
+    }
+    
+    private PhaseEvent() {
+    }
+    
+    /**
+     * Checks whether a recording is running, without setting up Flight
+     * Recorder if nothing has started it yet.
+     * @return {@code true} if events are recorded.
+     */
+    static boolean recording() {
+        if (IS_INITIALIZED == null)
+            return false;
+        
+        try {
+            if (!(boolean) IS_INITIALIZED.invoke(null))
+                return false;
+            return !((List) GET_RECORDINGS.invoke(GET_RECORDER.invoke(null))).isEmpty();
+        }
+        catch (ReflectiveOperationException | RuntimeException ex) {
+            return false;
+        }
+    }
+    
+    /**
+     * Begins an event if a recording is running.
+     * @return the event, or {@code null}.
+     */
+    static Object start() {
+        if (!recording() || Type.FACTORY == null)
+            return null;
+        
+        try {
+            Object ret = Type.NEW_EVENT.invoke(Type.FACTORY);
+            Type.BEGIN.invoke(ret);
+            return ret;
+        }
+        catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * Ends an event returned by {@code start} and commits it with the values
+     * of the phase.
+     */
+    static void stop(Object event, String phase, String detail, long bytes, long entries, long fields) {
+        try {
+            Type.END.invoke(event);
+            if (!(boolean) Type.SHOULD_COMMIT.invoke(event))
+                return;
+            
+            Object[] vals = { phase, detail, bytes, entries, fields };
+            for (int i = 0 ; i < vals.length ; i++)
+                Type.SET.invoke(event, i, vals[i]);
+            Type.COMMIT.invoke(event);
+        }
+        catch (ReflectiveOperationException ex) {
+            // the phase is still counted
+        }
+    }
+    
+    /**
+     * The event type, defined on first use. The fields are set by index, in
+     * the order they are declared here.
+     */
+    private static final class Type {
+        static final Object FACTORY;
+        static final Method NEW_EVENT, BEGIN, END, SHOULD_COMMIT, SET, COMMIT;
+        static {
+            Object factory = null;
+            Method newEvent = null, begin = null, end = null, shouldCommit = null, set = null, commit = null;
+            
+            try {
+                Class<?> element = Class.forName("jdk.jfr.AnnotationElement");
+                Class<?> descriptor = Class.forName("jdk.jfr.ValueDescriptor");
+                Class<?> event = Class.forName("jdk.jfr.Event");
+                Class<?> ef = Class.forName("jdk.jfr.EventFactory");
+                Constructor<?> annotation = element.getConstructor(Class.class, Object.class);
+                Constructor<?> field = descriptor.getConstructor(Class.class, String.class, List.class);
+                
+                Class<?> label = Class.forName("jdk.jfr.Label");
+                Class<?> description = Class.forName("jdk.jfr.Description");
+                
+                List type = Arrays.asList(
+                        annotation.newInstance(Class.forName("jdk.jfr.Name"), "com.aurum.ranger.Phase"),
+                        annotation.newInstance(label, "PokéSheet Phase"),
+                        annotation.newInstance(Class.forName("jdk.jfr.Category"), new String[] { "PokéSheet" }),
+                        annotation.newInstance(description, "A timed phase of a container conversion"));
+                List fields = Arrays.asList(
+                        field.newInstance(String.class, "phase", Collections.singletonList(annotation.newInstance(label, "Phase"))),
+                        field.newInstance(String.class, "detail", Arrays.asList(
+                                annotation.newInstance(label, "Detail"),
+                                annotation.newInstance(description, "The file or format the phase worked on"))),
+                        field.newInstance(long.class, "bytes", Arrays.asList(
+                                annotation.newInstance(label, "Bytes"),
+                                annotation.newInstance(Class.forName("jdk.jfr.DataAmount"), "BYTES"))),
+                        field.newInstance(long.class, "entries", Collections.singletonList(annotation.newInstance(label, "Entries"))),
+                        field.newInstance(long.class, "fields", Collections.singletonList(annotation.newInstance(label, "Fields"))));
+                
+                factory = ef.getMethod("create", List.class, List.class).invoke(null, type, fields);
+                newEvent = ef.getMethod("newEvent");
+                begin = event.getMethod("begin");
+                end = event.getMethod("end");
+                shouldCommit = event.getMethod("shouldCommit");
+                set = event.getMethod("set", int.class, Object.class);
+                commit = event.getMethod("commit");
+            }
+            catch (ReflectiveOperationException | LinkageError | RuntimeException ex) {
+                factory = null;
+            }
+            
+            FACTORY = factory;
+            NEW_EVENT = newEvent;
+            BEGIN = begin;
+            END = end;
+            SHOULD_COMMIT = shouldCommit;
+            SET = set;
+            COMMIT = commit;
+        }
+    }
+}
\ No newline at end of file
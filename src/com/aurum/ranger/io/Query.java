@@ -0,0 +1,496 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.BitConverter;
+import static com.aurum.ranger.io.CompiledSheet.ENDIAN;
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * A filter expression over the fields of a sheet, such as
+ * {@code fpkd_index == 11 && unkC > 4}. Expressions are made of comparisons
+ * ({@code ==}, {@code !=}, {@code <}, {@code <=}, {@code >}, {@code >=})
+ * between fields and number or {@code true}/{@code false} literals, combined
+ * with {@code &&}, {@code ||}, {@code !} and parentheses. A boolean field may
+ * also stand on its own.
+ * <p>
+ * An expression is compiled once against the sheet layout into a tree of
+ * typed comparisons that read their fields straight from the raw entry
+ * bytes, so entries are only decoded if they match.
+ */
+public final class Query {
+    private static final int EQ = 0, NE = 1, LT = 2, LE = 3, GT = 4, GE = 5;
+    private static final String[] OPS = { "==", "!=", "<=", ">=", "<", ">" };
+    private static final int[] OP_CODES = { EQ, NE, LE, GE, LT, GT };
+    
+    private final DataSheet source;
+    private final CompiledSheet sheet;
+    private final String expression;
+    private final Node root;
+    
+    private Query(DataSheet source, String expression, Node root) {
+        this.source = source;
+        this.sheet = source.compile();
+        this.expression = expression;
+        this.root = root;
+    }
+    
+    public DataSheet sheet() {
+        return source;
+    }
+    
+    /**
+     * Compiles an expression against a sheet.
+     * @param expression the expression
+     * @param s the data sheet
+     * @return the compiled query.
+     * @throws IllegalArgumentException if the expression is malformed or
+     *         refers to a field the sheet does not have.
+     */
+    public static Query compile(String expression, DataSheet s) {
+        return new Query(s, expression, new Parser(expression, s.compile()).parse());
+    }
+    
+    @Override
+    public String toString() {
+        return expression;
+    }
+    
+    /**
+     * Tests an entry against this query.
+     * @param data the buffer holding the raw entry bytes
+     * @param offset the position of the entry in the buffer
+     * @return {@code true} if the entry matches.
+     */
+    public boolean matches(byte[] data, int offset) {
+        return root.test(data, offset);
+    }
+    
+    /**
+     * Reads a container file and keeps the entries that match this query.
+     * @param container the container file
+     * @return a container holding only the matching entries, in their raw
+     *         form (see {@link Container.Storage#RECORDS}).
+     * @throws IOException if an I/O exception occurs.
+     */
+    public Container select(File container) throws IOException {
+        Container ret = new Container(source, Container.Storage.RECORDS);
+        RecordStore recs = ret.records();
+        
+        try (ContainerInputStream in = new ContainerInputStream(new BinaryInputStream(new FileInputStream(container)))) {
+            int count = in.readHeader(ret.sheet());
+            int size = sheet.byteSum();
+            byte[] rec = new byte[size];
+            
+            for (int i = 0 ; i < count ; i++) {
+                in.readRecord(rec, 0, size);
+                if (root.test(rec, 0)) {
+                    int row = recs.grow(1);
+                    System.arraycopy(rec, 0, recs.data(), recs.offset(row), size);
+                }
+            }
+        }
+        return ret;
+    }
+    
+    /**
+     * Writes the entries of a container file that match this query to XML,
+     * in the same form as {@link ContainerXmlWriter#export}. Like the exports
+     * of {@link ContainerFormat}, the XML is written to a temporary file that
+     * replaces the output file once it is complete.
+     * @param container the container file
+     * @param xml the XML file
+     * @return the number of matching entries.
+     * @throws IOException if an I/O exception occurs.
+     */
+    public int export(File container, File xml) throws IOException {
+        int matches = 0;
+        
+        File tmp = ContainerFormat.temp(xml);
+        try {
+            try (ContainerInputStream in = new ContainerInputStream(new BinaryInputStream(new FileInputStream(container)));
+                    ContainerXmlWriter out = new ContainerXmlWriter(tmp, source)) {
+                int count = in.readHeader(source);
+                int size = sheet.byteSum();
+                byte[] rec = new byte[size];
+                
+                for (int i = 0 ; i < count ; i++) {
+                    in.readRecord(rec, 0, size);
+                    if (root.test(rec, 0)) {
+                        out.writeEntry(rec, 0);
+                        matches++;
+                    }
+                }
+            }
+            ContainerFormat.replace(tmp, xml);
+        }
+        finally {
+            tmp.delete();
+        }
+        return matches;
+    }
+    
+    /*
+     * Compiled expression tree
+     */
+    
+    private static abstract class Node {
+        abstract boolean test(byte[] data, int offset);
+    }
+    
+    /**
+     * A number, either read from an entry or constant. Integer and boolean
+     * values are compared as {@code long}, floating point values as
+     * {@code double}.
+     */
+    private static abstract class Operand {
+        final boolean floating, bool;
+        
+        Operand(boolean floating, boolean bool) {
+            this.floating = floating;
+            this.bool = bool;
+        }
+        
+        abstract long longValue(byte[] data, int offset);
+        abstract double doubleValue(byte[] data, int offset);
+    }
+    
+    private static final class Constant extends Operand {
+        final long l;
+        final double d;
+        
+        Constant(long l, double d, boolean floating, boolean bool) {
+            super(floating, bool);
+            this.l = l;
+            this.d = d;
+        }
+        
+        @Override
+        long longValue(byte[] data, int offset) {
+            return l;
+        }
+        
+        @Override
+        double doubleValue(byte[] data, int offset) {
+            return d;
+        }
+    }
+    
+    private static abstract class IntField extends Operand {
+        final int pos;
+        
+        IntField(int pos, boolean bool) {
+            super(false, bool);
+            this.pos = pos;
+        }
+        
+        @Override
+        double doubleValue(byte[] data, int offset) {
+            return longValue(data, offset);
+        }
+    }
+    
+    private static abstract class FloatField extends Operand {
+        final int pos;
+        
+        FloatField(int pos) {
+            super(true, false);
+            this.pos = pos;
+        }
+        
+        @Override
+        long longValue(byte[] data, int offset) {
+            return (long) doubleValue(data, offset);
+        }
+    }
+    
+    private static Operand field(FieldType type, int pos) {
+        switch(type) {
+            case INT8: return new IntField(pos, false) {
+                @Override
+                long longValue(byte[] data, int offset) {
+                    return data[offset + pos];
+                }
+            };
+            case INT16: return new IntField(pos, false) {
+                @Override
+                long longValue(byte[] data, int offset) {
+                    return BitConverter.toShort(data, ENDIAN, offset + pos);
+                }
+            };
+            case INT32: return new IntField(pos, false) {
+                @Override
+                long longValue(byte[] data, int offset) {
+                    return BitConverter.toInt(data, ENDIAN, offset + pos);
+                }
+            };
+            case INT64: return new IntField(pos, false) {
+                @Override
+                long longValue(byte[] data, int offset) {
+                    return BitConverter.toLong(data, ENDIAN, offset + pos);
+                }
+            };
+            case FLOAT32: return new FloatField(pos) {
+                @Override
+                double doubleValue(byte[] data, int offset) {
+                    return BitConverter.toFloat(data, ENDIAN, offset + pos);
+                }
+            };
+            case FLOAT64: return new FloatField(pos) {
+                @Override
+                double doubleValue(byte[] data, int offset) {
+                    return BitConverter.toDouble(data, ENDIAN, offset + pos);
+                }
+            };
+            case BOOLEAN: return new IntField(pos, true) {
+                @Override
+                long longValue(byte[] data, int offset) {
+                    return data[offset + pos] != 0x0 ? 1 : 0;
+                }
+            };
+            default: throw new IllegalArgumentException("Unknown/unsupported field type " + type.name());
+        }
+    }
+    
+    private static final class LongCompare extends Node {
+        final int op;
+        final Operand a, b;
+        
+        LongCompare(int op, Operand a, Operand b) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+        }
+        
+        @Override
+        boolean test(byte[] data, int offset) {
+            long x = a.longValue(data, offset), y = b.longValue(data, offset);
+            
+            switch(op) {
+                case EQ: return x == y;
+                case NE: return x != y;
+                case LT: return x < y;
+                case LE: return x <= y;
+                case GT: return x > y;
+                default: return x >= y;
+            }
+        }
+    }
+    
+    private static final class DoubleCompare extends Node {
+        final int op;
+        final Operand a, b;
+        
+        DoubleCompare(int op, Operand a, Operand b) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+        }
+        
+        @Override
+        boolean test(byte[] data, int offset) {
+            double x = a.doubleValue(data, offset), y = b.doubleValue(data, offset);
+            
+            switch(op) {
+                case EQ: return x == y;
+                case NE: return x != y;
+                case LT: return x < y;
+                case LE: return x <= y;
+                case GT: return x > y;
+                default: return x >= y;
+            }
+        }
+    }
+    
+    private static final class And extends Node {
+        final Node a, b;
+        
+        And(Node a, Node b) {
+            this.a = a;
+            this.b = b;
+        }
+        
+        @Override
+        boolean test(byte[] data, int offset) {
+            return a.test(data, offset) && b.test(data, offset);
+        }
+    }
+    
+    private static final class Or extends Node {
+        final Node a, b;
+        
+        Or(Node a, Node b) {
+            this.a = a;
+            this.b = b;
+        }
+        
+        @Override
+        boolean test(byte[] data, int offset) {
+            return a.test(data, offset) || b.test(data, offset);
+        }
+    }
+    
+    private static final class Not extends Node {
+        final Node a;
+        
+        Not(Node a) {
+            this.a = a;
+        }
+        
+        @Override
+        boolean test(byte[] data, int offset) {
+            return !a.test(data, offset);
+        }
+    }
+    
+    /*
+     * Recursive descent parser
+     */
+    
+    private static final class Parser {
+        private final String text;
+        private final CompiledSheet sheet;
+        private int pos;
+        
+        Parser(String text, CompiledSheet sheet) {
+            this.text = text;
+            this.sheet = sheet;
+        }
+        
+        private IllegalArgumentException error(String msg) {
+            return new IllegalArgumentException(msg + " at position " + pos + " of \"" + text + "\"");
+        }
+        
+        private void skipSpace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+                pos++;
+        }
+        
+        private boolean accept(String token) {
+            skipSpace();
+            if (text.startsWith(token, pos)) {
+                pos += token.length();
+                return true;
+            }
+            return false;
+        }
+        
+        Node parse() {
+            Node ret = or();
+            skipSpace();
+            if (pos < text.length())
+                throw error("Unexpected '" + text.charAt(pos) + "'");
+            return ret;
+        }
+        
+        private Node or() {
+            Node ret = and();
+            while (accept("||"))
+                ret = new Or(ret, and());
+            return ret;
+        }
+        
+        private Node and() {
+            Node ret = unary();
+            while (accept("&&"))
+                ret = new And(ret, unary());
+            return ret;
+        }
+        
+        private Node unary() {
+            if (accept("!"))
+                return new Not(unary());
+            if (accept("(")) {
+                Node ret = or();
+                if (!accept(")"))
+                    throw error("Expected ')'");
+                return ret;
+            }
+            return comparison();
+        }
+        
+        private Node comparison() {
+            Operand a = operand();
+            
+            for (int i = 0 ; i < OPS.length ; i++) {
+                if (accept(OPS[i])) {
+                    Operand b = operand();
+                    if (a.floating || b.floating)
+                        return new DoubleCompare(OP_CODES[i], a, b);
+                    return new LongCompare(OP_CODES[i], a, b);
+                }
+            }
+            
+            if (!a.bool)
+                throw error("Expected comparison operator");
+            return new LongCompare(NE, a, new Constant(0, 0, false, true));
+        }
+        
+        private Operand operand() {
+            skipSpace();
+            int start = pos;
+            
+            if (pos < text.length() && Character.isJavaIdentifierStart(text.charAt(pos))) {
+                while (pos < text.length() && Character.isJavaIdentifierPart(text.charAt(pos)))
+                    pos++;
+                String name = text.substring(start, pos);
+                
+                if (name.equals("true"))
+                    return new Constant(1, 1, false, true);
+                if (name.equals("false"))
+                    return new Constant(0, 0, false, true);
+                
+                int field = sheet.indexOf(name);
+                if (field < 0) {
+                    pos = start;
+                    throw error("Sheet " + sheet.getName() + " has no field " + name);
+                }
+                return field(sheet.types[field], sheet.offsets[field]);
+            }
+            
+            if (pos < text.length() && (text.charAt(pos) == '-' || text.charAt(pos) == '+'))
+                pos++;
+            boolean floating = false;
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c == '.' || c == 'e' || c == 'E')
+                    floating = true;
+                else if (!Character.isDigit(c) && !((c == '-' || c == '+') && (text.charAt(pos - 1) == 'e' || text.charAt(pos - 1) == 'E')))
+                    break;
+                pos++;
+            }
+            
+            String num = text.substring(start, pos);
+            try {
+                if (floating) {
+                    double d = Double.parseDouble(num);
+                    return new Constant((long) d, d, true, false);
+                }
+                long l = Long.parseLong(num);
+                return new Constant(l, l, false, false);
+            }
+            catch (NumberFormatException ex) {
+                pos = start;
+                throw error(num.isEmpty() ? "Expected field or number" : "Invalid number " + num);
+            }
+        }
+    }
+}
\ No newline at end of file
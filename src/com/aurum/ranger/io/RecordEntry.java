@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+/**
+ * A {@link FieldEntry} backed by the raw bytes of an entry, in container byte
+ * order. Fields are decoded only when they are read and encoded straight into
+ * the bytes when they are written, so an entry costs nothing until it is used.
+ * The entry can be moved to other bytes to walk many entries with one object.
+ */
+public class RecordEntry extends FieldEntry {
+    private static final long serialVersionUID = 1L;
+    
+    private byte[] data;
+    private int offset;
+    
+    public RecordEntry(CompiledSheet sheet) {
+        this(sheet, new byte[sheet.byteSum()], 0);
+    }
+    
+    public RecordEntry(CompiledSheet sheet, byte[] data, int offset) {
+        super(sheet);
+        moveTo(data, offset);
+    }
+    
+    /**
+     * Points this entry at other entry bytes.
+     * @param data the buffer holding the entry
+     * @param offset the position of the entry in the buffer
+     */
+    public final void moveTo(byte[] data, int offset) {
+        if (offset < 0 || offset > data.length - sheet.byteSum())
+            throw new IndexOutOfBoundsException("Entry at " + offset + " does not fit into " + data.length + " bytes");
+        
+        this.data = data;
+        this.offset = offset;
+    }
+    
+    public byte[] data() {
+        return data;
+    }
+    
+    public int offset() {
+        return offset;
+    }
+    
+    @Override
+    public Object get(int field) {
+        return sheet.get(data, offset, field);
+    }
+    
+    @Override
+    public void set(int field, Object val) {
+        sheet.put(data, offset, field, val);
+    }
+}
\ No newline at end of file
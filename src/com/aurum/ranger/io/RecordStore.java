@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entry storage that keeps the raw entry bytes exactly as they are stored in
+ * a container file. Loading a container is a single bulk copy, and entries
+ * are handed out as {@link FieldEntry} views that decode fields on access.
+ */
+public final class RecordStore {
+    final CompiledSheet sheet;
+    private byte[] data;
+    private int size;
+    
+    public RecordStore(CompiledSheet sheet) {
+        this(sheet, 16);
+    }
+    
+    public RecordStore(CompiledSheet sheet, int capacity) {
+        this.sheet = sheet;
+        this.data = new byte[capacity * sheet.byteSum()];
+    }
+    
+    public CompiledSheet sheet() {
+        return sheet;
+    }
+    
+    /**
+     * Returns the number of entries in this store.
+     * @return the number of entries.
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the buffer holding the entries. Only the first
+     * {@code size() * sheet().byteSum()} bytes are valid. The buffer is
+     * replaced when the store grows.
+     * @return the entry bytes.
+     */
+    public byte[] data() {
+        return data;
+    }
+    
+    /**
+     * Returns the position of an entry in the buffer.
+     * @param row the entry index
+     * @return the position in bytes.
+     */
+    public int offset(int row) {
+        checkRow(row);
+        return row * sheet.byteSum;
+    }
+    
+    /**
+     * Grows the buffer so that it can hold at least {@code capacity} entries.
+     * @param capacity the minimum capacity
+     */
+    public void ensureCapacity(int capacity) {
+        int entrySize = sheet.byteSum;
+        if (entrySize == 0 || (long) capacity * entrySize <= data.length)
+            return;
+        
+        long len = Math.max((long) capacity * entrySize, data.length + (data.length >> 1));
+        if (len > Integer.MAX_VALUE - 8)
+            throw new OutOfMemoryError("Too many entries for a single buffer");
+        data = Arrays.copyOf(data, (int) len);
+    }
+    
+    /**
+     * Appends {@code count} zeroed entries and returns the index of the first one.
+     * @param count the number of entries to append
+     * @return the index of the first new entry.
+     * @throws IllegalArgumentException if the count is negative or too large.
+     */
+    public int grow(int count) {
+        if (count < 0 || count > Integer.MAX_VALUE - size)
+            throw new IllegalArgumentException("Cannot append " + count + " entries to " + size + " entries");
+        
+        int first = size;
+        ensureCapacity(first + count);
+        Arrays.fill(data, first * sheet.byteSum, (first + count) * sheet.byteSum, (byte) 0);
+        size += count;
+        return first;
+    }
+    
+    /**
+     * Removes all entries. The capacity is kept.
+     */
+    public void clear() {
+        size = 0;
+    }
+    
+    private void checkRow(int row) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("Entry index " + row + " out of bounds (size " + size + ")");
+    }
+    
+    /**
+     * Returns the boxed value of a field.
+     * @param field the field index
+     * @param row the entry index
+     * @return the boxed value.
+     */
+    public Object get(int field, int row) {
+        return sheet.get(data, offset(row), field);
+    }
+    
+    /**
+     * Sets the value of a field from its boxed form.
+     * @param field the field index
+     * @param row the entry index
+     * @param val the boxed value, which has to match the field type
+     */
+    public void set(int field, int row, Object val) {
+        sheet.put(data, offset(row), field, val);
+    }
+    
+    private void copyFrom(Map<String, Object> de, int row) {
+        int off = offset(row);
+        for (int i = 0 ; i < sheet.count() ; i++) {
+            Object val = de.get(sheet.names[i]);
+            if (val == null)
+                throw new IllegalArgumentException("Entry has no value for field " + sheet.names[i]);
+            sheet.put(data, off, i, val);
+        }
+    }
+    
+    private void insert(int row) {
+        int old = size;
+        grow(1);
+        System.arraycopy(data, row * sheet.byteSum, data, (row + 1) * sheet.byteSum, (old - row) * sheet.byteSum);
+    }
+    
+    private void delete(int row) {
+        System.arraycopy(data, (row + 1) * sheet.byteSum, data, row * sheet.byteSum, (size - row - 1) * sheet.byteSum);
+        size--;
+    }
+    
+    /**
+     * Returns a row-oriented view of this store. The entries returned by
+     * {@code get} are {@link FieldEntry} views that read and write through to
+     * the store, like {@code entry}. A view stays tied to its row index, so
+     * it shows another entry once entries before it are added or removed.
+     * Entries passed to {@code add} or {@code set} are copied into the store.
+     * @return the entry list view.
+     */
+    public List<DataEntry> entries() {
+        return new AbstractList<DataEntry>() {
+            @Override
+            public int size() {
+                return size;
+            }
+            
+            @Override
+            public DataEntry get(int index) {
+                return entry(index);
+            }
+            
+            @Override
+            public DataEntry set(int index, DataEntry de) {
+                DataEntry old = new RecordEntry(sheet, data, offset(index)).copy();
+                copyFrom(de, index);
+                return old;
+            }
+            
+            @Override
+            public void add(int index, DataEntry de) {
+                if (index < 0 || index > size)
+                    throw new IndexOutOfBoundsException("Entry index " + index + " out of bounds (size " + size + ")");
+                
+                insert(index);
+                try {
+                    copyFrom(de, index);
+                }
+                catch (RuntimeException ex) {
+                    delete(index);
+                    throw ex;
+                }
+                modCount++;
+            }
+            
+            @Override
+            public DataEntry remove(int index) {
+                DataEntry old = new RecordEntry(sheet, data, offset(index)).copy();
+                delete(index);
+                modCount++;
+                return old;
+            }
+            
+            @Override
+            public void clear() {
+                size = 0;
+                modCount++;
+            }
+        };
+    }
+    
+    /**
+     * Returns a view of a single row, which reads and writes through to the
+     * store.
+     * @param row the row index
+     * @return the entry view.
+     */
+    public FieldEntry entry(int row) {
+        checkRow(row);
+        return new StoredEntry(row);
+    }
+    
+    /**
+     * A {@code FieldEntry} view of a single row. Unlike a {@link RecordEntry}
+     * it stays valid when the store's buffer is replaced.
+     */
+    private final class StoredEntry extends FieldEntry {
+        private static final long serialVersionUID = 1L;
+        
+        private final int row;
+        
+        StoredEntry(int row) {
+            super(RecordStore.this.sheet);
+            this.row = row;
+        }
+        
+        @Override
+        public Object get(int field) {
+            return RecordStore.this.get(field, row);
+        }
+        
+        @Override
+        public void set(int field, Object val) {
+            RecordStore.this.set(field, row, val);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.BitConverter;
+import com.aurum.ranger.ByteOrder;
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A compact binary form of a sheet, kept in a sidecar file next to the sheet
+ * XML. It holds the name and the fields in sheet order with their types,
+ * offsets and index flags, so a sheet can be loaded without an XML parser.
+ * <p>
+ * The sidecar records the SHA-256 hash of the XML it was built from and is
+ * ignored and rewritten as soon as the XML content changes, or if its own
+ * checksum does not match. Since it is written wherever the sheet file is,
+ * opening a sheet outside the sheets directory leaves a {@code .cache} file
+ * next to it too.
+ */
+public final class SheetCache {
+    public static final String SUFFIX = ".cache";
+    
+    private static final int MAGIC = 0x43535350; // "PSSC"
+    private static final int VERSION = 2;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    private SheetCache() {
+    }
+    
+    /**
+     * Returns the sidecar file of a sheet file.
+     * @param sheet the sheet file
+     * @return the sidecar file.
+     */
+    public static File sidecar(File sheet) {
+        return new File(sheet.getPath() + SUFFIX);
+    }
+    
+    private static byte[] hash(byte[] xml) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(xml);
+        }
+        catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    private static void writeString(BinaryOutputStream out, String str) throws IOException {
+        byte[] b = str.getBytes(UTF8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+    
+    private static String readString(BinaryInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0 || len > 0xFFFF)
+            throw new IOException("Corrupt sheet cache");
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, UTF8);
+    }
+    
+    /**
+     * Writes a sheet to a sidecar file. The file is written under a temporary
+     * name first and then moved into place, so concurrent readers never see
+     * it half-written.
+     * @param f the sidecar file
+     * @param xml the content of the sheet XML the sheet was parsed from
+     * @param s the sheet
+     * @throws IOException if an I/O exception occurs.
+     */
+    public static void save(File f, byte[] xml, DataSheet s) throws IOException {
+        CompiledSheet cs = s.compile();
+        File dir = f.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile(f.getName(), ".tmp", dir);
+        
+        try {
+            try (FileOutputStream file = new FileOutputStream(tmp)) {
+                CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32());
+                BinaryOutputStream out = new BinaryOutputStream(checked);
+                
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.write(hash(xml));
+                writeString(out, cs.getName());
+                out.writeInt(cs.byteSum());
+                out.writeInt(cs.count());
+                
+                for (int i = 0 ; i < cs.count() ; i++) {
+                    writeString(out, cs.names[i]);
+                    out.writeByte((byte) cs.types[i].ordinal());
+                    out.writeInt(cs.offsets[i]);
+                    out.writeBoolean(s.isIndexed(cs.names[i]));
+                }
+                
+                out.flush();
+                out = new BinaryOutputStream(file);
+                out.writeInt((int) checked.getChecksum().getValue());
+                out.flush();
+            }
+            Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            tmp.delete();
+        }
+    }
+    
+    /**
+     * Reads a sheet from a sidecar file.
+     * @param f the sidecar file
+     * @param xml the current content of the sheet XML
+     * @return the sheet, or {@code null} if the sidecar file is missing,
+     *         unreadable or was built from different XML.
+     */
+    public static DataSheet load(File f, byte[] xml) {
+        if (!f.isFile())
+            return null;
+        
+        try {
+            byte[] data = Files.readAllBytes(f.toPath());
+            if (data.length < Integer.BYTES)
+                return null;
+            
+            int len = data.length - Integer.BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, len);
+            if ((int) crc.getValue() != BitConverter.toInt(data, ByteOrder.LITTLE_ENDIAN, len))
+                return null;
+            
+            BinaryInputStream in = new BinaryInputStream(new ByteArrayInputStream(data, 0, len));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return null;
+            byte[] hash = hash(xml);
+            byte[] built = new byte[hash.length];
+            in.readFully(built);
+            if (!Arrays.equals(built, hash))
+                return null;
+            
+            DataSheet ret = new DataSheet(readString(in));
+            int byteSum = in.readInt();
+            int count = in.readInt();
+            FieldType[] types = FieldType.values();
+            int sum = 0;
+            
+            for (int i = 0 ; i < count ; i++) {
+                String fn = readString(in);
+                int type = in.readByte();
+                int offset = in.readInt();
+                boolean indexed = in.readBoolean();
+                
+                if (type < 0 || type >= types.length || offset != sum)
+                    return null;
+                ret.add(fn, types[type]);
+                sum += types[type].size();
+                if (indexed)
+                    ret.setIndexed(fn, true);
+            }
+            
+            if (ret.compile().count() != count || ret.compile().byteSum() != byteSum)
+                return null;
+            return ret;
+        }
+        catch (IOException ex) {
+            return null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jdom2.JDOMException;
+
+/**
+ * A set of sheets that are parsed and compiled once and then shared. Sheets
+ * are indexed by their name, which is the magic that
+ * {@link ContainerOutputStream} writes into the container header, so the
+ * right sheet for a container can be picked from its first four bytes.
+ * The registry is safe to use from several threads.
+ */
+public class SheetRegistry {
+    private final Map<String, DataSheet> byMagic = new ConcurrentHashMap();
+    private final Map<File, DataSheet> byFile = new ConcurrentHashMap();
+    
+    /**
+     * Loads every sheet file ({@code *.xml}) in a directory.
+     * @param dir the sheets directory
+     * @return the registry.
+     * @throws IOException if an I/O exception occurs.
+     * @throws JDOMException if a sheet is not well-formed XML.
+     */
+    public static SheetRegistry load(File dir) throws IOException, JDOMException {
+        SheetRegistry reg = new SheetRegistry();
+        
+        File[] files = dir.listFiles();
+        if (files == null)
+            throw new IOException(dir + " is not a directory");
+        Arrays.sort(files);
+        
+        for (File f : files) {
+            if (!f.isFile() || !f.getName().endsWith(".xml"))
+                continue;
+            
+            DataSheet s = reg.open(f);
+            if (reg.byMagic.get(s.getName()) != s)
+                throw new IllegalArgumentException(f + ": another sheet named " + s.getName() + " is already registered");
+        }
+        
+        return reg;
+    }
+    
+    /**
+     * Returns the sheet stored in a file, parsing and compiling it on first use.
+     * Its name is registered as a magic unless another sheet already uses it.
+     * @param f the sheet file
+     * @return the sheet.
+     * @throws IOException if an I/O exception occurs.
+     * @throws JDOMException if the sheet is not well-formed XML.
+     */
+    public DataSheet open(File f) throws IOException, JDOMException {
+        File key = f.getAbsoluteFile();
+        DataSheet s = byFile.get(key);
+        if (s != null)
+            return s;
+        
+        s = DataSheet.open(key);
+        s.compile();
+        
+        DataSheet prev = byFile.putIfAbsent(key, s);
+        if (prev != null)
+            return prev;
+        
+        byMagic.putIfAbsent(s.getName(), s);
+        return s;
+    }
+    
+    /**
+     * Registers a sheet under its name.
+     * @param s the sheet
+     */
+    public void add(DataSheet s) {
+        s.compile();
+        byMagic.put(s.getName(), s);
+    }
+    
+    /**
+     * Returns the sheet for a magic. Both overloads fail the same way for an
+     * unknown magic, so callers never have to check for {@code null}.
+     * @param magic the magic, which is the sheet name
+     * @return the sheet.
+     * @throws IllegalArgumentException if no sheet is registered for the magic.
+     */
+    public DataSheet forMagic(String magic) {
+        DataSheet s = byMagic.get(magic);
+        if (s == null)
+            throw new IllegalArgumentException("No sheet registered for magic " + magic);
+        return s;
+    }
+    
+    /**
+     * Returns the sheet for the magic bytes of a container header.
+     * @param magic the four magic bytes
+     * @return the sheet.
+     * @throws IllegalArgumentException if no sheet is registered for the magic.
+     */
+    public DataSheet forMagic(byte[] magic) {
+        return forMagic(new String(magic, Charset.forName("UTF-8")));
+    }
+    
+    /**
+     * Picks the sheet for a container file from the magic in its header.
+     * @param container the container file
+     * @return the sheet.
+     * @throws IOException if an I/O exception occurs.
+     * @throws IllegalArgumentException if no sheet is registered for the magic.
+     */
+    public DataSheet detect(File container) throws IOException {
+        byte[] magic = new byte[4];
+        
+        try (InputStream in = new FileInputStream(container)) {
+            int n = 0;
+            while (n < magic.length) {
+                int r = in.read(magic, n, magic.length - n);
+                if (r < 0)
+                    throw new EOFException(container + " is too small to be a container");
+                n += r;
+            }
+        }
+        
+        return forMagic(magic);
+    }
+    
+    /**
+     * Returns all sheets that are registered by magic.
+     * @return the sheets.
+     */
+    public Collection<DataSheet> sheets() {
+        return Collections.unmodifiableCollection(byMagic.values());
+    }
+}
\ No newline at end of file
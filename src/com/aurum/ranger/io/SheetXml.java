@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+
+/**
+ * Reads and writes the XML form of sheets. It is kept apart from
+ * {@link DataSheet} so that JDOM is only loaded when a sheet is actually
+ * parsed or saved, and not when it comes from a {@link SheetCache}.
+ */
+final class SheetXml {
+    private SheetXml() {
+    }
+    
+    static DataSheet parse(byte[] xml) throws IOException, JDOMException {
+        Element root = new SAXBuilder().build(new ByteArrayInputStream(xml)).getRootElement();
+        
+        if (!root.getName().equals("sheet"))
+            throw new IllegalArgumentException("root element is not sheet");
+        
+        DataSheet sheet = new DataSheet(root.getAttributeValue("name"));
+        for (Element child : root.getChildren()) {
+            sheet.add(child.getAttributeValue("field"), FieldType.valueOf(child.getAttributeValue("type")));
+            if (Boolean.parseBoolean(child.getAttributeValue("index")))
+                sheet.setIndexed(child.getAttributeValue("field"), true);
+        }
+        
+        return sheet;
+    }
+    
+    static void save(File f, DataSheet s) throws IOException {
+        Element root = new Element("sheet").setAttribute("name", s.getName());
+        for (String fn : s.values().keySet()) {
+            Element e = new Element("entry").setAttribute("field", fn).setAttribute("type", s.values().get(fn).name());
+            if (s.isIndexed(fn))
+                e.setAttribute("index", "true");
+            root.addContent(e);
+        }
+        
+        try (FileOutputStream out = new FileOutputStream(f)) {
+            XMLOutputter xout = new XMLOutputter();
+            xout.setFormat(Format.getPrettyFormat());
+            xout.output(root, out);
+            out.flush();
+        }
+    }
+}
\ No newline at end of file
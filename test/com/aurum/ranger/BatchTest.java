@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger;
+
+import com.aurum.ranger.io.BinaryOutputStream;
+import com.aurum.ranger.io.Container;
+import com.aurum.ranger.io.ContainerOutputStream;
+import com.aurum.ranger.io.DataEntry;
+import com.aurum.ranger.io.DataSheet;
+import com.aurum.ranger.io.DataSheet.FieldType;
+import com.aurum.ranger.io.SheetRegistry;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Builds batches from manifests and directories, runs them and checks that a
+ * failing job is reported without stopping the others or touching its output.
+ */
+public class BatchTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+    
+    private SheetRegistry reg;
+    private File dir;
+    
+    @Before
+    public void setUp() throws IOException {
+        DataSheet s = new DataSheet("TEST");
+        s.add("id", FieldType.INT32);
+        reg = new SheetRegistry();
+        reg.add(s);
+        dir = tmp.newFolder("in");
+        
+        for (int n = 0 ; n < 3 ; n++) {
+            Container c = new Container(s);
+            for (int i = 0 ; i < n + 1 ; i++) {
+                DataEntry de = new DataEntry();
+                de.put("id", n * 10 + i);
+                c.entries().add(de);
+            }
+            try (ContainerOutputStream out = new ContainerOutputStream(new BinaryOutputStream(new FileOutputStream(new File(dir, "c" + n))))) {
+                out.write(c);
+            }
+        }
+    }
+    
+    private File manifest(String text) throws IOException {
+        File f = new File(dir, "jobs.txt");
+        Files.write(f.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return f;
+    }
+    
+    @Test
+    public void manifest() throws IOException {
+        File sheets = tmp.newFolder("sheets");
+        File out = new File(tmp.getRoot(), "abs.xml");
+        File f = manifest("# comment\n\n  -d c0 c0.xml\n-c TEST.xml c0.xml back\t\n-d c1 " + out.getAbsolutePath() + "\n");
+        Batch b = Batch.fromManifest(f, sheets, reg);
+        
+        assertEquals(3, b.jobs().size());
+        Batch.Job job = b.jobs().get(0);
+        assertTrue(job.decode);
+        assertNull(job.sheet);
+        assertEquals(new File(dir, "c0"), job.input);
+        assertEquals(new File(dir, "c0.xml"), job.output);
+        
+        job = b.jobs().get(1);
+        assertFalse(job.decode);
+        assertEquals(new File(sheets, "TEST.xml"), job.sheet);
+        assertEquals(new File(dir, "back"), job.output);
+        assertEquals(out, b.jobs().get(2).output);
+    }
+    
+    @Test
+    public void invalidManifest() throws IOException {
+        for (String line : new String[] { "-d c0", "-x c0 c0.xml", "-d a b c d" }) {
+            try {
+                Batch.fromManifest(manifest("-d c0 c0.xml\n" + line + "\n"), dir, reg);
+                fail("accepted " + line);
+            }
+            catch (IllegalArgumentException ex) {
+                assertTrue(ex.getMessage(), ex.getMessage().startsWith("Invalid manifest line 2"));
+            }
+        }
+    }
+    
+    @Test
+    public void directory() throws IOException {
+        new File(dir, "sub").mkdir();
+        new File(dir, ".hidden").createNewFile();
+        File out = new File(tmp.getRoot(), "out");
+        Batch b = Batch.fromDirectory(dir, out, reg);
+        
+        assertEquals(3, b.jobs().size());
+        for (int n = 0 ; n < 3 ; n++) {
+            Batch.Job job = b.jobs().get(n);
+            assertTrue(job.decode);
+            assertNull(job.sheet);
+            assertEquals(new File(dir, "c" + n), job.input);
+            assertEquals(new File(out, "c" + n + ".xml"), job.output);
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void notDirectory() {
+        Batch.fromDirectory(new File(dir, "c0"), dir, reg);
+    }
+    
+    @Test
+    public void run() throws IOException, InterruptedException {
+        File out = tmp.newFolder("out");
+        File broken = new File(out, "c1.xml");
+        byte[] before = "keep".getBytes(StandardCharsets.UTF_8);
+        Files.write(broken.toPath(), before);
+        Files.write(new File(dir, "c1").toPath(), new byte[] { 'B', 'A', 'D', '!' });
+        
+        Batch b = Batch.fromDirectory(dir, out, reg);
+        assertFalse(b.run(2));
+        assertEquals(2, b.converted());
+        assertEquals(1, b.failures().size());
+        assertTrue(b.failures().get(0), b.failures().get(0).startsWith(new File(dir, "c1") + ": "));
+        assertTrue(new File(out, "c0.xml").isFile());
+        assertTrue(new File(out, "c2.xml").isFile());
+        assertArrayEquals(before, Files.readAllBytes(broken.toPath()));
+        
+        Files.delete(new File(dir, "c1").toPath());
+        b = Batch.fromDirectory(dir, out, reg);
+        assertTrue(b.run(1));
+        assertEquals(2, b.converted());
+        assertTrue(b.failures().isEmpty());
+    }
+}
\ No newline at end of file
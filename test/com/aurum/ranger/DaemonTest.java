@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger;
+
+import com.aurum.ranger.io.BinaryOutputStream;
+import com.aurum.ranger.io.Container;
+import com.aurum.ranger.io.ContainerOutputStream;
+import com.aurum.ranger.io.DataEntry;
+import com.aurum.ranger.io.DataSheet;
+import com.aurum.ranger.io.DataSheet.FieldType;
+import com.aurum.ranger.io.SheetRegistry;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sends requests to a {@link Daemon} and checks that only absolute container
+ * and text paths are accepted, so no request depends on the working
+ * directory of the daemon.
+ */
+public class DaemonTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+    
+    private String home;
+    private Daemon daemon;
+    private Thread server;
+    private File bin;
+    
+    @Before
+    public void start() throws IOException {
+        home = System.getProperty("user.home");
+        System.setProperty("user.home", tmp.newFolder("home").getPath());
+        
+        DataSheet s = new DataSheet("TEST");
+        s.add("id", FieldType.INT32);
+        SheetRegistry reg = new SheetRegistry();
+        reg.add(s);
+        
+        Container c = new Container(s);
+        DataEntry de = new DataEntry();
+        de.put("id", 42);
+        c.entries().add(de);
+        bin = tmp.newFile("test.bin");
+        try (ContainerOutputStream out = new ContainerOutputStream(new BinaryOutputStream(new FileOutputStream(bin)))) {
+            out.write(c);
+        }
+        
+        daemon = new Daemon(tmp.newFolder("sheets"), reg, 0);
+        server = new Thread(() -> {
+            try {
+                daemon.serve();
+            }
+            catch (IOException ex) {
+                // closed
+            }
+        });
+        server.start();
+    }
+    
+    @After
+    public void stop() throws IOException, InterruptedException {
+        daemon.close();
+        server.join();
+        System.setProperty("user.home", home);
+    }
+    
+    @Test
+    public void absolute() throws IOException {
+        File xml = new File(tmp.getRoot(), "test.xml");
+        assertEquals("OK", daemon.execute(new String[] { "-d", bin.getAbsolutePath(), xml.getAbsolutePath() }));
+        assertTrue(xml.isFile());
+        
+        File back = new File(tmp.getRoot(), "back.bin");
+        assertNull(Daemon.send(daemon.port(), "-c", xml.getAbsolutePath(), back.getAbsolutePath()));
+        assertEquals(bin.length(), back.length());
+    }
+    
+    @Test
+    public void relative() {
+        File xml = new File(tmp.getRoot(), "test.xml");
+        assertTrue(daemon.execute(new String[] { "-d", "test.bin", xml.getAbsolutePath() }).startsWith("ERR\tPaths must be absolute"));
+        assertTrue(daemon.execute(new String[] { "-d", bin.getAbsolutePath(), "test.xml" }).startsWith("ERR\tPaths must be absolute"));
+        assertTrue(daemon.execute(new String[] { "-c", "test.xml", "out.bin" }).startsWith("ERR\tPaths must be absolute"));
+        assertFalse(xml.exists());
+    }
+    
+    @Test
+    public void invalid() {
+        assertTrue(daemon.execute(new String[] { "-x", "a", "b" }).startsWith("ERR\tInvalid request"));
+        assertTrue(daemon.execute(new String[] { "-d" }).startsWith("ERR\tInvalid request"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger;
+
+import com.aurum.ranger.io.BinaryOutputStream;
+import com.aurum.ranger.io.Container;
+import com.aurum.ranger.io.ContainerFormat;
+import com.aurum.ranger.io.ContainerOutputStream;
+import com.aurum.ranger.io.DataEntry;
+import com.aurum.ranger.io.DataSheet;
+import com.aurum.ranger.io.DataSheet.FieldType;
+import com.aurum.ranger.io.SheetRegistry;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a {@link Watcher} compiles stale XML files on start, compiles
+ * files that change while it runs and leaves the container of a broken file
+ * as it was.
+ */
+public class WatcherTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+    
+    private SheetRegistry reg;
+    private File dir, outDir, bin;
+    private byte[] xml;
+    
+    @Before
+    public void setUp() throws IOException {
+        DataSheet s = new DataSheet("TEST");
+        s.add("id", FieldType.INT32);
+        reg = new SheetRegistry();
+        reg.add(s);
+        dir = tmp.newFolder("xml");
+        outDir = tmp.newFolder("out");
+        
+        Container c = new Container(s);
+        DataEntry de = new DataEntry();
+        de.put("id", 42);
+        c.entries().add(de);
+        bin = tmp.newFile("test.bin");
+        try (ContainerOutputStream out = new ContainerOutputStream(new BinaryOutputStream(new FileOutputStream(bin)))) {
+            out.write(c);
+        }
+        
+        File f = tmp.newFile("test.xml");
+        ContainerFormat.export(bin, s, f);
+        xml = Files.readAllBytes(f.toPath());
+    }
+    
+    @Test
+    public void sync() throws IOException {
+        File a = new File(dir, "a.xml"), b = new File(dir, "b.xml");
+        Files.write(a.toPath(), xml);
+        Files.write(b.toPath(), xml);
+        Files.write(new File(dir, "c.txt").toPath(), xml);
+        File done = new File(outDir, "b");
+        Files.write(done.toPath(), new byte[] { 1 });
+        done.setLastModified(b.lastModified() + 10000);
+        
+        try (Watcher w = new Watcher(dir, outDir, reg)) {
+            assertEquals(0, w.sync());
+        }
+        assertArrayEquals(Files.readAllBytes(bin.toPath()), Files.readAllBytes(new File(outDir, "a").toPath()));
+        assertArrayEquals(new byte[] { 1 }, Files.readAllBytes(done.toPath()));
+        assertEquals(2, outDir.list().length);
+    }
+    
+    @Test
+    public void broken() throws IOException {
+        File a = new File(dir, "a.xml");
+        Files.write(a.toPath(), "<TEST>\n  <entry>".getBytes(StandardCharsets.UTF_8));
+        File out = new File(outDir, "a");
+        Files.write(out.toPath(), new byte[] { 1 });
+        out.setLastModified(a.lastModified() - 10000);
+        
+        try (Watcher w = new Watcher(dir, outDir, reg)) {
+            assertEquals(1, w.sync());
+        }
+        assertArrayEquals(new byte[] { 1 }, Files.readAllBytes(out.toPath()));
+        assertEquals(1, outDir.list().length);
+    }
+    
+    @Test
+    public void changes() throws Exception {
+        File out = new File(outDir, "a");
+        Watcher w = new Watcher(dir, outDir, reg);
+        Thread t = new Thread(() -> {
+            try {
+                w.run();
+            }
+            catch (InterruptedException ex) {
+                // stopped
+            }
+        });
+        t.start();
+        
+        try {
+            Files.write(new File(dir, "a.xml").toPath(), xml);
+            long end = System.currentTimeMillis() + 10000;
+            while (!out.isFile() && System.currentTimeMillis() < end)
+                Thread.sleep(20);
+            assertTrue(out.isFile());
+            assertArrayEquals(Files.readAllBytes(bin.toPath()), Files.readAllBytes(out.toPath()));
+        }
+        finally {
+            w.close();
+            t.join(10000);
+        }
+        assertFalse(t.isAlive());
+    }
+}
\ No newline at end of file
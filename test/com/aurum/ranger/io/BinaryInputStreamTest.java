@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.ByteOrder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Reads values through {@link BinaryInputStream} from streams that return
+ * fewer bytes than requested, and checks that truncated input ends in an
+ * {@link EOFException}.
+ */
+public class BinaryInputStreamTest {
+    /**
+     * Returns at most one byte per read, so every multi-byte value is split
+     * across reads of the underlying stream.
+     */
+    private static class Trickle extends InputStream {
+        private final InputStream in;
+        
+        Trickle(byte[] data) {
+            in = new ByteArrayInputStream(data);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            return in.read();
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in.read(b, off, Math.min(len, 1));
+        }
+    }
+    
+    private static byte[] values(ByteOrder endian) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BinaryOutputStream bos = new BinaryOutputStream(out, endian)) {
+            bos.writeByte((byte) -2);
+            bos.writeShort((short) 0x1234);
+            bos.writeInt(0xCAFEBABE);
+            bos.writeLong(0x0123456789ABCDEFL);
+            bos.writeFloat(Float.NaN);
+            bos.writeDouble(-0.0);
+            bos.writeBoolean(true);
+            bos.writeInts(new int[] { 1, -1, Integer.MIN_VALUE }, 0, 3);
+        }
+        return out.toByteArray();
+    }
+    
+    private static void check(BinaryInputStream in) throws IOException {
+        assertEquals((byte) -2, in.readByte());
+        assertEquals((short) 0x1234, in.readShort());
+        assertEquals(0xCAFEBABE, in.readInt());
+        assertEquals(0x0123456789ABCDEFL, in.readLong());
+        assertEquals(Float.NaN, in.readFloat(), 0.0f);
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(in.readDouble()));
+        assertEquals(true, in.readBoolean());
+        int[] ints = new int[3];
+        in.readInts(ints);
+        assertArrayEquals(new int[] { 1, -1, Integer.MIN_VALUE }, ints);
+        assertEquals(-1, in.read());
+    }
+    
+    @Test
+    public void shortReads() throws IOException {
+        for (ByteOrder endian : ByteOrder.values()) {
+            byte[] data = values(endian);
+            try (BinaryInputStream in = new BinaryInputStream(new Trickle(data), endian, Long.BYTES)) {
+                check(in);
+            }
+            try (BinaryInputStream in = new BinaryInputStream(new ByteArrayInputStream(data), endian)) {
+                check(in);
+            }
+        }
+    }
+    
+    @Test
+    public void readFully() throws IOException {
+        byte[] data = new byte[100];
+        for (int i = 0 ; i < data.length ; i++)
+            data[i] = (byte) i;
+        
+        byte[] b = new byte[data.length];
+        try (BinaryInputStream in = new BinaryInputStream(new Trickle(data), ByteOrder.LITTLE_ENDIAN, Long.BYTES)) {
+            in.readFully(b);
+        }
+        assertArrayEquals(data, b);
+    }
+    
+    @Test(expected = EOFException.class)
+    public void truncatedValue() throws IOException {
+        try (BinaryInputStream in = new BinaryInputStream(new Trickle(new byte[] { 1, 2, 3 }))) {
+            in.readInt();
+        }
+    }
+    
+    @Test(expected = EOFException.class)
+    public void truncatedArray() throws IOException {
+        try (BinaryInputStream in = new BinaryInputStream(new Trickle(new byte[30]), ByteOrder.LITTLE_ENDIAN, Long.BYTES)) {
+            in.readLongs(new long[4]);
+        }
+    }
+    
+    @Test(expected = EOFException.class)
+    public void truncatedFully() throws IOException {
+        try (BinaryInputStream in = new BinaryInputStream(new Trickle(new byte[10]))) {
+            in.readFully(new byte[11]);
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void bufferTooSmall() {
+        new BinaryInputStream(new ByteArrayInputStream(new byte[0]), ByteOrder.LITTLE_ENDIAN, Long.BYTES - 1);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.ByteOrder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Writes values through {@link BinaryOutputStream} with buffers of several
+ * sizes, one at a time and in bulk, and compares the bytes with those of a
+ * {@link ByteBuffer}.
+ */
+public class BinaryOutputStreamTest {
+    private static final int[] SIZES = { 8, 9, 13, 64, BinaryOutputStream.DEFAULT_BUFFER_SIZE };
+    
+    private static java.nio.ByteOrder order(ByteOrder endian) {
+        return endian == ByteOrder.LITTLE_ENDIAN ? java.nio.ByteOrder.LITTLE_ENDIAN : java.nio.ByteOrder.BIG_ENDIAN;
+    }
+    
+    @Test
+    public void values() throws IOException {
+        Random rnd = new Random(1);
+        short[] shorts = new short[37];
+        int[] ints = new int[29];
+        long[] longs = new long[23];
+        float[] floats = new float[19];
+        double[] doubles = new double[17];
+        boolean[] bools = new boolean[31];
+        for (int i = 0 ; i < 37 ; i++) {
+            if (i < shorts.length) shorts[i] = (short) rnd.nextInt();
+            if (i < ints.length) ints[i] = rnd.nextInt();
+            if (i < longs.length) longs[i] = rnd.nextLong();
+            if (i < floats.length) floats[i] = rnd.nextFloat() - 0.5f;
+            if (i < doubles.length) doubles[i] = rnd.nextGaussian();
+            if (i < bools.length) bools[i] = rnd.nextBoolean();
+        }
+        
+        for (ByteOrder endian : ByteOrder.values()) {
+            ByteBuffer ref = ByteBuffer.allocate(1000).order(order(endian));
+            ref.put((byte) 7);
+            for (short v : shorts) ref.putShort(v);
+            for (int v : ints) ref.putInt(v);
+            for (long v : longs) ref.putLong(v);
+            for (float v : floats) ref.putFloat(v);
+            for (double v : doubles) ref.putDouble(v);
+            for (boolean v : bools) ref.put((byte) (v ? 1 : 0));
+            ref.putShort((short) -2).putInt(-3).putLong(-4L).putFloat(Float.NaN).putDouble(-0.0).putChar('é').put((byte) 1);
+            byte[] expected = new byte[ref.position()];
+            ref.flip();
+            ref.get(expected);
+            
+            for (int size : SIZES) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try (BinaryOutputStream bos = new BinaryOutputStream(out, endian, size)) {
+                    bos.writeByte((byte) 7);
+                    bos.writeShorts(shorts, 0, shorts.length);
+                    bos.writeInts(ints, 0, 10);
+                    bos.writeInts(ints, 10, ints.length - 10);
+                    bos.writeLongs(longs, 0, longs.length);
+                    bos.writeFloats(floats, 0, floats.length);
+                    bos.writeDoubles(doubles, 0, doubles.length);
+                    bos.writeBooleans(bools, 0, bools.length);
+                    bos.writeShort((short) -2);
+                    bos.writeInt(-3);
+                    bos.writeLong(-4L);
+                    bos.writeFloat(Float.NaN);
+                    bos.writeDouble(-0.0);
+                    bos.writeCharacter('é');
+                    bos.writeBoolean(true);
+                }
+                assertArrayEquals(endian + ", buffer " + size, expected, out.toByteArray());
+            }
+        }
+    }
+    
+    @Test
+    public void buffering() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryOutputStream bos = new BinaryOutputStream(out, ByteOrder.LITTLE_ENDIAN, 16);
+        
+        bos.writeLong(1);
+        bos.write(new byte[7]);
+        assertEquals(0, out.size());
+        bos.writeShort((short) 1);
+        assertEquals(15, out.size());
+        
+        byte[] big = new byte[40];
+        for (int i = 0 ; i < big.length ; i++)
+            big[i] = (byte) i;
+        bos.write(big, 0, big.length);
+        assertEquals(57, out.size());
+        
+        bos.write(5);
+        bos.flush();
+        assertEquals(58, out.size());
+        bos.close();
+        
+        byte[] data = out.toByteArray();
+        assertEquals(1, data[15]);
+        assertEquals(39, data[56]);
+        assertEquals(5, data[57]);
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void bounds() throws IOException {
+        try (BinaryOutputStream bos = new BinaryOutputStream(new ByteArrayOutputStream())) {
+            bos.writeInts(new int[4], 2, 3);
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void bufferTooSmall() {
+        new BinaryOutputStream(new ByteArrayOutputStream(), ByteOrder.LITTLE_ENDIAN, Long.BYTES - 1);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks the codecs generated by {@link CodecGenerator} against the
+ * interpreted decoding and encoding of {@link CompiledSheet}.
+ */
+public class ColumnCodecTest {
+    private static final FieldType[] TYPES = FieldType.values();
+    
+    private static CompiledSheet sheet(FieldType... types) {
+        DataSheet s = new DataSheet("TEST");
+        for (int i = 0 ; i < types.length ; i++)
+            s.add("f" + i, types[i]);
+        return s.compile();
+    }
+    
+    private static CompiledSheet random(Random rnd, int fields) {
+        FieldType[] types = new FieldType[fields];
+        for (int i = 0 ; i < fields ; i++)
+            types[i] = TYPES[rnd.nextInt(TYPES.length)];
+        return sheet(types);
+    }
+    
+    /**
+     * Fills entries with random bytes. Every value is passed through
+     * {@code CompiledSheet.put} once, so booleans are 0 or 1 and NaNs are
+     * canonical, as they are after a round trip through boxed values.
+     */
+    private static byte[] entries(CompiledSheet cs, int offset, int rows, Random rnd) {
+        byte[] data = new byte[offset + rows * cs.byteSum()];
+        rnd.nextBytes(data);
+        
+        for (int r = 0 ; r < rows ; r++) {
+            int pos = offset + r * cs.byteSum();
+            for (int j = 0 ; j < cs.count() ; j++)
+                cs.put(data, pos, j, cs.get(data, pos, j));
+        }
+        return data;
+    }
+    
+    /**
+     * Decodes the entries with the generated codec into columns at a row
+     * offset, compares every value with {@code CompiledSheet.get} and the
+     * encoded columns with {@code CompiledSheet.put}.
+     */
+    private static void check(CompiledSheet cs, byte[] data, int offset, int rows) {
+        ColumnCodec codec = CodecGenerator.generate(cs);
+        assertNotNull(codec);
+        
+        int size = cs.byteSum();
+        int first = 3;
+        ColumnStore cols = new ColumnStore(cs, first + rows);
+        codec.decode(data, offset, cols.columns, first, first + rows);
+        byte[] expected = new byte[rows * size];
+        
+        for (int r = 0 ; r < rows ; r++) {
+            for (int j = 0 ; j < cs.count() ; j++) {
+                Object val = cs.get(data, offset + r * size, j);
+                assertEquals("entry " + r + ", field " + j + " (" + cs.types[j] + ")", val, Array.get(cols.columns[j], first + r));
+                cs.put(expected, r * size, j, val);
+            }
+        }
+        
+        byte[] actual = new byte[rows * size + 5];
+        codec.encode(cols.columns, first, first + rows, actual, 5);
+        byte[] encoded = new byte[rows * size];
+        System.arraycopy(actual, 5, encoded, 0, encoded.length);
+        assertArrayEquals(expected, encoded);
+    }
+    
+    private static void check(CompiledSheet cs, int rows, Random rnd) {
+        int offset = rnd.nextInt(8);
+        check(cs, entries(cs, offset, rows, rnd), offset, rows);
+    }
+    
+    @Test
+    public void randomLayouts() {
+        Random rnd = new Random(1);
+        for (int i = 0 ; i < 100 ; i++)
+            check(random(rnd, 1 + rnd.nextInt(60)), rnd.nextInt(100), rnd);
+    }
+    
+    @Test
+    public void emptySheet() {
+        Random rnd = new Random(2);
+        check(sheet(), 10, rnd);
+    }
+    
+    @Test
+    public void singleField() {
+        Random rnd = new Random(3);
+        for (FieldType t : TYPES)
+            check(sheet(t), 50, rnd);
+    }
+    
+    @Test
+    public void allTypes() {
+        Random rnd = new Random(4);
+        FieldType[] reversed = new FieldType[TYPES.length];
+        for (int i = 0 ; i < TYPES.length ; i++)
+            reversed[i] = TYPES[TYPES.length - 1 - i];
+        
+        check(sheet(TYPES), 50, rnd);
+        check(sheet(reversed), 50, rnd);
+    }
+    
+    @Test
+    public void maxFields() {
+        Random rnd = new Random(5);
+        check(random(rnd, 200), 20, rnd);
+    }
+    
+    @Test
+    public void tooManyFields() {
+        assertNull(CodecGenerator.generate(random(new Random(6), 201)));
+    }
+    
+    @Test
+    public void specialValues() {
+        CompiledSheet cs = sheet(TYPES);
+        Object[][] rows = {
+            { Byte.MIN_VALUE, Short.MIN_VALUE, Integer.MIN_VALUE, Long.MIN_VALUE, Float.NaN, Double.NaN, false },
+            { Byte.MAX_VALUE, Short.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, Float.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, true },
+            { (byte) -1, (short) -1, -1, -1L, Float.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, false },
+            { (byte) 0, (short) 0, 0, 0L, -0.0f, -0.0, true },
+            { (byte) 1, (short) 1, 1, 1L, Float.MIN_VALUE, Double.MIN_VALUE, false },
+            { (byte) 2, (short) 2, 2, 2L, Float.MAX_VALUE, Double.MAX_VALUE, true }
+        };
+        
+        byte[] data = new byte[rows.length * cs.byteSum()];
+        for (int r = 0 ; r < rows.length ; r++) {
+            for (int j = 0 ; j < cs.count() ; j++)
+                cs.put(data, r * cs.byteSum(), j, rows[r][j]);
+        }
+        check(cs, data, 0, rows.length);
+    }
+    
+    /**
+     * Reads a container of random entries into every storage, sequentially and
+     * in parallel, and checks that writing it again gives the same bytes.
+     * Only columnar storage uses the codec, the others are the reference.
+     */
+    @Test
+    public void containerRoundTrip() throws IOException {
+        Random rnd = new Random(7);
+        
+        for (int i = 0 ; i < 20 ; i++) {
+            DataSheet s = new DataSheet("TEST");
+            int fields = i == 0 ? 0 : 1 + rnd.nextInt(40);
+            for (int j = 0 ; j < fields ; j++)
+                s.add("f" + j, TYPES[rnd.nextInt(TYPES.length)]);
+            
+            CompiledSheet cs = s.compile();
+            int count = rnd.nextInt(20000);
+            byte[] data = entries(cs, ContainerPatcher.HEADER_SIZE, count, rnd);
+            
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            try (ContainerOutputStream out = new ContainerOutputStream(new BinaryOutputStream(header))) {
+                out.writeHeader(s, count);
+            }
+            System.arraycopy(header.toByteArray(), 0, data, 0, ContainerPatcher.HEADER_SIZE);
+            
+            for (Container.Storage storage : Container.Storage.values()) {
+                for (int parallel = 0 ; parallel < 2 ; parallel++) {
+                    Container c = new Container(s, storage);
+                    try (ContainerInputStream in = new ContainerInputStream(new BinaryInputStream(new ByteArrayInputStream(data)))) {
+                        if (parallel == 1)
+                            in.readParallel(c);
+                        else
+                            in.read(c);
+                    }
+                    
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    try (ContainerOutputStream cos = new ContainerOutputStream(new BinaryOutputStream(out))) {
+                        cos.write(c);
+                    }
+                    assertArrayEquals(storage + (parallel == 1 ? " parallel" : ""), data, out.toByteArray());
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks the layout that {@link DataSheet#compile} derives from a sheet and
+ * that it is rebuilt whenever the sheet changes.
+ */
+public class CompiledSheetTest {
+    private static DataSheet sheet() {
+        DataSheet s = new DataSheet("TEST");
+        s.add("flag", FieldType.BOOLEAN);
+        s.add("id", FieldType.INT64);
+        s.add("small", FieldType.INT8);
+        s.add("rate", FieldType.FLOAT32);
+        return s;
+    }
+    
+    @Test
+    public void layout() {
+        CompiledSheet cs = sheet().compile();
+        assertEquals("TEST", cs.getName());
+        assertEquals(4, cs.count());
+        assertEquals(14, cs.byteSum());
+        assertArrayEquals(new String[] { "flag", "id", "small", "rate" }, cs.names);
+        assertArrayEquals(new int[] { 0, 1, 9, 10 }, cs.offsets);
+        assertEquals(FieldType.INT64, cs.type(1));
+        assertEquals(9, cs.offset(2));
+        assertEquals(3, cs.indexOf("rate"));
+        assertEquals(-1, cs.indexOf("missing"));
+    }
+    
+    @Test
+    public void internedNames() {
+        CompiledSheet cs = sheet().compile();
+        assertSame(cs.name(1), new String("id").intern());
+    }
+    
+    @Test
+    public void getAndPut() {
+        CompiledSheet cs = sheet().compile();
+        Object[] vals = { true, Long.MIN_VALUE, (byte) -1, Float.NaN };
+        byte[] data = new byte[5 + cs.byteSum()];
+        
+        for (int j = 0 ; j < cs.count() ; j++)
+            cs.put(data, 5, j, vals[j]);
+        for (int j = 0 ; j < cs.count() ; j++)
+            assertEquals(vals[j], cs.get(data, 5, j));
+        
+        cs.parse(data, 5, 1, "42");
+        cs.parse(data, 5, 3, "-Infinity");
+        assertEquals(42L, cs.get(data, 5, 1));
+        assertEquals(Float.NEGATIVE_INFINITY, cs.get(data, 5, 3));
+        assertEquals((byte) -1, cs.get(data, 5, 2));
+    }
+    
+    @Test
+    public void recompiled() {
+        DataSheet s = sheet();
+        CompiledSheet cs = s.compile();
+        assertSame(cs, s.compile());
+        
+        s.add("extra", FieldType.INT16);
+        CompiledSheet added = s.compile();
+        assertNotSame(cs, added);
+        assertEquals(16, added.byteSum());
+        
+        s.delete("id");
+        assertEquals(8, s.compile().byteSum());
+        assertEquals(-1, s.compile().indexOf("id"));
+        
+        s.setName("OTHR");
+        assertEquals("OTHR", s.compile().getName());
+        
+        s.values().put("late", FieldType.FLOAT64);
+        assertEquals(8, s.compile().byteSum());
+        assertEquals(16, s.recompile().byteSum());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares containers with {@link ContainerDiff} and checks the reported
+ * fields for changed, added and removed entries.
+ */
+public class ContainerDiffTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+    
+    private static DataSheet sheet() {
+        DataSheet s = new DataSheet("TEST");
+        s.add("id", FieldType.INT32);
+        s.add("rate", FieldType.FLOAT32);
+        s.add("flag", FieldType.BOOLEAN);
+        return s;
+    }
+    
+    private static Container container(DataSheet s, int count) {
+        Container c = new Container(s);
+        for (int i = 0 ; i < count ; i++) {
+            DataEntry de = new DataEntry();
+            de.put("id", i);
+            de.put("rate", i / 4.0f);
+            de.put("flag", false);
+            c.entries().add(de);
+        }
+        return c;
+    }
+    
+    private File write(Container c) throws IOException {
+        File f = tmp.newFile();
+        try (ContainerOutputStream out = new ContainerOutputStream(new BinaryOutputStream(new FileOutputStream(f)))) {
+            out.write(c);
+        }
+        return f;
+    }
+    
+    private static void check(ContainerDiff.Change c, int entry, String field, Object oldValue, Object newValue) {
+        assertEquals(entry, c.entry);
+        assertEquals(field, c.field);
+        assertEquals(oldValue, c.oldValue);
+        assertEquals(newValue, c.newValue);
+    }
+    
+    @Test
+    public void equal() throws IOException {
+        DataSheet s = sheet();
+        File a = write(container(s, 50)), b = write(container(s, 50));
+        assertTrue(ContainerDiff.compare(a, b, s).isEmpty());
+        assertEquals(0, ContainerDiff.compare(a, b, s, c -> {}));
+    }
+    
+    @Test
+    public void changed() throws IOException {
+        DataSheet s = sheet();
+        Container c = container(s, 50);
+        File a = write(c);
+        c.entries().get(0).put("flag", true);
+        c.entries().get(17).put("id", -1);
+        c.entries().get(17).put("rate", Float.NaN);
+        c.entries().get(49).put("rate", -0.0f);
+        File b = write(c);
+        
+        List<ContainerDiff.Change> changes = ContainerDiff.compare(a, b, s);
+        assertEquals(4, changes.size());
+        check(changes.get(0), 0, "flag", false, true);
+        check(changes.get(1), 17, "id", 17, -1);
+        check(changes.get(2), 17, "rate", 4.25f, Float.NaN);
+        check(changes.get(3), 49, "rate", 12.25f, -0.0f);
+        assertEquals(3, ContainerDiff.compare(a, b, s, ch -> {}));
+    }
+    
+    @Test
+    public void resized() throws IOException {
+        DataSheet s = sheet();
+        File a = write(container(s, 3)), b = write(container(s, 5));
+        
+        List<ContainerDiff.Change> added = ContainerDiff.compare(a, b, s);
+        assertEquals(6, added.size());
+        check(added.get(0), 3, "id", null, 3);
+        check(added.get(5), 4, "flag", null, false);
+        
+        List<ContainerDiff.Change> removed = ContainerDiff.compare(b, a, s);
+        assertEquals(6, removed.size());
+        check(removed.get(1), 3, "rate", 0.75f, null);
+        assertEquals(2, ContainerDiff.compare(b, a, s, ch -> {}));
+    }
+    
+    @Test
+    public void mismatch() {
+        ByteBuffer a = ByteBuffer.allocate(40), b = ByteBuffer.allocate(40);
+        assertEquals(-1, ContainerDiff.mismatch(a, b, 0, 40));
+        
+        for (int i = 0 ; i < 40 ; i++) {
+            b.put(i, (byte) 1);
+            assertEquals(i, ContainerDiff.mismatch(a, b, 0, 40));
+            assertEquals(i, ContainerDiff.mismatch(a, b, i, i + 1));
+            assertEquals(-1, ContainerDiff.mismatch(a, b, i + 1, 40));
+            assertEquals(-1, ContainerDiff.mismatch(a, b, 0, i));
+            b.put(i, (byte) 0);
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void otherSheet() throws IOException {
+        DataSheet s = sheet();
+        File a = write(container(s, 3));
+        DataSheet t = new DataSheet("OTHR");
+        t.add("id", FieldType.INT32);
+        t.add("rate", FieldType.FLOAT32);
+        t.add("flag", FieldType.BOOLEAN);
+        File b = write(container(t, 3));
+        ContainerDiff.compare(a, b, s);
+    }
+}
\ No newline at end of file
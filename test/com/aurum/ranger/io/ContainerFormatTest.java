@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Converts a container with extreme values to every text format and back and
+ * checks that no value changes, including NaN, the infinities, negative zero
+ * and the smallest and largest integers. Also checks how the CSV and JSON
+ * Lines readers handle reordered, unknown and missing fields.
+ */
+public class ContainerFormatTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+    
+    private static final Object[][] ROWS = {
+        { (byte) 0, (short) 0, 0, 0L, 0.0f, 0.0, false },
+        { Byte.MIN_VALUE, Short.MIN_VALUE, Integer.MIN_VALUE, Long.MIN_VALUE, Float.NaN, Double.NaN, true },
+        { Byte.MAX_VALUE, Short.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, Float.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, false },
+        { (byte) -1, (short) -1, -1, -1L, Float.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, true },
+        { (byte) 1, (short) 1, 1, 1L, -0.0f, -0.0, false },
+        { (byte) 2, (short) 2, 2, 2L, Float.MIN_VALUE, Double.MIN_VALUE, true },
+        { (byte) 3, (short) 3, 3, 3L, Float.MAX_VALUE, Double.MAX_VALUE, false },
+        { (byte) 4, (short) 4, 4, 4L, 0.1f, 0.1, true }
+    };
+    
+    private static DataSheet sheet() {
+        DataSheet s = new DataSheet("TEST");
+        for (FieldType t : FieldType.values())
+            s.add(t.name().toLowerCase(), t);
+        return s;
+    }
+    
+    private File container(DataSheet s) throws IOException {
+        CompiledSheet cs = s.compile();
+        Container c = new Container(s);
+        
+        for (Object[] row : ROWS) {
+            DataEntry de = new DataEntry();
+            for (int j = 0 ; j < cs.count() ; j++)
+                de.put(cs.names[j], row[j]);
+            c.entries().add(de);
+        }
+        
+        File f = tmp.newFile("test");
+        try (ContainerOutputStream out = new ContainerOutputStream(new BinaryOutputStream(new FileOutputStream(f)))) {
+            out.write(c);
+        }
+        return f;
+    }
+    
+    private static Container read(File f, DataSheet s) throws IOException {
+        Container c = new Container(s);
+        try (ContainerInputStream in = new ContainerInputStream(new BinaryInputStream(new FileInputStream(f)))) {
+            in.read(c);
+        }
+        return c;
+    }
+    
+    private void roundTrip(String ext) throws IOException {
+        DataSheet s = sheet();
+        File bin = container(s);
+        File text = new File(tmp.getRoot(), "test" + ext);
+        File back = new File(tmp.getRoot(), "back");
+        
+        ContainerFormat.export(bin, s, text);
+        ContainerFormat.compile(text, s, back);
+        
+        Container a = read(bin, s), b = read(back, s);
+        assertEquals(ROWS.length, b.entries().size());
+        for (int i = 0 ; i < ROWS.length ; i++)
+            assertEquals("entry " + i, a.entries().get(i), b.entries().get(i));
+        assertArrayEquals(Files.readAllBytes(bin.toPath()), Files.readAllBytes(back.toPath()));
+    }
+    
+    @Test
+    public void csv() throws IOException {
+        roundTrip(".csv");
+    }
+    
+    @Test
+    public void jsonl() throws IOException {
+        roundTrip(".jsonl");
+    }
+    
+    @Test
+    public void xml() throws IOException {
+        roundTrip(".xml");
+    }
+    
+    @Test
+    public void failedCompileKeepsContainer() throws IOException {
+        DataSheet s = sheet();
+        File bin = container(s);
+        byte[] before = Files.readAllBytes(bin.toPath());
+        File text = new File(tmp.getRoot(), "broken.xml");
+        Files.write(text.toPath(), "<TEST>\n  <entry>\n    <int8 value=\"1\" />".getBytes(StandardCharsets.UTF_8));
+        
+        try {
+            ContainerFormat.compile(text, s, bin);
+            fail("compiled a truncated XML file");
+        }
+        catch (IOException ex) {
+            // expected
+        }
+        
+        assertArrayEquals(before, Files.readAllBytes(bin.toPath()));
+        assertEquals(2, tmp.getRoot().list().length);
+    }
+    
+    private static DataSheet small() {
+        DataSheet s = new DataSheet("TEST");
+        s.add("id", FieldType.INT32);
+        s.add("rate", FieldType.FLOAT32);
+        s.add("flag", FieldType.BOOLEAN);
+        return s;
+    }
+    
+    private Container compile(String name, String text, DataSheet s) throws IOException {
+        File f = new File(tmp.getRoot(), name);
+        File bin = new File(tmp.getRoot(), "bin");
+        Files.write(f.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        ContainerFormat.compile(f, s, bin);
+        return read(bin, s);
+    }
+    
+    private void rejects(String name, String text, DataSheet s) throws IOException {
+        try {
+            compile(name, text, s);
+            fail("compiled " + text);
+        }
+        catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+    
+    private static void check(Container c, int i, int id, float rate, boolean flag) {
+        assertEquals(id, c.entries().get(i).get("id"));
+        assertEquals(rate, c.entries().get(i).get("rate"));
+        assertEquals(flag, c.entries().get(i).get("flag"));
+    }
+    
+    @Test
+    public void formatOf() {
+        assertSame(ContainerFormat.CSV, ContainerFormat.of(new File("a.CSV")));
+        assertSame(ContainerFormat.JSONL, ContainerFormat.of(new File("a.jsonl")));
+        assertSame(ContainerFormat.JSONL, ContainerFormat.of(new File("a.ndjson")));
+        assertSame(ContainerFormat.XML, ContainerFormat.of(new File("a.xml")));
+        assertSame(ContainerFormat.XML, ContainerFormat.of(new File("a")));
+    }
+    
+    @Test
+    public void csvColumns() throws IOException {
+        Container c = compile("a.csv", "flag,extra,rate,id,id\ntrue,x,1.5,7,8\n\nfalse,,NaN,-1,0\n", small());
+        assertEquals(2, c.entries().size());
+        check(c, 0, 7, 1.5f, true);
+        check(c, 1, -1, Float.NaN, false);
+    }
+    
+    @Test
+    public void csvErrors() throws IOException {
+        DataSheet s = small();
+        rejects("a.csv", "", s);
+        rejects("a.csv", "id,rate\n1,2\n", s);
+        rejects("a.csv", "id,rate,flag\n1,2\n", s);
+        rejects("a.csv", "id,rate,flag\n1,2,true,4\n", s);
+        rejects("a.csv", "id,rate,flag\nx,2,true\n", s);
+    }
+    
+    @Test
+    public void jsonlFields() throws IOException {
+        String text = "{\"flag\":true,\"n\\u0061me\":\"a\\\"b\",\"rate\":-0.0,\"id\":2147483647}\n"
+                + "\n"
+                + "{ \"id\" : -5 , \"rate\" : \"Infinity\" , \"flag\" : false }\n";
+        Container c = compile("a.jsonl", text, small());
+        assertEquals(2, c.entries().size());
+        check(c, 0, Integer.MAX_VALUE, -0.0f, true);
+        check(c, 1, -5, Float.POSITIVE_INFINITY, false);
+    }
+    
+    @Test
+    public void jsonlErrors() throws IOException {
+        DataSheet s = small();
+        rejects("a.jsonl", "{\"id\":1,\"rate\":2}\n", s);
+        rejects("a.jsonl", "{\"id\":1,\"rate\":2,\"flag\":null}\n", s);
+        rejects("a.jsonl", "{\"id\":1,\"rate\":2,\"flag\":true} x\n", s);
+        rejects("a.jsonl", "{\"id\":[1],\"rate\":2,\"flag\":true}\n", s);
+        rejects("a.jsonl", "{\"id\":1,\"rate\":2,\"flag\":true\n", s);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void csvNamesNoSheet() throws IOException {
+        ContainerFormat.CSV.reader(new File(tmp.getRoot(), "a.csv"), new SheetRegistry());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Looks up entries through {@link FieldIndex} and checks that the sidecar
+ * files of {@link ContainerIndex} are reused while the container is
+ * unchanged and ignored once it changes.
+ */
+public class ContainerIndexTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+    
+    private static DataSheet sheet() {
+        DataSheet s = new DataSheet("TEST");
+        s.add("id", FieldType.INT32);
+        s.add("group", FieldType.INT8);
+        s.add("rate", FieldType.FLOAT32);
+        s.add("flag", FieldType.BOOLEAN);
+        s.setIndexed("group", true);
+        s.setIndexed("rate", true);
+        s.setIndexed("flag", true);
+        return s;
+    }
+    
+    private static Container container(DataSheet s, int count) {
+        Container c = new Container(s);
+        for (int i = 0 ; i < count ; i++) {
+            DataEntry de = new DataEntry();
+            de.put("id", i);
+            de.put("group", (byte) (i % 7 - 3));
+            de.put("rate", i % 5 == 0 ? Float.NaN : (i % 3) / 2.0f);
+            de.put("flag", i % 2 == 0);
+            c.entries().add(de);
+        }
+        return c;
+    }
+    
+    private File write(Container c, File f) throws IOException {
+        try (ContainerOutputStream out = new ContainerOutputStream(new BinaryOutputStream(new FileOutputStream(f)))) {
+            out.write(c);
+        }
+        return f;
+    }
+    
+    private static int[] expected(int count, IntPredicate match) {
+        return IntStream.range(0, count).filter(match).toArray();
+    }
+    
+    private static void check(ContainerIndex idx, int count) {
+        FieldIndex group = idx.get("group");
+        assertEquals(count, group.size());
+        for (int g = -3 ; g <= 3 ; g++) {
+            final int v = g + 3;
+            int[] rows = expected(count, i -> i % 7 == v);
+            assertArrayEquals(rows, group.lookup((byte) g));
+            assertEquals(rows.length, group.count(FieldIndex.key(FieldType.INT8, (byte) g)));
+            assertEquals(rows.length == 0 ? -1 : rows[0], group.first(FieldIndex.parseKey(FieldType.INT8, Integer.toString(g))));
+        }
+        assertEquals(0, group.lookup((byte) 4).length);
+        assertEquals(-1, group.first(4));
+        
+        FieldIndex rate = idx.get("rate");
+        assertArrayEquals(expected(count, i -> i % 5 == 0), rate.lookup(Float.NaN));
+        assertArrayEquals(expected(count, i -> i % 5 != 0 && i % 3 == 1), rate.lookup(0.5f));
+        assertArrayEquals(rate.lookup(0.5f), rate.lookup(FieldIndex.parseKey(FieldType.FLOAT32, "0.5")));
+        
+        assertArrayEquals(expected(count, i -> i % 2 == 1), idx.get("flag").lookup(false));
+    }
+    
+    @Test
+    public void lookup() {
+        DataSheet s = sheet();
+        for (Container.Storage storage : Container.Storage.values()) {
+            Container c = new Container(s, storage);
+            c.entries().addAll(container(s, 1000).entries());
+            check(ContainerIndex.build(c), 1000);
+        }
+    }
+    
+    @Test
+    public void empty() {
+        ContainerIndex idx = ContainerIndex.build(container(sheet(), 0));
+        assertEquals(0, idx.get("group").size());
+        assertEquals(0, idx.get("group").lookup((byte) 0).length);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void notIndexed() {
+        ContainerIndex.build(container(sheet(), 1)).get("id");
+    }
+    
+    @Test
+    public void sidecar() throws IOException {
+        DataSheet s = sheet();
+        File f = write(container(s, 500), tmp.newFile("test"));
+        File idx = ContainerIndex.sidecar(f);
+        
+        assertFalse(idx.exists());
+        check(ContainerIndex.open(f, s), 500);
+        assertTrue(idx.isFile());
+        assertNotNull(ContainerIndex.load(idx, f, s));
+        check(ContainerIndex.load(idx, f, s), 500);
+        
+        DataSheet other = sheet();
+        other.setIndexed("id", true);
+        assertNull(ContainerIndex.load(idx, f, other));
+    }
+    
+    @Test
+    public void staleSidecar() throws IOException {
+        DataSheet s = sheet();
+        File f = write(container(s, 500), tmp.newFile("test"));
+        File idx = ContainerIndex.sidecar(f);
+        ContainerIndex.open(f, s);
+        
+        f.setLastModified(f.lastModified() - 10000);
+        assertNull(ContainerIndex.load(idx, f, s));
+        ContainerIndex.open(f, s);
+        assertNotNull(ContainerIndex.load(idx, f, s));
+        
+        long time = f.lastModified();
+        write(container(s, 300), f);
+        f.setLastModified(time);
+        assertNull(ContainerIndex.load(idx, f, s));
+        check(ContainerIndex.open(f, s), 300);
+        assertNotNull(ContainerIndex.load(idx, f, s));
+    }
+    
+    @Test
+    public void corruptSidecar() throws IOException {
+        DataSheet s = sheet();
+        File f = write(container(s, 500), tmp.newFile("test"));
+        File idx = ContainerIndex.sidecar(f);
+        ContainerIndex.open(f, s);
+        
+        try (RandomAccessFile raf = new RandomAccessFile(idx, "rw")) {
+            raf.seek(raf.length() / 2);
+            int b = raf.read();
+            raf.seek(raf.length() / 2);
+            raf.write(b ^ 0x10);
+        }
+        assertNull(ContainerIndex.load(idx, f, s));
+        check(ContainerIndex.open(f, s), 500);
+    }
+    
+    @Test
+    public void patchDropsSidecar() throws IOException {
+        DataSheet s = sheet();
+        File f = write(container(s, 50), tmp.newFile("test"));
+        File idx = ContainerIndex.sidecar(f);
+        ContainerIndex.open(f, s);
+        
+        try (ContainerPatcher p = ContainerPatcher.open(f, s)) {
+            p.set(0, "group", (byte) 100);
+        }
+        assertFalse(idx.exists());
+        assertArrayEquals(new int[] { 0 }, ContainerIndex.open(f, s).get("group").lookup((byte) 100));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Patches single values with {@link ContainerPatcher} and checks that
+ * entries out of range, unknown fields and values of the wrong type leave
+ * the container unchanged.
+ */
+public class ContainerPatcherTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+    
+    private static DataSheet sheet() {
+        DataSheet s = new DataSheet("TEST");
+        s.add("id", FieldType.INT16);
+        s.add("value", FieldType.FLOAT32);
+        return s;
+    }
+    
+    private File container(DataSheet s, int count) throws IOException {
+        Container c = new Container(s);
+        for (int i = 0 ; i < count ; i++) {
+            DataEntry de = new DataEntry();
+            de.put("id", (short) i);
+            de.put("value", i / 2.0f);
+            c.entries().add(de);
+        }
+        
+        File f = tmp.newFile();
+        try (ContainerOutputStream out = new ContainerOutputStream(new BinaryOutputStream(new FileOutputStream(f)))) {
+            out.write(c);
+        }
+        return f;
+    }
+    
+    private static Container read(File f, DataSheet s) throws IOException {
+        Container c = new Container(s);
+        try (ContainerInputStream in = new ContainerInputStream(new BinaryInputStream(new FileInputStream(f)))) {
+            in.read(c);
+        }
+        return c;
+    }
+    
+    private static void fails(File f, DataSheet s, Class<? extends Exception> type, Patch patch) throws IOException {
+        byte[] before = Files.readAllBytes(f.toPath());
+        try (ContainerPatcher p = ContainerPatcher.open(f, s)) {
+            patch.apply(p);
+            fail("expected " + type.getSimpleName());
+        }
+        catch (Exception ex) {
+            if (!type.isInstance(ex))
+                throw new AssertionError("expected " + type.getSimpleName() + ", got " + ex, ex);
+        }
+        assertArrayEquals(before, Files.readAllBytes(f.toPath()));
+    }
+    
+    private interface Patch {
+        void apply(ContainerPatcher p) throws IOException;
+    }
+    
+    @Test
+    public void patches() throws IOException {
+        DataSheet s = sheet();
+        File f = container(s, 4);
+        
+        try (ContainerPatcher p = ContainerPatcher.open(f, s)) {
+            assertEquals(4, p.size());
+            p.set(1, "id", (short) 100);
+            p.parse(2, "value", "-1.5");
+            p.parse(new int[] { 0, 3 }, new String[] { "id", "value" }, new String[] { "-7", "NaN" });
+        }
+        
+        Container c = read(f, s);
+        assertEquals((short) -7, c.entries().get(0).get("id"));
+        assertEquals((short) 100, c.entries().get(1).get("id"));
+        assertEquals(-1.5f, c.entries().get(2).get("value"));
+        assertEquals(Float.NaN, c.entries().get(3).get("value"));
+        assertEquals(0.5f, c.entries().get(1).get("value"));
+    }
+    
+    @Test
+    public void bounds() throws IOException {
+        DataSheet s = sheet();
+        File f = container(s, 4);
+        fails(f, s, IndexOutOfBoundsException.class, p -> p.set(4, "id", (short) 1));
+        fails(f, s, IndexOutOfBoundsException.class, p -> p.parse(-1, "id", "1"));
+        fails(f, s, IndexOutOfBoundsException.class, p -> p.parse(new int[] { 0, 4 }, new String[] { "id", "id" }, new String[] { "1", "2" }));
+    }
+    
+    @Test
+    public void types() throws IOException {
+        DataSheet s = sheet();
+        File f = container(s, 4);
+        fails(f, s, ClassCastException.class, p -> p.set(0, "id", 1));
+        fails(f, s, ClassCastException.class, p -> p.set(0, "value", "1"));
+        fails(f, s, NumberFormatException.class, p -> p.parse(0, "id", "70000"));
+        fails(f, s, NumberFormatException.class, p -> p.parse(new int[] { 0, 1 }, new String[] { "id", "value" }, new String[] { "1", "x" }));
+    }
+    
+    @Test
+    public void unknownField() throws IOException {
+        DataSheet s = sheet();
+        File f = container(s, 4);
+        fails(f, s, IllegalArgumentException.class, p -> p.set(0, "missing", (short) 1));
+        fails(f, s, IllegalArgumentException.class, p -> p.parse(new int[] { 0 }, new String[] { "id" }, new String[0]));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void otherMagic() throws IOException {
+        File f = container(sheet(), 1);
+        DataSheet s = new DataSheet("OTHR");
+        s.add("id", FieldType.INT16);
+        s.add("value", FieldType.FLOAT32);
+        ContainerPatcher.open(f, s).close();
+    }
+}
\ No newline at end of file
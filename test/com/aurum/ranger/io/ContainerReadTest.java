@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Reads containers into every storage, sequentially and in parallel on pools
+ * of several sizes, and checks that a header announcing more entries than
+ * the file holds ends in an {@link EOFException} instead of sizing storage
+ * by the header count.
+ */
+public class ContainerReadTest {
+    private static DataSheet sheet(FieldType... types) {
+        DataSheet s = new DataSheet("TEST");
+        for (int i = 0 ; i < types.length ; i++)
+            s.add("f" + i, types[i]);
+        return s;
+    }
+    
+    private static byte[] container(DataSheet s, int count) throws IOException {
+        CompiledSheet cs = s.compile();
+        Container c = new Container(s);
+        for (int i = 0 ; i < count ; i++) {
+            DataEntry de = new DataEntry();
+            for (int j = 0 ; j < cs.count() ; j++) {
+                switch(cs.types[j]) {
+                    case INT8: de.put(cs.names[j], (byte) (i + j)); break;
+                    case INT16: de.put(cs.names[j], (short) (i * j)); break;
+                    case INT32: de.put(cs.names[j], i - j); break;
+                    case INT64: de.put(cs.names[j], (long) i << j); break;
+                    case FLOAT32: de.put(cs.names[j], i / (j + 1.0f)); break;
+                    case FLOAT64: de.put(cs.names[j], i * 0.1 + j); break;
+                    case BOOLEAN: de.put(cs.names[j], (i + j) % 3 == 0); break;
+                }
+            }
+            c.entries().add(de);
+        }
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ContainerOutputStream cos = new ContainerOutputStream(new BinaryOutputStream(out))) {
+            cos.write(c);
+        }
+        return out.toByteArray();
+    }
+    
+    private static Container read(byte[] data, DataSheet s, Container.Storage storage, ForkJoinPool pool) throws IOException {
+        Container c = new Container(s, storage);
+        try (ContainerInputStream in = new ContainerInputStream(new BinaryInputStream(new ByteArrayInputStream(data)))) {
+            if (pool != null)
+                in.read(c, pool);
+            else
+                in.read(c);
+        }
+        return c;
+    }
+    
+    private static byte[] write(Container c) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ContainerOutputStream cos = new ContainerOutputStream(new BinaryOutputStream(out))) {
+            cos.write(c);
+        }
+        return out.toByteArray();
+    }
+    
+    private static final DataSheet[] SHEETS = {
+        sheet(FieldType.INT32),
+        sheet(FieldType.INT8, FieldType.FLOAT64, FieldType.BOOLEAN, FieldType.INT16),
+        sheet(FieldType.values())
+    };
+    
+    @Test
+    public void parallel() throws IOException {
+        ForkJoinPool[] pools = { null, new ForkJoinPool(1), new ForkJoinPool(3), ForkJoinPool.commonPool() };
+        
+        try {
+            for (DataSheet s : SHEETS) {
+                for (int count : new int[] { 0, 1, 5000, 70000 }) {
+                    byte[] data = container(s, count);
+                    for (Container.Storage storage : Container.Storage.values()) {
+                        for (ForkJoinPool pool : pools) {
+                            Container c = read(data, s, storage, pool);
+                            assertEquals(count, c.entries().size());
+                            assertArrayEquals(storage + " " + count, data, write(c));
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            for (int i = 1 ; i < 3 ; i++)
+                pools[i].shutdown();
+        }
+    }
+    
+    /**
+     * A bare header that announces close to 2^31 entries would need
+     * gigabytes of storage if it were sized up front.
+     */
+    @Test
+    public void truncated() throws IOException {
+        for (DataSheet s : SHEETS) {
+            int size = s.compile().byteSum();
+            byte[] data = container(s, 100);
+            byte[] header = new byte[ContainerPatcher.HEADER_SIZE + 10 * size];
+            System.arraycopy(data, 0, header, 0, header.length);
+            int count = Integer.MAX_VALUE / size;
+            header[8] = (byte) count;
+            header[9] = (byte) (count >> 8);
+            header[10] = (byte) (count >> 16);
+            header[11] = (byte) (count >> 24);
+            
+            for (Container.Storage storage : Container.Storage.values()) {
+                for (int parallel = 0 ; parallel < 2 ; parallel++) {
+                    try {
+                        read(header, s, storage, parallel == 1 ? ForkJoinPool.commonPool() : null);
+                        fail(storage + " read a truncated container");
+                    }
+                    catch (EOFException ex) {
+                        // expected
+                    }
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
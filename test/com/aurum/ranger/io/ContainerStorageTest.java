@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the entries of a container can be used the same way with
+ * every storage, and that changes made through them are kept.
+ */
+public class ContainerStorageTest {
+    private static DataSheet sheet() {
+        DataSheet s = new DataSheet("TEST");
+        s.add("id", FieldType.INT16);
+        s.add("value", FieldType.FLOAT64);
+        return s;
+    }
+    
+    private static Container filled(Container.Storage storage) {
+        Container c = new Container(sheet(), storage);
+        for (int i = 0 ; i < 5 ; i++) {
+            DataEntry de = new DataEntry();
+            de.put("id", (short) i);
+            de.put("value", i * 0.25);
+            c.entries().add(de);
+        }
+        return c;
+    }
+    
+    private static byte[] encode(Container c) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ContainerOutputStream cos = new ContainerOutputStream(new BinaryOutputStream(out))) {
+            cos.write(c);
+        }
+        return out.toByteArray();
+    }
+    
+    @Test
+    public void writesThroughEntries() throws IOException {
+        byte[] expected = null;
+        
+        for (Container.Storage storage : Container.Storage.values()) {
+            Container c = filled(storage);
+            for (DataEntry de : c.entries())
+                de.put("value", (Double) de.get("value") + 1);
+            c.entries().get(2).put("id", (short) 20);
+            c.entry(3).put("id", (short) 30);
+            c.entries().remove(0);
+            
+            assertEquals(storage.toString(), 4, c.entries().size());
+            assertEquals(storage.toString(), (short) 20, c.entries().get(1).get("id"));
+            assertEquals(storage.toString(), (short) 30, c.entry(2).get("id"));
+            assertEquals(storage.toString(), 2.0, c.entries().get(3).get("value"));
+            
+            byte[] bytes = encode(c);
+            if (expected == null)
+                expected = bytes;
+            assertArrayEquals(storage.toString(), expected, bytes);
+        }
+    }
+    
+    @Test
+    public void entriesAreEqualAcrossStorages() {
+        Container list = filled(Container.Storage.LIST);
+        for (Container.Storage storage : Container.Storage.values())
+            assertEquals(storage.toString(), list.entries(), filled(storage).entries());
+    }
+}
\ No newline at end of file
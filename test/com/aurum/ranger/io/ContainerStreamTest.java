@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the entry spliterator and stream of {@link ContainerInputStream}.
+ */
+public class ContainerStreamTest {
+    private static final int COUNT = 100;
+    
+    private static DataSheet sheet() {
+        DataSheet s = new DataSheet("TEST");
+        s.add("id", FieldType.INT32);
+        s.add("value", FieldType.FLOAT32);
+        return s;
+    }
+    
+    private static Container container(DataSheet s) {
+        Container c = new Container(s);
+        for (int i = 0 ; i < COUNT ; i++) {
+            DataEntry de = new DataEntry();
+            de.put("id", i);
+            de.put("value", i / 4.0f);
+            c.entries().add(de);
+        }
+        return c;
+    }
+    
+    private static ContainerInputStream open(Container c) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ContainerOutputStream cos = new ContainerOutputStream(new BinaryOutputStream(out))) {
+            cos.write(c);
+        }
+        return new ContainerInputStream(new BinaryInputStream(new ByteArrayInputStream(out.toByteArray())));
+    }
+    
+    @Test
+    public void spliterator() throws IOException {
+        DataSheet s = sheet();
+        Container c = container(s);
+        
+        try (ContainerInputStream in = open(c)) {
+            Spliterator<DataEntry> it = in.spliterator(s);
+            assertTrue(it.hasCharacteristics(Spliterator.SIZED));
+            assertEquals(COUNT, it.getExactSizeIfKnown());
+            assertNull(it.trySplit());
+            
+            List<DataEntry> seen = new ArrayList();
+            while (it.tryAdvance(de -> seen.add((DataEntry) de.clone())))
+                assertEquals(COUNT - seen.size(), it.estimateSize());
+            assertFalse(it.tryAdvance(de -> { }));
+            assertEquals(c.entries(), seen);
+        }
+    }
+    
+    @Test
+    public void stream() throws IOException {
+        DataSheet s = sheet();
+        Container c = container(s);
+        
+        try (Stream<DataEntry> entries = open(c).entries(s)) {
+            List<Object> ids = entries.filter(de -> (Float) de.get("value") >= 20).map(de -> de.get("id")).collect(Collectors.toList());
+            assertEquals(20, ids.size());
+            assertEquals(80, ids.get(0));
+        }
+    }
+    
+    @Test(expected = UncheckedIOException.class)
+    public void truncated() throws IOException {
+        DataSheet s = sheet();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ContainerOutputStream cos = new ContainerOutputStream(new BinaryOutputStream(out))) {
+            cos.writeHeader(s, 2);
+            cos.writeRecord(new byte[8], 0, 8);
+        }
+        
+        try (Stream<DataEntry> entries = new ContainerInputStream(new BinaryInputStream(new ByteArrayInputStream(out.toByteArray()))).entries(s)) {
+            entries.forEach(de -> de.get("id"));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks what the keys of a {@link ConversionCache} depend on and that the
+ * least recently used results are evicted first.
+ */
+public class ConversionCacheTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+    
+    private static DataSheet sheet(String name, FieldType type) {
+        DataSheet s = new DataSheet(name);
+        s.add("id", FieldType.INT32);
+        s.add("value", type);
+        return s;
+    }
+    
+    private File file(String name, String text) throws IOException {
+        File f = new File(tmp.getRoot(), name);
+        Files.write(f.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return f;
+    }
+    
+    @Test
+    public void key() throws IOException {
+        ConversionCache cache = new ConversionCache(tmp.newFolder("cache"), 1 << 20);
+        DataSheet s = sheet("TEST", FieldType.INT16);
+        File a = file("a", "same content"), b = file("b", "same content"), c = file("c", "other content");
+        
+        String key = cache.key(a, s, "export XML");
+        assertEquals(64, key.length());
+        assertTrue(key.matches("[0-9a-f]+"));
+        assertEquals(key, cache.key(b, s, "export XML"));
+        assertEquals(key, cache.key(a, sheet("TEST", FieldType.INT16), "export XML"));
+        
+        assertNotEquals(key, cache.key(c, s, "export XML"));
+        assertNotEquals(key, cache.key(a, s, "export CSV"));
+        assertNotEquals(key, cache.key(a, sheet("OTHR", FieldType.INT16), "export XML"));
+        assertNotEquals(key, cache.key(a, sheet("TEST", FieldType.INT32), "export XML"));
+        
+        DataSheet renamed = new DataSheet("TEST");
+        renamed.add("id", FieldType.INT32);
+        renamed.add("other", FieldType.INT16);
+        assertNotEquals(key, cache.key(a, renamed, "export XML"));
+    }
+    
+    @Test
+    public void storeAndFetch() throws IOException {
+        File dir = tmp.newFolder("cache");
+        ConversionCache cache = new ConversionCache(dir, 1 << 20);
+        File out = file("out", "result");
+        File copy = new File(tmp.getRoot(), "copy");
+        
+        assertFalse(cache.fetch("0123", copy));
+        assertFalse(copy.exists());
+        
+        cache.store("0123", out);
+        assertTrue(cache.fetch("0123", copy));
+        assertArrayEquals(Files.readAllBytes(out.toPath()), Files.readAllBytes(copy.toPath()));
+        assertEquals(1, dir.list().length);
+    }
+    
+    @Test
+    public void evict() throws IOException {
+        File dir = tmp.newFolder("cache");
+        ConversionCache cache = new ConversionCache(dir, 250);
+        File out = file("out", new String(new char[100]));
+        long now = System.currentTimeMillis();
+        
+        cache.store("key-a", out);
+        new File(dir, "key-a").setLastModified(now - 30000);
+        cache.store("key-b", out);
+        new File(dir, "key-b").setLastModified(now - 20000);
+        
+        // using a result makes it the most recently used one
+        assertTrue(cache.fetch("key-a", new File(tmp.getRoot(), "copy")));
+        cache.store("key-c", out);
+        
+        assertTrue(new File(dir, "key-a").isFile());
+        assertFalse(new File(dir, "key-b").exists());
+        assertTrue(new File(dir, "key-c").isFile());
+        
+        cache.store("key-big", file("big", new String(new char[300])));
+        assertFalse(new File(dir, "key-big").exists());
+    }
+    
+    @Test
+    public void staleTemporaryFiles() throws IOException {
+        File dir = tmp.newFolder("cache");
+        ConversionCache cache = new ConversionCache(dir, 1 << 20);
+        File old = new File(dir, "old.tmp"), recent = new File(dir, "recent.tmp");
+        Files.write(old.toPath(), new byte[10]);
+        Files.write(recent.toPath(), new byte[10]);
+        old.setLastModified(System.currentTimeMillis() - 2 * 60 * 60 * 1000);
+        
+        cache.evict();
+        assertFalse(old.exists());
+        assertTrue(recent.exists());
+    }
+    
+    @Test
+    public void sharedExport() throws IOException {
+        DataSheet s = sheet("TEST", FieldType.INT16);
+        Container c = new Container(s);
+        DataEntry de = new DataEntry();
+        de.put("id", 1);
+        de.put("value", (short) 2);
+        c.entries().add(de);
+        
+        File bin = tmp.newFile("test");
+        try (ContainerOutputStream out = new ContainerOutputStream(new BinaryOutputStream(new FileOutputStream(bin)))) {
+            out.write(c);
+        }
+        
+        File dir = tmp.newFolder("cache");
+        ConversionCache.setShared(new ConversionCache(dir, 1 << 20));
+        try {
+            File xml = new File(tmp.getRoot(), "a.xml"), csv = new File(tmp.getRoot(), "a.csv");
+            ContainerFormat.export(bin, s, xml);
+            ContainerFormat.export(bin, s, csv);
+            assertEquals(2, dir.list().length);
+            
+            byte[] expected = Files.readAllBytes(xml.toPath());
+            File again = new File(tmp.getRoot(), "b.xml");
+            ContainerFormat.export(bin, s, again);
+            assertEquals(2, dir.list().length);
+            assertArrayEquals(expected, Files.readAllBytes(again.toPath()));
+        }
+        finally {
+            ConversionCache.setShared(null);
+        }
+    }
+}
\ No newline at end of file
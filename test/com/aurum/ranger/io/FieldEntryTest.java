@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.util.Arrays;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a {@link RecordEntry} behaves like a {@link DataEntry} holding
+ * the same values, while reading and writing the entry bytes.
+ */
+public class FieldEntryTest {
+    private static CompiledSheet sheet() {
+        DataSheet s = new DataSheet("TEST");
+        s.add("id", FieldType.INT32);
+        s.add("rate", FieldType.FLOAT32);
+        s.add("flag", FieldType.BOOLEAN);
+        return s.compile();
+    }
+    
+    private static DataEntry plain() {
+        DataEntry de = new DataEntry();
+        de.put("id", 7);
+        de.put("rate", 0.5f);
+        de.put("flag", true);
+        return de;
+    }
+    
+    private static RecordEntry record(CompiledSheet cs) {
+        RecordEntry re = new RecordEntry(cs);
+        re.putAll(plain());
+        return re;
+    }
+    
+    @Test
+    public void mapContract() {
+        RecordEntry re = record(sheet());
+        DataEntry de = plain();
+        
+        assertEquals(de, re);
+        assertEquals(re, de);
+        assertEquals(de.hashCode(), re.hashCode());
+        assertEquals(de.toString(), re.toString());
+        assertEquals(3, re.size());
+        assertFalse(re.isEmpty());
+        assertEquals(Arrays.asList("id", "rate", "flag"), Arrays.asList(re.keySet().toArray()));
+        assertEquals(Arrays.asList(7, 0.5f, true), Arrays.asList(re.values().toArray()));
+        assertTrue(re.containsKey("rate"));
+        assertFalse(re.containsKey("other"));
+        assertTrue(re.containsValue(0.5f));
+        assertEquals(null, re.get("other"));
+        assertEquals(1, re.getOrDefault("other", 1));
+    }
+    
+    @Test
+    public void writesThrough() {
+        CompiledSheet cs = sheet();
+        RecordEntry re = record(cs);
+        
+        assertEquals(7, re.put("id", 8));
+        re.replaceAll((k, v) -> k.equals("flag") ? false : v);
+        re.merge("id", 2, (a, b) -> (Integer) a + (Integer) b);
+        for (Map.Entry<String, Object> e : re.entrySet()) {
+            if (e.getKey().equals("rate"))
+                e.setValue(-0.0f);
+        }
+        
+        RecordEntry other = new RecordEntry(cs, re.data(), re.offset());
+        assertEquals(10, other.get("id"));
+        assertEquals(-0.0f, other.get("rate"));
+        assertEquals(false, other.get("flag"));
+    }
+    
+    @Test
+    public void cloneIsDetached() {
+        RecordEntry re = record(sheet());
+        DataEntry copy = (DataEntry) re.clone();
+        
+        assertSame(DataEntry.class, copy.getClass());
+        re.put("id", 1);
+        assertEquals(7, copy.get("id"));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownField() {
+        record(sheet()).put("other", 1);
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void remove() {
+        record(sheet()).remove("id");
+    }
+}
\ No newline at end of file
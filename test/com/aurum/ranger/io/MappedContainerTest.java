@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks random access through {@link MappedContainer} and its header checks.
+ */
+public class MappedContainerTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+    
+    private static DataSheet sheet(String name) {
+        DataSheet s = new DataSheet(name);
+        s.add("id", FieldType.INT16);
+        s.add("value", FieldType.FLOAT64);
+        s.add("flag", FieldType.BOOLEAN);
+        return s;
+    }
+    
+    private File container(DataSheet s, int count) throws IOException {
+        Container c = new Container(s);
+        for (int i = 0 ; i < count ; i++) {
+            DataEntry de = new DataEntry();
+            de.put("id", (short) i);
+            de.put("value", i * 1.5);
+            de.put("flag", i % 2 == 0);
+            c.entries().add(de);
+        }
+        
+        File f = tmp.newFile();
+        try (ContainerOutputStream out = new ContainerOutputStream(new BinaryOutputStream(new FileOutputStream(f)))) {
+            out.write(c);
+        }
+        return f;
+    }
+    
+    @Test
+    public void reads() throws IOException {
+        DataSheet s = sheet("TEST");
+        try (MappedContainer mc = MappedContainer.open(container(s, 10), s)) {
+            assertEquals("TEST", mc.magic());
+            assertEquals(10, mc.size());
+            assertEquals((short) 7, mc.getShort(7, 0));
+            assertEquals(4.5, mc.get(3, "value"));
+            assertEquals(false, mc.getBoolean(5, 2));
+            assertEquals((short) 9, mc.getEntry(9).get("id"));
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void otherMagic() throws IOException {
+        File f = container(sheet("TEST"), 2);
+        MappedContainer.open(f, sheet("OTHR")).close();
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void otherSize() throws IOException {
+        File f = container(sheet("TEST"), 2);
+        DataSheet s = sheet("TEST");
+        s.add("extra", FieldType.INT8);
+        MappedContainer.open(f, s).close();
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void truncated() throws IOException {
+        DataSheet s = sheet("TEST");
+        File f = container(s, 4);
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        MappedContainer.open(f, s).close();
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void outOfRange() throws IOException {
+        DataSheet s = sheet("TEST");
+        try (MappedContainer mc = MappedContainer.open(container(s, 3), s)) {
+            mc.getShort(3, 0);
+        }
+    }
+}
\ No newline at end of file
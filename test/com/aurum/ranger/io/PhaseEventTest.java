@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import org.junit.Test;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that timing phases without a running recording neither creates
+ * Flight Recorder events nor sets up Flight Recorder.
+ */
+public class PhaseEventTest {
+    @Test
+    public void noRecording() {
+        assertFalse(PhaseEvent.recording());
+        assertNull(PhaseEvent.start());
+        
+        Metrics.start(Metrics.Phase.DECODE, "test").stop(1, 1, 1);
+        assertFalse(PhaseEvent.recording());
+    }
+}
\ No newline at end of file
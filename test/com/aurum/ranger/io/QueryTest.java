@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Parses and evaluates {@link Query} expressions against raw entries,
+ * including operator precedence, negation and comparisons with NaN.
+ */
+public class QueryTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+    
+    private static final DataSheet SHEET = sheet();
+    private static final CompiledSheet LAYOUT = SHEET.compile();
+    
+    private static DataSheet sheet() {
+        DataSheet s = new DataSheet("TEST");
+        s.add("id", FieldType.INT32);
+        s.add("small", FieldType.INT8);
+        s.add("big", FieldType.INT64);
+        s.add("rate", FieldType.FLOAT32);
+        s.add("exact", FieldType.FLOAT64);
+        s.add("flag", FieldType.BOOLEAN);
+        return s;
+    }
+    
+    private static byte[] entry(int id, byte small, long big, float rate, double exact, boolean flag) {
+        byte[] data = new byte[LAYOUT.byteSum() + 3];
+        Object[] vals = { id, small, big, rate, exact, flag };
+        for (int j = 0 ; j < vals.length ; j++)
+            LAYOUT.put(data, 3, j, vals[j]);
+        return data;
+    }
+    
+    private static boolean matches(String expression, byte[] entry) {
+        return Query.compile(expression, SHEET).matches(entry, 3);
+    }
+    
+    private static void malformed(String expression) {
+        try {
+            Query.compile(expression, SHEET);
+            fail("compiled \"" + expression + "\"");
+        }
+        catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+    
+    @Test
+    public void comparisons() {
+        byte[] e = entry(11, (byte) -3, Long.MAX_VALUE, 2.5f, 0.1, true);
+        assertTrue(matches("id == 11", e));
+        assertTrue(matches("id != 12", e));
+        assertTrue(matches("small < 0", e));
+        assertTrue(matches("small <= -3", e));
+        assertTrue(matches("id > 10", e));
+        assertTrue(matches("id >= 11", e));
+        assertTrue(matches("11 == id", e));
+        assertTrue(matches("big == 9223372036854775807", e));
+        assertTrue(matches("big > 9223372036854775806", e));
+        assertFalse(matches("id < 11", e));
+        assertFalse(matches("small > -3", e));
+    }
+    
+    @Test
+    public void precedence() {
+        byte[] e = entry(1, (byte) 0, 0, 0, 0, false);
+        assertTrue(matches("id == 1 || id == 2 && small == 5", e));
+        assertFalse(matches("(id == 1 || id == 2) && small == 5", e));
+        assertTrue(matches("id == 2 && small == 5 || id == 1", e));
+        assertTrue(matches("((id == 1))", e));
+    }
+    
+    @Test
+    public void negation() {
+        byte[] on = entry(1, (byte) 0, 0, 0, 0, true);
+        byte[] off = entry(1, (byte) 0, 0, 0, 0, false);
+        assertTrue(matches("flag", on));
+        assertFalse(matches("!flag", on));
+        assertTrue(matches("!flag", off));
+        assertTrue(matches("!!flag", on));
+        assertTrue(matches("flag == true", on));
+        assertTrue(matches("flag != false", on));
+        assertFalse(matches("!(id == 1) || !flag", on));
+        assertTrue(matches("!id == 2 && flag", on));
+        assertTrue(matches("! flag || id == 1", off));
+    }
+    
+    @Test
+    public void floating() {
+        byte[] e = entry(3, (byte) 0, 0, 0.1f, 0.1, false);
+        assertTrue(matches("exact == 0.1", e));
+        assertFalse(matches("rate == 0.1", e));
+        assertTrue(matches("rate > 0.1", e));
+        assertTrue(matches("rate < 1e-0", e));
+        assertTrue(matches("id == 3.0", e));
+        assertTrue(matches("id < 3.5", e));
+        assertTrue(matches("exact > -1.5E-3", e));
+        
+        byte[] zero = entry(0, (byte) 0, 0, -0.0f, -0.0, false);
+        assertTrue(matches("rate == 0.0", zero));
+        assertTrue(matches("exact == 0", zero));
+    }
+    
+    @Test
+    public void nan() {
+        byte[] e = entry(0, (byte) 0, 0, Float.NaN, Double.NaN, false);
+        assertFalse(matches("rate == 0.0", e));
+        assertFalse(matches("rate < 0", e));
+        assertFalse(matches("rate >= 0", e));
+        assertFalse(matches("exact == exact", e));
+        assertTrue(matches("rate != 0", e));
+        assertTrue(matches("exact != exact", e));
+        assertTrue(matches("!(rate < 1)", e));
+    }
+    
+    @Test
+    public void errors() {
+        malformed("");
+        malformed("id");
+        malformed("missing == 1");
+        malformed("id == ");
+        malformed("id == 1 &&");
+        malformed("(id == 1");
+        malformed("id == 1)");
+        malformed("id === 1");
+        malformed("id == 1.2.3");
+        malformed("id == 1 & small == 2");
+    }
+    
+    private File container(int count) throws IOException {
+        Container c = new Container(SHEET);
+        for (int i = 0 ; i < count ; i++) {
+            DataEntry de = new DataEntry();
+            de.put("id", i);
+            de.put("small", (byte) (i % 3));
+            de.put("big", (long) i * i);
+            de.put("rate", i / 2.0f);
+            de.put("exact", i / 4.0);
+            de.put("flag", i % 2 == 0);
+            c.entries().add(de);
+        }
+        
+        File f = tmp.newFile("test");
+        try (ContainerOutputStream out = new ContainerOutputStream(new BinaryOutputStream(new FileOutputStream(f)))) {
+            out.write(c);
+        }
+        return f;
+    }
+    
+    @Test
+    public void select() throws IOException {
+        Container c = Query.compile("small == 1 && !flag", SHEET).select(container(30));
+        assertEquals(5, c.entries().size());
+        for (int i = 0 ; i < c.entries().size() ; i++)
+            assertEquals(1 + 6 * i, c.entries().get(i).get("id"));
+    }
+    
+    @Test
+    public void export() throws IOException {
+        File bin = container(30);
+        File xml = new File(tmp.getRoot(), "test.xml");
+        File back = new File(tmp.getRoot(), "back");
+        
+        assertEquals(10, Query.compile("big >= 400", SHEET).export(bin, xml));
+        assertEquals(2, tmp.getRoot().list().length);
+        assertEquals(0, Query.compile("id < 0", SHEET).export(bin, xml));
+        assertEquals(2, tmp.getRoot().list().length);
+        
+        assertEquals(10, Query.compile("big >= 400", SHEET).export(bin, xml));
+        ContainerFormat.compile(xml, SHEET, back);
+        Container c = Query.compile("id >= 20", SHEET).select(back);
+        assertEquals(10, c.entries().size());
+        assertEquals(20, c.entries().get(0).get("id"));
+    }
+}
\ No newline at end of file
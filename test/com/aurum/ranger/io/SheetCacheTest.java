@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import org.jdom2.JDOMException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a {@link SheetCache} sidecar is used only while the sheet XML
+ * is unchanged, including changes that keep the length and CRC-32 of the XML.
+ */
+public class SheetCacheTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+    
+    private static final String XML = "<sheet name=\"TEST\">\n"
+            + "\t<entry field=\"id\" type=\"INT16\" index=\"true\"/>\n"
+            + "\t<entry field=\"rate\" type=\"FLOAT64\"/>\n"
+            + "\t<entry field=\"flag\" type=\"BOOLEAN\"/>\n"
+            + "</sheet>\n<!-- ........ -->\n";
+    
+    private File sheet(String xml) throws IOException {
+        File f = new File(tmp.getRoot(), "test.xml");
+        Files.write(f.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+        return f;
+    }
+    
+    private static void check(DataSheet s) {
+        CompiledSheet cs = s.compile();
+        assertEquals("TEST", cs.getName());
+        assertArrayEquals(new String[] { "id", "rate", "flag" }, cs.names);
+        assertArrayEquals(new FieldType[] { FieldType.INT16, FieldType.FLOAT64, FieldType.BOOLEAN }, cs.types);
+        assertTrue(s.isIndexed("id"));
+        assertFalse(s.isIndexed("rate"));
+    }
+    
+    private static int crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return (int) crc.getValue();
+    }
+    
+    /**
+     * Changes bits of the last bytes of the data so that its length and CRC-32
+     * stay the same. For a fixed length the CRC is affine in the data, so
+     * any combination of bit flips whose CRC differences cancel out will do;
+     * one is found by elimination over 64 candidate bits.
+     */
+    private static byte[] collide(byte[] data, int from) {
+        int base = crc(data);
+        int[] rows = new int[64];
+        long[] combos = new long[64];
+        int n = 0;
+        
+        for (int bit = 0 ; bit < 64 ; bit++) {
+            byte[] flipped = data.clone();
+            flipped[from + bit / 8] ^= 1 << (bit % 8);
+            int row = crc(flipped) ^ base;
+            long combo = 1L << bit;
+            
+            for (int i = 0 ; i < n ; i++) {
+                if ((row & Integer.lowestOneBit(rows[i])) != 0) {
+                    row ^= rows[i];
+                    combo ^= combos[i];
+                }
+            }
+            
+            if (row == 0) {
+                byte[] ret = data.clone();
+                for (int b = 0 ; b < 64 ; b++) {
+                    if ((combo & (1L << b)) != 0)
+                        ret[from + b / 8] ^= 1 << (b % 8);
+                }
+                return ret;
+            }
+            
+            for (int i = 0 ; i < n ; i++) {
+                if ((rows[i] & Integer.lowestOneBit(row)) != 0) {
+                    rows[i] ^= row;
+                    combos[i] ^= combo;
+                }
+            }
+            rows[n] = row;
+            combos[n++] = combo;
+        }
+        throw new AssertionError("no collision found");
+    }
+    
+    @Test
+    public void reused() throws IOException, JDOMException {
+        File f = sheet(XML);
+        File cache = SheetCache.sidecar(f);
+        
+        check(DataSheet.open(f));
+        assertTrue(cache.isFile());
+        byte[] xml = Files.readAllBytes(f.toPath());
+        assertNotNull(SheetCache.load(cache, xml));
+        check(SheetCache.load(cache, xml));
+        check(DataSheet.open(f));
+    }
+    
+    @Test
+    public void changed() throws IOException, JDOMException {
+        File f = sheet(XML);
+        File cache = SheetCache.sidecar(f);
+        DataSheet.open(f);
+        
+        byte[] other = XML.replace("FLOAT64", "FLOAT32").getBytes(StandardCharsets.UTF_8);
+        assertNull(SheetCache.load(cache, other));
+        
+        Files.write(f.toPath(), other);
+        assertEquals(FieldType.FLOAT32, DataSheet.open(f).compile().types[1]);
+        assertNotNull(SheetCache.load(cache, other));
+    }
+    
+    @Test
+    public void sameLengthAndCrc() throws IOException, JDOMException {
+        File f = sheet(XML);
+        File cache = SheetCache.sidecar(f);
+        byte[] xml = Files.readAllBytes(f.toPath());
+        DataSheet.open(f);
+        
+        byte[] other = collide(xml, XML.indexOf("........"));
+        assertEquals(xml.length, other.length);
+        assertEquals(crc(xml), crc(other));
+        assertFalse(Arrays.equals(xml, other));
+        assertNull(SheetCache.load(cache, other));
+    }
+    
+    @Test
+    public void corrupt() throws IOException, JDOMException {
+        File f = sheet(XML);
+        File cache = SheetCache.sidecar(f);
+        DataSheet.open(f);
+        byte[] xml = Files.readAllBytes(f.toPath());
+        
+        try (RandomAccessFile raf = new RandomAccessFile(cache, "rw")) {
+            raf.seek(20);
+            int b = raf.read();
+            raf.seek(20);
+            raf.write(b ^ 0x01);
+        }
+        assertNull(SheetCache.load(cache, xml));
+        check(DataSheet.open(f));
+        assertNotNull(SheetCache.load(cache, xml));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2017 Aurum
+ *
+ * PokéSheet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PokéSheet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.aurum.ranger.io;
+
+import com.aurum.ranger.io.DataSheet.FieldType;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that both {@link SheetRegistry#forMagic} overloads find the same
+ * sheet and reject an unknown magic the same way.
+ */
+public class SheetRegistryTest {
+    private static SheetRegistry registry(DataSheet s) {
+        SheetRegistry reg = new SheetRegistry();
+        reg.add(s);
+        return reg;
+    }
+    
+    private static DataSheet sheet() {
+        DataSheet s = new DataSheet("TEST");
+        s.add("id", FieldType.INT32);
+        return s;
+    }
+    
+    @Test
+    public void forMagic() {
+        DataSheet s = sheet();
+        SheetRegistry reg = registry(s);
+        assertSame(s, reg.forMagic("TEST"));
+        assertSame(s, reg.forMagic("TEST".getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownString() {
+        registry(sheet()).forMagic("OTHR");
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownBytes() {
+        registry(sheet()).forMagic("OTHR".getBytes(StandardCharsets.UTF_8));
+    }
+}
\ No newline at end of file